@@ -7,7 +7,10 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.DefaultExecutor;
 import org.apache.commons.exec.PumpStreamHandler;
@@ -16,7 +19,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The Class AbstractChecksumGenerator.
+ * The Class AbstractChecksumGenerator.<br>
+ * By default, the checksum of a file is computed in the process using a file channel, the reads and the digest are pipelined for large files.<br>
+ * The external command can be preferred using {@link #setCommandPreferred(boolean)}, it is only used if supported by the system.
  */
 public abstract class AbstractChecksumGenerator implements ChecksumGenerator {
 
@@ -26,6 +31,9 @@ public abstract class AbstractChecksumGenerator implements ChecksumGenerator {
     /** The Constant LOGGER. */
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractChecksumGenerator.class);
 
+    /** True if the command has to be used when supported. */
+    private boolean commandPreferred = false;
+
     /** True is command is supported. */
     private boolean commandSupported;
 
@@ -85,36 +93,55 @@ public abstract class AbstractChecksumGenerator implements ChecksumGenerator {
             throw new NoSuchFileException("File not found: " + file.toString());
         }
 
-        if (isCommandSupported()) {
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Using command : {} {}", getCommand(), file.toAbsolutePath());
-            }
+        if (!commandPreferred || !isCommandSupported()) {
+            final MessageDigest digest = getMessageDigest();
+            ChannelDigester.update(file, digest);
 
-            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            final ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
-            final CommandLine cmdLine = CommandLine.parse(getCommand() + StringUtils.SPACE + file.toAbsolutePath().toString());
-            final DefaultExecutor executor = new DefaultExecutor();
-            final PumpStreamHandler streamHandler = new PumpStreamHandler(outputStream, errorStream);
-            executor.setStreamHandler(streamHandler);
-            final int code = executor.execute(cmdLine);
+            return Hex.encodeHexString(digest.digest());
+        }
 
-            if (code != 0 && errorStream.size() > 0) {
-                throw new IOException(errorStream.toString(StandardCharsets.UTF_8));
-            }
+        return getChecksumUsingCommand(file);
+    }
 
-            final String output = outputStream.toString(StandardCharsets.UTF_8);
-            final int index = StringUtils.indexOfAny(output, ALLOWED_CHARS);
+    /**
+     * Gets the checksum using the external command.
+     * @param file the file
+     * @return the checksum
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    protected String getChecksumUsingCommand(final Path file) throws IOException {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Using command : {} {}", getCommand(), file.toAbsolutePath());
+        }
 
-            if (index == -1) {
-                return StringUtils.substringBefore(output, " ");
-            }
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
+        final CommandLine cmdLine = CommandLine.parse(getCommand() + StringUtils.SPACE + file.toAbsolutePath().toString());
+        final DefaultExecutor executor = new DefaultExecutor();
+        final PumpStreamHandler streamHandler = new PumpStreamHandler(outputStream, errorStream);
+        executor.setStreamHandler(streamHandler);
+        final int code = executor.execute(cmdLine);
 
-            return StringUtils.substringBefore(output.substring(index), " ");
+        if (code != 0 && errorStream.size() > 0) {
+            throw new IOException(errorStream.toString(StandardCharsets.UTF_8));
         }
 
-        try (InputStream in = Files.newInputStream(file)) {
-            return getChecksum(in);
+        final String output = outputStream.toString(StandardCharsets.UTF_8);
+        final int index = StringUtils.indexOfAny(output, ALLOWED_CHARS);
+
+        if (index == -1) {
+            return StringUtils.substringBefore(output, " ");
         }
+
+        return StringUtils.substringBefore(output.substring(index), " ");
+    }
+
+    /**
+     * Checks if the external command is preferred.
+     * @return true, if the command is used when supported
+     */
+    public boolean isCommandPreferred() {
+        return commandPreferred;
     }
 
     /*
@@ -126,6 +153,22 @@ public abstract class AbstractChecksumGenerator implements ChecksumGenerator {
         return commandSupported;
     }
 
+    /**
+     * Sets the flag used to prefer the external command.
+     * @param commandPreferred true to use the command when supported
+     */
+    public void setCommandPreferred(final boolean commandPreferred) {
+        this.commandPreferred = commandPreferred;
+    }
+
+    /**
+     * Gets a new message digest of the algorithm.
+     * @return the message digest
+     */
+    protected MessageDigest getMessageDigest() {
+        return DigestUtils.getDigest(getAlgorithm());
+    }
+
     /**
      * Gets the checksum.
      * @param in the input
@@ -0,0 +1,507 @@
+package org.infodavid.commons.checksum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class CachingChecksumGenerator.<br>
+ * The generator decorates another one and stores the checksums of the files in an index file keyed by path. An entry is used while the size, the modification date and the file key of the file are unchanged, so the content of unchanged files is not read.<br>
+ * Only the offsets of the records are held in memory, the records recently used are kept in a bounded front cache.<br>
+ * The index is an append-only log, it is compacted by {@link #close()} when it contains too many replaced records.<br>
+ * Each record is followed by its CRC-32 so that a record partially written before a crash ends the loading of the index instead of being used.
+ */
+public class CachingChecksumGenerator implements ChecksumGenerator, Closeable {
+
+    /**
+     * The Class Entry.
+     */
+    private static final class Entry {
+
+        /** The checksum. */
+        private final String checksum;
+
+        /** The file key. */
+        private final String fileKey;
+
+        /** The modification date in nanoseconds. */
+        private final long modificationDate;
+
+        /** The size. */
+        private final long size;
+
+        /**
+         * Instantiates a new entry.
+         * @param size             the size
+         * @param modificationDate the modification date
+         * @param fileKey          the file key
+         * @param checksum         the checksum
+         */
+        Entry(final long size, final long modificationDate, final String fileKey, final String checksum) {
+            this.size = size;
+            this.modificationDate = modificationDate;
+            this.fileKey = fileKey;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Checks if the entry matches the attributes of the file.
+         * @param attributes the attributes
+         * @return true, if the file is unchanged
+         */
+        boolean matches(final BasicFileAttributes attributes) {
+            return size == attributes.size() && modificationDate == attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) && fileKey.equals(getFileKey(attributes));
+        }
+    }
+
+    /** The Constant DEFAULT_FRONT_CACHE_SIZE. */
+    public static final int DEFAULT_FRONT_CACHE_SIZE = 4096;
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingChecksumGenerator.class);
+
+    /** The Constant VERSION. */
+    private static final int VERSION = 2;
+
+    /**
+     * Gets the file key.
+     * @param attributes the attributes
+     * @return the file key or an empty string if not supported
+     */
+    private static String getFileKey(final BasicFileAttributes attributes) {
+        return attributes.fileKey() == null ? "" : attributes.fileKey().toString();
+    }
+
+    /** The channel of the index. */
+    private FileChannel channel;
+
+    /** The delegate. */
+    private final ChecksumGenerator delegate;
+
+    /** The front cache. */
+    private final Map<String, Entry> frontCache;
+
+    /** The index file. */
+    private final Path indexFile;
+
+    /** The offsets of the records by path. */
+    private final Map<String, Long> offsets = new HashMap<>();
+
+    /** The number of records of the index. */
+    private long recordCount = 0;
+
+    /**
+     * Instantiates a new generator.
+     * @param delegate  the generator used to compute the checksums
+     * @param indexFile the index file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public CachingChecksumGenerator(final ChecksumGenerator delegate, final Path indexFile) throws IOException {
+        this(delegate, indexFile, DEFAULT_FRONT_CACHE_SIZE);
+    }
+
+    /**
+     * Instantiates a new generator.
+     * @param delegate       the generator used to compute the checksums
+     * @param indexFile      the index file
+     * @param frontCacheSize the maximum number of entries of the front cache
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @SuppressWarnings("serial")
+    public CachingChecksumGenerator(final ChecksumGenerator delegate, final Path indexFile, final int frontCacheSize) throws IOException {
+        if (delegate == null || indexFile == null) {
+            throw new IllegalArgumentException("Argument is null");
+        }
+
+        this.delegate = delegate;
+        this.indexFile = indexFile.toAbsolutePath();
+        frontCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > frontCacheSize;
+            }
+        };
+
+        if (this.indexFile.getParent() != null) {
+            Files.createDirectories(this.indexFile.getParent());
+        }
+
+        channel = FileChannel.open(this.indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+
+        try {
+            if (recordCount > offsets.size() * 2L) {
+                compact();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.checksum.ChecksumGenerator#getAlgorithm()
+     */
+    @Override
+    public String getAlgorithm() {
+        return delegate.getAlgorithm();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.checksum.ChecksumGenerator#getChecksum(byte[])
+     */
+    @Override
+    public String getChecksum(final byte[] content) throws IOException {
+        return delegate.getChecksum(content);
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.checksum.ChecksumGenerator#getChecksum(java.nio.file.Path)
+     */
+    @Override
+    public String getChecksum(final Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("Argument is null");
+        }
+
+        final Path path = file.toAbsolutePath().normalize();
+        // the attributes are read before the content so that a modification during the computation is detected on the next call
+        final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        final String key = path.toString();
+        final Entry entry = get(key);
+
+        if (entry != null && entry.matches(attributes)) {
+            return entry.checksum;
+        }
+
+        final String result = delegate.getChecksum(path);
+        put(key, new Entry(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), getFileKey(attributes), result));
+
+        return result;
+    }
+
+    /**
+     * Gets the index file.
+     * @return the index file
+     */
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Gets the number of files in the index.
+     * @return the size
+     */
+    public synchronized int getSize() {
+        return offsets.size();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.checksum.ChecksumGenerator#isCommandSupported()
+     */
+    @Override
+    public boolean isCommandSupported() {
+        return delegate.isCommandSupported();
+    }
+
+    /**
+     * Compact the index, only the last record of each path is kept.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void compact() throws IOException {
+        LOGGER.debug("Compacting checksum index: {} ({} records, {} files)", indexFile, String.valueOf(recordCount), String.valueOf(offsets.size()));
+        final Path compacted = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(out);
+
+            for (final Map.Entry<String, Long> item : offsets.entrySet()) {
+                final Entry entry = read(item.getValue().longValue());
+
+                if (entry != null) {
+                    write(out, item.getKey(), entry);
+                }
+            }
+        }
+
+        channel.close();
+        Files.move(compacted, indexFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Gets the entry from the front cache or from the index.
+     * @param key the path
+     * @return the entry or null if not found
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private synchronized Entry get(final String key) throws IOException {
+        Entry result = frontCache.get(key);
+
+        if (result != null) {
+            return result;
+        }
+
+        final Long offset = offsets.get(key);
+
+        if (offset == null) {
+            return null;
+        }
+
+        result = read(offset.longValue());
+
+        if (result == null) {
+            LOGGER.warn("Corrupted record in checksum index: {} ({})", indexFile, key);
+            offsets.remove(key);
+
+            return null;
+        }
+
+        frontCache.put(key, result);
+
+        return result;
+    }
+
+    /**
+     * Load the offsets of the records.<br>
+     * The index is reset if written for another version or algorithm, the index is truncated at the first record which is incomplete, has a wrong CRC or cannot be decoded.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void load() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(512);
+        channel.read(header, 0);
+        header.flip();
+
+        long position = 0;
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array(), 0, header.limit()))) {
+            if (in.readInt() == VERSION && Objects.equals(in.readUTF(), getAlgorithm())) {
+                position = header.limit() - in.available();
+            }
+        } catch (@SuppressWarnings("unused") final IOException e) {
+            // empty or invalid header
+        }
+
+        if (position == 0) {
+            LOGGER.debug("Initializing checksum index: {}", indexFile);
+            channel.truncate(0);
+            writeHeader(channel);
+
+            return;
+        }
+
+        final long size = channel.size();
+        byte[] record;
+
+        while ((record = readRecord(position, size)) != null) {
+            final String key;
+
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+                key = in.readUTF();
+                // the whole record is decoded so that an invalid record ends the loading
+                decode(in);
+            } catch (@SuppressWarnings("unused") final IOException e) {
+                break;
+            }
+
+            offsets.put(key, Long.valueOf(position));
+            recordCount++;
+            position += 2L * Integer.BYTES + record.length;
+        }
+
+        if (position < size) {
+            LOGGER.warn("Truncating checksum index: {} (invalid record at offset {})", indexFile, String.valueOf(position));
+        }
+
+        // drop the invalid records
+        channel.truncate(position);
+        channel.position(position);
+        LOGGER.debug("Checksum index loaded: {} ({} files)", indexFile, String.valueOf(offsets.size()));
+    }
+
+    /**
+     * Store the entry in the index and in the front cache.
+     * @param key   the path
+     * @param entry the entry
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private synchronized void put(final String key, final Entry entry) throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("Index is closed: " + indexFile);
+        }
+
+        offsets.put(key, Long.valueOf(write(channel, key, entry)));
+        frontCache.put(key, entry);
+        recordCount++;
+    }
+
+    /**
+     * Read the entry.
+     * @param offset the offset of the record
+     * @return the entry or null if the record is invalid
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private Entry read(final long offset) throws IOException {
+        final byte[] record = readRecord(offset, channel.size());
+
+        if (record == null) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            in.readUTF();
+
+            return decode(in);
+        } catch (@SuppressWarnings("unused") final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the content of the record and check its CRC.
+     * @param offset the offset of the record
+     * @param size   the size of the index
+     * @return the content of the record or null if the record is incomplete or has a wrong CRC
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private byte[] readRecord(final long offset, final long size) throws IOException {
+        if (offset + Integer.BYTES > size) {
+            return null;
+        }
+
+        final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+
+        if (!readFully(length, offset)) {
+            return null;
+        }
+
+        final int recordLength = length.getInt(0);
+
+        if (recordLength <= 0 || offset + 2L * Integer.BYTES + recordLength > size) {
+            return null;
+        }
+
+        // the content of the record followed by its CRC
+        final ByteBuffer record = ByteBuffer.allocate(recordLength + Integer.BYTES);
+
+        if (!readFully(record, offset + Integer.BYTES)) {
+            return null;
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, recordLength);
+
+        return (int) crc.getValue() == record.getInt(recordLength) ? Arrays.copyOf(record.array(), recordLength) : null;
+    }
+
+    /**
+     * Read the buffer fully from the index.
+     * @param buffer   the buffer
+     * @param position the position in the index
+     * @return true, if the buffer has been filled, false if the end of the index has been reached
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private boolean readFully(final ByteBuffer buffer, final long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Decode the entry.
+     * @param in the input positioned after the path
+     * @return the entry
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static Entry decode(final DataInputStream in) throws IOException {
+        return new Entry(in.readLong(), in.readLong(), in.readUTF(), in.readUTF());
+    }
+
+    /**
+     * Write the record of the entry at the current position of the channel.<br>
+     * The record is made of its length, its content and the CRC-32 of its content.
+     * @param out   the channel
+     * @param key   the path
+     * @param entry the entry
+     * @return the offset of the record
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static long write(final FileChannel out, final String key, final Entry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            data.writeUTF(key);
+            data.writeLong(entry.size);
+            data.writeLong(entry.modificationDate);
+            data.writeUTF(entry.fileKey);
+            data.writeUTF(entry.checksum);
+        }
+
+        final byte[] record = bytes.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        final ByteBuffer buffer = ByteBuffer.allocate(record.length + 2 * Integer.BYTES);
+        buffer.putInt(record.length).put(record).putInt((int) crc.getValue()).flip();
+        final long result = out.position();
+
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+
+        return result;
+    }
+
+    /**
+     * Write the header of the index.
+     * @param out the channel
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void writeHeader(final FileChannel out) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            data.writeInt(VERSION);
+            data.writeUTF(getAlgorithm());
+        }
+
+        out.position(0);
+        out.write(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+}
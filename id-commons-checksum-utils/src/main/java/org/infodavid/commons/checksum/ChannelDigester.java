@@ -0,0 +1,306 @@
+package org.infodavid.commons.checksum;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The Class ChannelDigester.<br>
+ * The digester reads the files using a file channel and direct buffers, each buffer is used to update all the specified digests so that the file is read once. The buffers are taken from a pool shared by the calling threads and given back after each file, at most {@link #POOL_SIZE} buffers are kept between the calls, the other ones are released with their last reference.<br>
+ * For large files, a reader thread of a shared bounded pool fills the buffers of a ring while the calling thread digests the filled ones, so that the I/O and the digest overlap. When all the reader threads are busy, the file is read by the calling thread.
+ */
+final class ChannelDigester {
+
+    /** The Constant BUFFER_COUNT. */
+    static final int BUFFER_COUNT = 4;
+
+    /** The Constant BUFFER_SIZE. */
+    static final int BUFFER_SIZE = 1048576;
+
+    /** The Constant END, the marker of the end of the file in the ring. */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /** The Constant PIPELINE_THRESHOLD. */
+    static final long PIPELINE_THRESHOLD = 8388608;
+
+    /** The Constant POOL_SIZE, the maximum number of buffers kept between the calls. */
+    static final int POOL_SIZE = 2 * BUFFER_COUNT;
+
+    /** The Constant POOL, the free buffers. */
+    private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /** The Constant READERS, the pool of the reader threads, ended after one minute of inactivity. */
+    private static final ExecutorService READERS;
+
+    static {
+        final AtomicInteger counter = new AtomicInteger();
+        READERS = new ThreadPoolExecutor(0, Math.max(2, Runtime.getRuntime().availableProcessors()), 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            final Thread thread = new Thread(r, "checksum-reader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Takes a cleared buffer from the pool or allocates a new one if the pool is empty.
+     * @return the buffer
+     */
+    private static ByteBuffer acquire() {
+        final ByteBuffer result = POOL.poll();
+
+        return result == null ? ByteBuffer.allocateDirect(BUFFER_SIZE) : result.clear();
+    }
+
+    /**
+     * Wait for the end marker added by the reader, the interruptions are deferred so that the buffers are not reused while the reader is running.
+     * @param filled the filled buffers
+     */
+    private static void awaitEnd(final BlockingQueue<ByteBuffer> filled) {
+        boolean interrupted = false;
+
+        while (true) { // NOSONAR Exit on end marker
+            try {
+                if (filled.take() == END) {
+                    break;
+                }
+            } catch (@SuppressWarnings("unused") final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Digest the channel using a single buffer.
+     * @param channel the channel
+     * @param buffer  the buffer
+     * @param digests the digests
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void digest(final FileChannel channel, final ByteBuffer buffer, final MessageDigest[] digests) throws IOException {
+        while (read(channel, buffer) > 0) {
+            buffer.flip();
+            update(buffer, digests);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Digest the channel using a reader thread and a ring of buffers taken from the pool.
+     * @param file    the file
+     * @param channel the channel
+     * @param digests the digests
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void pipeline(final Path file, final FileChannel channel, final MessageDigest[] digests) throws IOException {
+        final ByteBuffer[] buffers = new ByteBuffer[BUFFER_COUNT];
+
+        try {
+            for (int i = 0; i < BUFFER_COUNT; i++) {
+                buffers[i] = acquire();
+            }
+
+            pipeline(file, channel, buffers, digests);
+        } finally {
+            // the reader, if started, has ended
+            for (final ByteBuffer buffer : buffers) {
+                release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Digest the channel using a reader thread and a ring of buffers.
+     * @param file    the file
+     * @param channel the channel
+     * @param buffers the buffers
+     * @param digests the digests
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void pipeline(final Path file, final FileChannel channel, final ByteBuffer[] buffers, final MessageDigest[] digests) throws IOException {
+        final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+        final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        for (final ByteBuffer buffer : buffers) {
+            free.add(buffer);
+        }
+
+        try {
+            READERS.execute(() -> read(channel, free, filled, cancelled, failure));
+        } catch (@SuppressWarnings("unused") final RejectedExecutionException e) {
+            // all the reader threads are busy
+            digest(channel, buffers[0], digests);
+
+            return;
+        }
+
+        boolean ended = false;
+
+        try {
+            ByteBuffer buffer;
+
+            while ((buffer = filled.take()) != END) { // NOSONAR Assignment in condition
+                update(buffer, digests);
+                free.add(buffer);
+            }
+
+            ended = true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw (IOException) new InterruptedIOException("Interrupted while computing the checksum of: " + file).initCause(e);
+        } finally {
+            if (!ended) {
+                // the reader stops on its next buffer, the end marker is always added by the reader
+                cancelled.set(true);
+                free.offer(END);
+                awaitEnd(filled);
+            }
+        }
+
+        final Throwable e = failure.get();
+
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+
+        if (e != null) {
+            throw new IOException("Cannot read the file: " + file, e);
+        }
+    }
+
+    /**
+     * Fill the buffer.
+     * @param channel the channel
+     * @param buffer  the buffer
+     * @return the number of bytes read, 0 if the end of the file is reached
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static int read(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+
+        return buffer.position();
+    }
+
+    /**
+     * Fill the free buffers and add them to the filled ones until the end of the file, a failure or the cancellation, the end marker is always added at the end.<br>
+     * The reader is never interrupted as the interruption closes the channel.
+     * @param channel   the channel
+     * @param free      the free buffers
+     * @param filled    the filled buffers
+     * @param cancelled the cancelled flag
+     * @param failure   the failure
+     */
+    private static void read(final FileChannel channel, final BlockingQueue<ByteBuffer> free, final BlockingQueue<ByteBuffer> filled, final AtomicBoolean cancelled, final AtomicReference<Throwable> failure) {
+        try {
+            while (true) { // NOSONAR Exit on end of file
+                final ByteBuffer buffer = free.take();
+
+                if (buffer == END || cancelled.get()) {
+                    break;
+                }
+
+                buffer.clear();
+
+                if (read(channel, buffer) <= 0) {
+                    break;
+                }
+
+                buffer.flip();
+                filled.add(buffer);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.set(new InterruptedIOException("Reader interrupted").initCause(e));
+        } catch (final Throwable e) { // NOSONAR Reported to the calling thread
+            failure.set(e);
+        } finally {
+            // the queue has room for all the buffers and the end marker
+            filled.add(END);
+        }
+    }
+
+    /**
+     * Gives the buffer back to the pool, the buffer is dropped if the pool is full.
+     * @param buffer the buffer or null
+     */
+    private static void release(final ByteBuffer buffer) {
+        if (buffer != null) {
+            POOL.offer(buffer);
+        }
+    }
+
+    /**
+     * Update the digests using the data of the file.
+     * @param file    the file
+     * @param digests the digests
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    static void update(final Path file, final MessageDigest... digests) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < PIPELINE_THRESHOLD) {
+                final ByteBuffer buffer = acquire();
+
+                try {
+                    digest(channel, buffer, digests);
+                } finally {
+                    release(buffer);
+                }
+            } else {
+                pipeline(file, channel, digests);
+            }
+        }
+    }
+
+    /**
+     * Update the digests using the remaining data of the buffer.
+     * @param buffer  the buffer
+     * @param digests the digests
+     */
+    private static void update(final ByteBuffer buffer, final MessageDigest[] digests) {
+        final int position = buffer.position();
+
+        for (final MessageDigest digest : digests) {
+            buffer.position(position);
+            digest.update(buffer);
+        }
+    }
+
+    /**
+     * Instantiates a new digester.
+     */
+    private ChannelDigester() {
+    }
+}
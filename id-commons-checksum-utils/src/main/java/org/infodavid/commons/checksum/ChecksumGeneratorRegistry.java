@@ -1,10 +1,17 @@
 package org.infodavid.commons.checksum;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.ServiceLoader;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +55,46 @@ public final class ChecksumGeneratorRegistry {
         }
     }
 
+    /**
+     * Computes the checksums of the file using the specified algorithms.<br>
+     * The file is read once and each read buffer is used to update the digests of all the algorithms.
+     * @param file       the file
+     * @param algorithms the algorithms
+     * @return the checksums by algorithm, in the order of the specified algorithms
+     * @throws IOException              Signals that an I/O exception has occurred.
+     * @throws NoSuchAlgorithmException the no such algorithm exception
+     */
+    public Map<String, String> computeAll(final Path file, final String... algorithms) throws IOException, NoSuchAlgorithmException {
+        if (file == null || algorithms == null || algorithms.length == 0) {
+            throw new IllegalArgumentException("Argument is null or empty");
+        }
+
+        if (!Files.exists(file)) { // NOSONAR Using NIO API
+            throw new NoSuchFileException("File not found: " + file.toString());
+        }
+
+        final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+
+        for (final String algorithm : algorithms) {
+            final ChecksumGenerator generator = getGenerator(algorithm);
+
+            if (generator instanceof final AbstractChecksumGenerator g) {
+                digests.put(algorithm, g.getMessageDigest());
+            } else {
+                digests.put(algorithm, MessageDigest.getInstance(generator.getAlgorithm()));
+            }
+        }
+
+        ChannelDigester.update(file, digests.values().toArray(new MessageDigest[digests.size()]));
+        final Map<String, String> result = new LinkedHashMap<>();
+
+        for (final Map.Entry<String, MessageDigest> entry : digests.entrySet()) {
+            result.put(entry.getKey(), Hex.encodeHexString(entry.getValue().digest()));
+        }
+
+        return result;
+    }
+
     /**
      * Gets the generator.
      * @param algorithm the algorithm
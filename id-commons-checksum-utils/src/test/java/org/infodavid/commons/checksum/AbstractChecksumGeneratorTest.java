@@ -10,6 +10,7 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
+import java.util.Random;
 
 import org.infodavid.commons.test.TestCase;
 import org.junit.jupiter.api.Test;
@@ -93,6 +94,25 @@ public abstract class AbstractChecksumGeneratorTest extends TestCase {
         assertEquals("Wrong checksum", expectedChecksum, computed);
     }
 
+    /**
+     * Test get checksum on a file large enough to use the pipeline.
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetChecksumOnLargeFile() throws Exception {
+        final byte[] content = new byte[(int) ChannelDigester.PIPELINE_THRESHOLD * 2 + 12345];
+        new Random(0).nextBytes(content);
+        final Path file = Files.createTempFile(getClass().getSimpleName() + '-', ".tmp");
+
+        try {
+            Files.write(file, content);
+
+            assertEquals("Wrong checksum", generator.getChecksum(content), generator.getChecksum(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
     /**
      * Test get checksum null.
      * @throws Exception the exception
@@ -0,0 +1,163 @@
+package org.infodavid.commons.checksum;
+
+import static org.infodavid.commons.test.Assertions.assertEquals;
+import static org.infodavid.commons.test.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.infodavid.commons.test.TestCase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class CachingChecksumGeneratorTest.
+ */
+public class CachingChecksumGeneratorTest extends TestCase {
+
+    /** The number of checksums computed by the delegate. */
+    private final AtomicInteger computations = new AtomicInteger(0);
+
+    /** The delegate. */
+    private ChecksumGenerator delegate;
+
+    /** The directory. */
+    private Path directory;
+
+    /**
+     * Sets the up.
+     * @throws Exception the exception
+     */
+    @Override
+    @BeforeEach
+    public void setUp() throws Exception {
+        final ChecksumGenerator generator = ChecksumGeneratorRegistry.getInstance().getGenerator(SHA256ChecksumGenerator.ALGORITHM);
+        directory = Files.createTempDirectory(getClass().getSimpleName() + '-');
+        delegate = new ChecksumGenerator() {
+            @Override
+            public String getAlgorithm() {
+                return generator.getAlgorithm();
+            }
+
+            @Override
+            public String getChecksum(final byte[] content) throws IOException {
+                return generator.getChecksum(content);
+            }
+
+            @Override
+            public String getChecksum(final Path file) throws IOException {
+                computations.incrementAndGet();
+
+                return generator.getChecksum(file);
+            }
+
+            @Override
+            public boolean isCommandSupported() {
+                return generator.isCommandSupported();
+            }
+        };
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.infodavid.commons.test.TestCase#tearDown()
+     */
+    @AfterEach
+    @Override
+    public void tearDown() throws Exception {
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+            for (final Path path : paths) {
+                Files.deleteIfExists(path);
+            }
+        }
+
+        Files.deleteIfExists(directory);
+        super.tearDown();
+    }
+
+    /**
+     * Test get checksum using the index.
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetChecksum() throws Exception {
+        final Path file = directory.resolve("data.txt");
+        final Path index = directory.resolve("checksums.idx");
+        Files.write(file, "first".getBytes(StandardCharsets.UTF_8));
+        final String expected = delegate.getChecksum("first".getBytes(StandardCharsets.UTF_8));
+
+        try (CachingChecksumGenerator generator = new CachingChecksumGenerator(delegate, index)) {
+            assertEquals("Wrong checksum", expected, generator.getChecksum(file));
+            assertEquals("Wrong checksum", expected, generator.getChecksum(file));
+            assertEquals("Wrong number of computations", 1, computations.get());
+        }
+
+        try (CachingChecksumGenerator generator = new CachingChecksumGenerator(delegate, index)) {
+            assertEquals("Wrong size", 1, generator.getSize());
+            assertEquals("Wrong checksum", expected, generator.getChecksum(file));
+            assertEquals("Wrong number of computations", 1, computations.get());
+
+            Files.write(file, "second".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+
+            assertEquals("Wrong checksum", delegate.getChecksum("second".getBytes(StandardCharsets.UTF_8)), generator.getChecksum(file));
+            assertEquals("Wrong number of computations", 2, computations.get());
+            assertThrows("Exception not raised or has a wrong type", NoSuchFileException.class, () -> generator.getChecksum(directory.resolve("missing.txt")));
+        }
+    }
+
+    /**
+     * Test get checksum using an index whose last record is corrupted.
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetChecksumWithCorruptedIndex() throws Exception {
+        final Path file1 = directory.resolve("data1.txt");
+        final Path file2 = directory.resolve("data2.txt");
+        final Path index = directory.resolve("checksums.idx");
+        Files.write(file1, "first".getBytes(StandardCharsets.UTF_8));
+        Files.write(file2, "second".getBytes(StandardCharsets.UTF_8));
+        final long length;
+
+        try (CachingChecksumGenerator generator = new CachingChecksumGenerator(delegate, index)) {
+            generator.getChecksum(file1);
+            length = Files.size(index);
+            generator.getChecksum(file2);
+        }
+
+        // the last byte of the record of the second file is altered
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, channel.size() - 1);
+            buffer.put(0, (byte) ~buffer.get(0)).rewind();
+            channel.write(buffer, channel.size() - 1);
+        }
+
+        try (CachingChecksumGenerator generator = new CachingChecksumGenerator(delegate, index)) {
+            assertEquals("Wrong size", 1, generator.getSize());
+            assertEquals("Wrong index length", length, Files.size(index));
+            assertEquals("Wrong checksum", delegate.getChecksum("first".getBytes(StandardCharsets.UTF_8)), generator.getChecksum(file1));
+            assertEquals("Wrong checksum", delegate.getChecksum("second".getBytes(StandardCharsets.UTF_8)), generator.getChecksum(file2));
+            assertEquals("Wrong number of computations", 3, computations.get());
+        }
+
+        // a record whose length has been written without its content
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 64));
+        }
+
+        try (CachingChecksumGenerator generator = new CachingChecksumGenerator(delegate, index)) {
+            assertEquals("Wrong size", 2, generator.getSize());
+        }
+    }
+}
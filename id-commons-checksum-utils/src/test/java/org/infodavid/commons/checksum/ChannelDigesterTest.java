@@ -0,0 +1,109 @@
+package org.infodavid.commons.checksum;
+
+import static org.infodavid.commons.test.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import org.infodavid.commons.test.TestCase;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class ChannelDigesterTest.
+ */
+class ChannelDigesterTest extends TestCase {
+
+    /**
+     * The Class FailingDigest.<br>
+     * The digest fails on its second update.
+     */
+    private static class FailingDigest extends MessageDigest {
+
+        /** The number of updates. */
+        private int updates = 0;
+
+        /**
+         * Instantiates a new failing digest.
+         */
+        protected FailingDigest() {
+            super("failing");
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.security.MessageDigestSpi#engineDigest()
+         */
+        @Override
+        protected byte[] engineDigest() {
+            return new byte[0];
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.security.MessageDigestSpi#engineReset()
+         */
+        @Override
+        protected void engineReset() {
+            updates = 0;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.security.MessageDigestSpi#engineUpdate(byte)
+         */
+        @Override
+        protected void engineUpdate(final byte input) {
+            engineUpdate(new byte[] { input }, 0, 1);
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.security.MessageDigestSpi#engineUpdate(java.nio.ByteBuffer)
+         */
+        @Override
+        protected void engineUpdate(final ByteBuffer input) {
+            if (++updates > 1) {
+                throw new IllegalStateException("Digest failure");
+            }
+
+            input.position(input.limit());
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.security.MessageDigestSpi#engineUpdate(byte[], int, int)
+         */
+        @Override
+        protected void engineUpdate(final byte[] input, final int offset, final int len) {
+            engineUpdate(ByteBuffer.wrap(input, offset, len));
+        }
+    }
+
+    /**
+     * Test a failure of a digest while using the pipeline is propagated and the buffers are reusable.
+     * @throws Exception the exception
+     */
+    @Test
+    void testUpdateWithFailingDigest() throws Exception {
+        final byte[] content = new byte[(int) ChannelDigester.PIPELINE_THRESHOLD * 2];
+        new Random(0).nextBytes(content);
+        final Path file = Files.createTempFile(getClass().getSimpleName() + '-', ".tmp");
+
+        try {
+            Files.write(file, content);
+
+            assertThrows("Exception not raised or has a wrong type", IllegalStateException.class, () -> ChannelDigester.update(file, new FailingDigest()));
+
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ChannelDigester.update(file, digest);
+
+            assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content), digest.digest(), "Wrong digest");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.infodavid.commons.checksum;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.infodavid.commons.test.TestCase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class ChecksumGeneratorManualTest.<br>
+ * The test compares the durations of the in-process engine and of the external commands on a large file.<br>
+ * The size of the file in megabytes can be specified using the system property <code>checksum.benchmark.size</code>.
+ */
+class ChecksumGeneratorManualTest extends TestCase {
+
+    /** The Constant ITERATIONS. */
+    private static final int ITERATIONS = 3;
+
+    /** The file. */
+    private Path file;
+
+    /**
+     * Sets the up.
+     * @throws Exception the exception
+     */
+    @Override
+    @BeforeEach
+    public void setUp() throws Exception {
+        final byte[] block = new byte[1048576];
+        final long size = Long.getLong("checksum.benchmark.size", 1024).longValue();
+        final Random random = new Random(0);
+        file = Files.createTempFile(getClass().getSimpleName() + '-', ".tmp");
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long i = 0; i < size; i++) {
+                random.nextBytes(block);
+                out.write(block);
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.infodavid.commons.test.TestCase#tearDown()
+     */
+    @AfterEach
+    @Override
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+        super.tearDown();
+    }
+
+    /**
+     * Test the in-process engine against the external commands.
+     * @throws Exception the exception
+     */
+    @Test
+    void testCompareWithCommand() throws Exception {
+        for (final String algorithm : new String[] {
+                MD5ChecksumGenerator.ALGORITHM, SHA256ChecksumGenerator.ALGORITHM, SHA512ChecksumGenerator.ALGORITHM
+        }) {
+            final AbstractChecksumGenerator generator = (AbstractChecksumGenerator) ChecksumGeneratorRegistry.getInstance().getGenerator(algorithm);
+            generator.setCommandPreferred(false);
+            final String expected = generator.getChecksum(file);
+            final long inProcess = measure(generator);
+            System.out.println(algorithm + " in-process: " + inProcess + " ms");
+
+            if (generator.isCommandSupported()) {
+                generator.setCommandPreferred(true);
+
+                try {
+                    assertEquals(expected, generator.getChecksum(file), "Wrong checksum");
+                    System.out.println(algorithm + " command: " + measure(generator) + " ms");
+                } finally {
+                    generator.setCommandPreferred(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Measure the average duration of the checksum of the file.
+     * @param generator the generator
+     * @return the duration in milliseconds
+     * @throws Exception the exception
+     */
+    private long measure(final ChecksumGenerator generator) throws Exception {
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            generator.getChecksum(file);
+        }
+
+        return (System.nanoTime() - start) / ITERATIONS / 1000000;
+    }
+}
@@ -0,0 +1,52 @@
+package org.infodavid.commons.checksum;
+
+import static org.infodavid.commons.test.Assertions.assertEquals;
+import static org.infodavid.commons.test.Assertions.assertThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import org.infodavid.commons.test.TestCase;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class ChecksumGeneratorRegistryTest.
+ */
+public class ChecksumGeneratorRegistryTest extends TestCase {
+
+    /**
+     * Test compute all.
+     * @throws Exception the exception
+     */
+    @Test
+    public void testComputeAll() throws Exception {
+        final Path file = AbstractChecksumGeneratorTest.getTestPath();
+        final byte[] content = Files.readAllBytes(file);
+        final ChecksumGeneratorRegistry registry = ChecksumGeneratorRegistry.getInstance();
+        final Map<String, String> results = registry.computeAll(file, MD5ChecksumGenerator.ALGORITHM, SHA256ChecksumGenerator.ALGORITHM, SHA512ChecksumGenerator.ALGORITHM);
+
+        assertEquals("Wrong number of checksums", 3, results.size());
+        assertEquals("Wrong checksum", registry.getGenerator(MD5ChecksumGenerator.ALGORITHM).getChecksum(content), results.get(MD5ChecksumGenerator.ALGORITHM));
+        assertEquals("Wrong checksum", registry.getGenerator(SHA256ChecksumGenerator.ALGORITHM).getChecksum(content), results.get(SHA256ChecksumGenerator.ALGORITHM));
+        assertEquals("Wrong checksum", registry.getGenerator(SHA512ChecksumGenerator.ALGORITHM).getChecksum(content), results.get(SHA512ChecksumGenerator.ALGORITHM));
+    }
+
+    /**
+     * Test compute all with invalid arguments.
+     * @throws Exception the exception
+     */
+    @Test
+    public void testComputeAllWithInvalid() throws Exception {
+        final ChecksumGeneratorRegistry registry = ChecksumGeneratorRegistry.getInstance();
+        final Path file = AbstractChecksumGeneratorTest.getTestPath();
+        final Path missing = new File("target/test-classes/missing_image.png").toPath();
+
+        assertThrows("Exception not raised or has a wrong type", IllegalArgumentException.class, () -> registry.computeAll(file));
+        assertThrows("Exception not raised or has a wrong type", NoSuchFileException.class, () -> registry.computeAll(missing, MD5ChecksumGenerator.ALGORITHM));
+        assertThrows("Exception not raised or has a wrong type", NoSuchAlgorithmException.class, () -> registry.computeAll(file, "unknown"));
+    }
+}
@@ -3,6 +3,7 @@ module org.infodavid.commons.io {
 
     requires transitive com.github.benmanes.caffeine;
     requires transitive java.logging;
+    requires transitive java.management;
     requires transitive jwildcard;
     requires transitive org.apache.commons.codec;
     requires transitive org.apache.commons.collections4;
@@ -0,0 +1,425 @@
+package org.infodavid.commons.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.function.IOPredicate;
+
+/**
+ * The Class AttributesUpdater.<br>
+ * The updater applies the same owner or permissions to the entries of a tree: the principals are resolved once by the caller, the attribute views supported by each file system are cached and the paths are processed by batches using several threads.<br>
+ * The attributes of each path are read before being written so that the paths already having the expected attributes are skipped and reported as {@link FileProcessingListener#UNCHANGED}. The symbolic links are not followed nor updated.
+ */
+final class AttributesUpdater {
+
+    /**
+     * The Class BatchVisitor.<br>
+     * The visitor groups the paths by batches processed by the executor, the number of pending batches being bounded.
+     */
+    private class BatchVisitor extends SimpleFileVisitor<Path> {
+
+        /** The current batch. */
+        private List<Path> batch = new ArrayList<>(BATCH_SIZE);
+
+        /** The directory. */
+        private final Path dir;
+
+        /** The executor or null if the batches are processed by the walking thread. */
+        private final ExecutorService executor;
+
+        /** The pending batches. */
+        private final Deque<Future<Void>> futures = new ArrayDeque<>();
+
+        /** The parallelism. */
+        private final int parallelism;
+
+        /**
+         * Instantiates a new visitor.
+         * @param dir         the directory
+         * @param parallelism the maximum number of threads
+         */
+        BatchVisitor(final Path dir, final int parallelism) {
+            this.dir = dir;
+            this.parallelism = parallelism;
+            executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism, r -> {
+                final Thread thread = new Thread(r, "attributes-updater");
+                thread.setDaemon(true);
+
+                return thread;
+            }) : null;
+        }
+
+        /**
+         * Adds the path to the current batch and submit it if full.
+         * @param p the path
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        private void add(final Path p) throws IOException {
+            batch.add(p);
+
+            if (batch.size() >= BATCH_SIZE) {
+                submit();
+            }
+        }
+
+        /**
+         * Process the last batch and wait for the pending ones.
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        void flush() throws IOException {
+            process(batch);
+
+            while (!futures.isEmpty()) {
+                await(futures);
+            }
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.nio.file.SimpleFileVisitor#preVisitDirectory(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
+         */
+        @Override
+        public FileVisitResult preVisitDirectory(final Path p, final BasicFileAttributes attrs) throws IOException {
+            if (!dir.equals(p)) {
+                add(p);
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        /**
+         * Shutdown the executor.
+         */
+        void shutdown() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * Submit the current batch.
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        private void submit() throws IOException {
+            final List<Path> submitted = batch;
+            batch = new ArrayList<>(BATCH_SIZE);
+
+            if (executor == null) {
+                process(submitted);
+
+                return;
+            }
+
+            futures.add(executor.submit(() -> {
+                process(submitted);
+
+                return null;
+            }));
+
+            while (futures.size() > parallelism * 2) {
+                await(futures);
+            }
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.nio.file.SimpleFileVisitor#visitFile(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
+         */
+        @Override
+        public FileVisitResult visitFile(final Path p, final BasicFileAttributes attrs) throws IOException {
+            if (!attrs.isSymbolicLink()) {
+                add(p);
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.nio.file.SimpleFileVisitor#visitFileFailed(java.lang.Object, java.io.IOException)
+         */
+        @Override
+        public FileVisitResult visitFileFailed(final Path p, final IOException e) throws IOException {
+            if (listener == null) {
+                throw e;
+            }
+
+            listener.failed(p, e);
+
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    /** The Constant BATCH_SIZE, the number of paths processed by a task. */
+    static final int BATCH_SIZE = 256;
+
+    /** The Constant VIEWS, the names of the attribute views supported by each file system. */
+    private static final Map<FileSystem, Set<String>> VIEWS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Wait for the oldest task.
+     * @param futures the futures
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void await(final Deque<Future<Void>> futures) throws IOException {
+        try {
+            futures.removeFirst().get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw (IOException) new InterruptedIOException("Interrupted while updating attributes").initCause(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof final IOException ioe) {
+                throw ioe;
+            }
+
+            if (e.getCause() instanceof final RuntimeException re) {
+                throw re;
+            }
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Checks if the attribute view is supported by the file system of the path.
+     * @param path the path
+     * @param name the name of the view
+     * @return true, if supported
+     */
+    private static boolean isSupported(final Path path, final String name) {
+        return VIEWS.computeIfAbsent(path.getFileSystem(), FileSystem::supportedFileAttributeViews).contains(name);
+    }
+
+    /**
+     * Merge the ACL entries with the current ones.<br>
+     * The permissions given for a principal are removed from its current entries, the entries becoming empty are removed and the given entries are added first.
+     * @param current  the current entries
+     * @param specific the given entries
+     * @return the entries
+     */
+    static List<AclEntry> mergeAcl(final List<AclEntry> current, final Set<AclEntry> specific) {
+        final List<AclEntry> result = new ArrayList<>(specific);
+
+        for (final AclEntry entry : current) {
+            final Set<AclEntryPermission> permissions = entry.permissions().isEmpty() ? EnumSet.noneOf(AclEntryPermission.class) : EnumSet.copyOf(entry.permissions());
+
+            for (final AclEntry item : specific) {
+                if (item.principal().equals(entry.principal())) {
+                    permissions.removeAll(item.permissions());
+                }
+            }
+
+            if (permissions.size() == entry.permissions().size()) {
+                if (!result.contains(entry)) {
+                    result.add(entry);
+                }
+            } else if (!permissions.isEmpty()) {
+                result.add(AclEntry.newBuilder(entry).setPermissions(permissions).build());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates an updater setting the owner and the group.
+     * @param owner    the owner
+     * @param group    the group or null to keep the current one
+     * @param listener the listener
+     * @return the updater
+     */
+    static AttributesUpdater owner(final UserPrincipal owner, final GroupPrincipal group, final FileProcessingListener listener) {
+        return new AttributesUpdater(p -> {
+            if (isSupported(p, "posix")) {
+                final PosixFileAttributeView view = Files.getFileAttributeView(p, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+                final PosixFileAttributes attributes = view.readAttributes();
+                boolean changed = false;
+
+                if (!owner.equals(attributes.owner())) {
+                    view.setOwner(owner);
+                    changed = true;
+                }
+
+                if (group != null && !group.equals(attributes.group())) {
+                    view.setGroup(group);
+                    changed = true;
+                }
+
+                return changed;
+            }
+
+            final FileOwnerAttributeView view = Files.getFileAttributeView(p, FileOwnerAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+
+            if (owner.equals(view.getOwner())) {
+                return false;
+            }
+
+            view.setOwner(owner);
+
+            return true;
+        }, FileProcessingListener.OWNER_CHANGED, listener);
+    }
+
+    /**
+     * Creates an updater setting the permissions using the ACL if supported or the POSIX permissions.<br>
+     * The {@link AclEntryPermission#DELETE_CHILD} permission is only applied to the directories.
+     * @param acl      the ACL
+     * @param listener the listener
+     * @return the updater
+     */
+    static AttributesUpdater permissions(final Set<AclEntry> acl, final FileProcessingListener listener) {
+        final Set<AclEntry> fileAcl = new LinkedHashSet<>();
+
+        for (final AclEntry entry : acl) {
+            if (entry.permissions().contains(AclEntryPermission.DELETE_CHILD)) {
+                final Set<AclEntryPermission> permissions = EnumSet.copyOf(entry.permissions());
+                permissions.remove(AclEntryPermission.DELETE_CHILD);
+                fileAcl.add(AclEntry.newBuilder(entry).setPermissions(permissions).build());
+            } else {
+                fileAcl.add(entry);
+            }
+        }
+
+        return new AttributesUpdater(p -> {
+            if (isSupported(p, "acl")) {
+                final AclFileAttributeView view = Files.getFileAttributeView(p, AclFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+                final List<AclEntry> current = view.getAcl();
+                final List<AclEntry> expected = mergeAcl(current, Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS) ? acl : fileAcl);
+
+                if (expected.equals(current)) {
+                    return false;
+                }
+
+                view.setAcl(expected);
+
+                return true;
+            }
+
+            if (!isSupported(p, "posix")) {
+                throw new UnsupportedOperationException("Permissions are not supported: " + p);
+            }
+
+            final PosixFileAttributeView view = Files.getFileAttributeView(p, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+            final PosixFileAttributes attributes = view.readAttributes();
+            final Set<PosixFilePermission> expected = PathUtilities.getPosixPermissions(attributes, attributes.isDirectory() ? acl : fileAcl);
+
+            if (expected.equals(attributes.permissions())) {
+                return false;
+            }
+
+            view.setPermissions(expected);
+
+            return true;
+        }, FileProcessingListener.PERMISSIONS_CHANGED, listener);
+    }
+
+    /** The action reported when the attributes are changed. */
+    private final byte action;
+
+    /** The listener. */
+    private final FileProcessingListener listener;
+
+    /** The update, returning true if the attributes have been changed. */
+    private final IOPredicate<Path> update;
+
+    /**
+     * Instantiates a new updater.
+     * @param update   the update
+     * @param action   the action
+     * @param listener the listener
+     */
+    private AttributesUpdater(final IOPredicate<Path> update, final byte action, final FileProcessingListener listener) {
+        this.update = update;
+        this.action = action;
+        this.listener = listener;
+    }
+
+    /**
+     * Update the paths of the batch, the failures being reported to the listener if any.
+     * @param batch the batch
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void process(final List<Path> batch) throws IOException {
+        for (final Path p : batch) {
+            try {
+                update(p);
+            } catch (final IOException e) {
+                if (listener == null) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the path.
+     * @param path the path
+     * @throws IOException Signals that an I/O exception has occurred, also reported to the listener if any.
+     */
+    void update(final Path path) throws IOException {
+        final boolean changed;
+
+        try {
+            changed = update.test(path);
+        } catch (final IOException e) {
+            if (listener != null) {
+                listener.failed(path, e);
+            }
+
+            throw e;
+        }
+
+        if (listener != null) {
+            listener.processed(path, changed ? action : FileProcessingListener.UNCHANGED);
+        }
+    }
+
+    /**
+     * Update the entries of the directory recursively, the directory itself excepted.<br>
+     * When parallelism is greater than 1, the listener must be thread-safe.
+     * @param dir         the directory
+     * @param parallelism the maximum number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    void walk(final Path dir, final int parallelism) throws IOException {
+        final BatchVisitor visitor = new BatchVisitor(dir, parallelism);
+
+        try {
+            Files.walkFileTree(dir, visitor);
+            visitor.flush();
+        } finally {
+            visitor.shutdown();
+        }
+    }
+}
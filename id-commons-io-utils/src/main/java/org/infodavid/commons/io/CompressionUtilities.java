@@ -17,6 +17,9 @@ import org.apache.commons.compress.archivers.ArchiveException;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
 
 /**
  * The Class CompressionUtilities.
@@ -28,6 +31,21 @@ public final class CompressionUtilities {
     /** The singleton. */
     private static WeakReference<CompressionUtilities> instance = null;
 
+    /** The Constant DEFAULT_BUFFER_SIZE, the default size of the blocks handed over to the compression stage. */
+    public static final int DEFAULT_BUFFER_SIZE = 1048576;
+
+    /** The Constant TAR_GZ. */
+    public static final String TAR_GZ = "tar.gz";
+
+    /** The Constant TAR_XZ, requires org.tukaani:xz. */
+    public static final String TAR_XZ = "tar.xz";
+
+    /** The Constant TAR_ZST, requires com.github.luben:zstd-jni. */
+    public static final String TAR_ZST = "tar.zst";
+
+    /** The Constant TGZ. */
+    public static final String TGZ = "tgz";
+
     /** The Constant ZIP. */
     private static final String ZIP = "zip";
 
@@ -75,77 +93,62 @@ public final class CompressionUtilities {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public void compress(final Path path, final String type, final OutputStream out, final byte level, final Collection<String> excluded, final boolean includeHidden, final FileProcessingListener listener) throws IOException {
+        compress(path, type, out, level, excluded, includeHidden, listener, 1, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Compress.<br>
+     * The ZIP archives are compressed using several threads when parallelism is greater than 1, see {@link PathUtilities#zip(Path, OutputStream, byte, Collection, boolean, FileProcessingListener, int)}, the other types are compressed by the calling thread.
+     * @param path          the path
+     * @param type          the type
+     * @param out           the out
+     * @param level         the level
+     * @param excluded      the excluded
+     * @param includeHidden the include hidden
+     * @param listener      the listener
+     * @param parallelism   the maximum number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void compress(final Path path, final String type, final OutputStream out, final byte level, final Collection<String> excluded, final boolean includeHidden, final FileProcessingListener listener, final int parallelism) throws IOException {
+        compress(path, type, out, level, excluded, includeHidden, listener, parallelism, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Compress.<br>
+     * For the {@link #TAR_GZ}, {@link #TAR_XZ} and {@link #TAR_ZST} types, the tar entries are written by the calling thread while the compression runs on a separate stage using the given number of threads for gzip and a single thread for the other formats, see {@link PipelinedCompressorOutputStream}.<br>
+     * For the ZIP type, the entries are compressed using the given number of threads, the other types are written by the calling thread.
+     * @param path          the path
+     * @param type          the type
+     * @param out           the out
+     * @param level         the level
+     * @param excluded      the excluded
+     * @param includeHidden the include hidden
+     * @param listener      the listener
+     * @param parallelism   the maximum number of threads
+     * @param bufferSize    the size of the blocks handed over to the compression stage
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void compress(final Path path, final String type, final OutputStream out, final byte level, final Collection<String> excluded, final boolean includeHidden, final FileProcessingListener listener, final int parallelism, final int bufferSize) throws IOException {
         if (ZIP.equalsIgnoreCase(type)) {
-            PathUtilities.getInstance().zip(path, out, level, excluded, includeHidden, listener);
+            PathUtilities.getInstance().zip(path, out, level, excluded, includeHidden, listener, parallelism);
 
             return;
         }
 
-        final ArchiveStreamFactory archiveStreamFactory = new ArchiveStreamFactory();
-
-        if (Files.isRegularFile(path)) {
-            try (ArchiveOutputStream aos = archiveStreamFactory.createArchiveOutputStream(type, out)) {
-                final ArchiveEntry entry = aos.createArchiveEntry(path, path.getFileName().toString());
-
-                try {
-                    aos.putArchiveEntry(entry);
-                    Files.copy(path, aos);
-                    aos.closeArchiveEntry();
-                } catch (final IOException e) {
-                    if (listener != null) {
-                        listener.failed(path, e);
-                    }
+        final String compressor = getCompressor(type);
 
-                    throw e;          }
+        if (compressor != null) {
+            final TarArchiveOutputStream tos = new TarArchiveOutputStream(new PipelinedCompressorOutputStream(out, compressor, level, parallelism, bufferSize));
+            tos.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tos.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            compress(path, tos, excluded, includeHidden, listener);
 
-                if (listener != null) {
-                    listener.processed(path, FileProcessingListener.COMPRESSED);
-                }
-            } catch (final ArchiveException e) {
-                throw new IOException(e);
-            }
+            return;
         }
 
-        final Predicate<Path> filter = new FilterPredicate(Collections.emptyList(), excluded, includeHidden);
-
-        try (ArchiveOutputStream aos = archiveStreamFactory.createArchiveOutputStream(type, out)) {
-            PathUtilities.getInstance().walk(path, filter, p -> {
-                if (path.equals(p)) {
-                    return;
-                }
-
-                try {
-                    final ArchiveEntry entry = aos.createArchiveEntry(path, path.relativize(p).toString());
-                    aos.putArchiveEntry(entry);
-
-                    if (Files.isRegularFile(p)) {
-                        Files.copy(p, aos);
-                    }
-
-                    aos.closeArchiveEntry();
-                } catch (final IOException e) {
-                    if (listener != null) {
-                        try {
-                            listener.failed(p, e);
-                        } catch (final IOException e1) {
-                            throw new RuntimeException(e1); //NOSONAR Exception in lambda
-                        }
-                    }
-
-                    throw new RuntimeException(e); //NOSONAR Exception in lambda
-                }
-
-                if (listener != null) {
-                    listener.processed(p, FileProcessingListener.COMPRESSED);
-                }
-            });
-        } catch (final ArchiveException  e) {
-            throw new IOException(e);
-        } catch (final Exception e) {
-            if (e.getCause() instanceof final IOException ioe) {
-                throw ioe;
-            }
-
+        try {
+            compress(path, new ArchiveStreamFactory().createArchiveOutputStream(type, out), excluded, includeHidden, listener);
+        } catch (final ArchiveException e) {
             throw new IOException(e);
         }
     }
@@ -209,6 +212,113 @@ public final class CompressionUtilities {
         compress(path, type, file, (byte) 1, excluded, includeHidden);
     }
 
+    /**
+     * Write the file or the files of the directory in the archive and close it.
+     * @param path          the path
+     * @param aos           the archive output stream
+     * @param excluded      the excluded
+     * @param includeHidden the include hidden
+     * @param listener      the listener
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void compress(final Path path, final ArchiveOutputStream aos, final Collection<String> excluded, final boolean includeHidden, final FileProcessingListener listener) throws IOException {
+        try (aos) {
+            if (Files.isRegularFile(path)) {
+                putArchiveEntry(aos, path, path.getFileName().toString(), listener);
+
+                return;
+            }
+
+            final Predicate<Path> filter = new FilterPredicate(Collections.emptyList(), excluded, includeHidden);
+
+            PathUtilities.getInstance().walk(path, filter, p -> {
+                if (path.equals(p)) {
+                    return;
+                }
+
+                try {
+                    putArchiveEntry(aos, p, path.relativize(p).toString(), listener);
+                } catch (final IOException e) {
+                    throw new RuntimeException(e); //NOSONAR Exception in lambda
+                }
+            });
+        } catch (final IOException e) {
+            throw e;
+        } catch (final Exception e) {
+            if (e.getCause() instanceof final IOException ioe) {
+                throw ioe;
+            }
+
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Gets the compressor associated to the type of archive.
+     * @param type the type
+     * @return the compressor name or null if the type is not a compressed tar
+     */
+    private static String getCompressor(final String type) {
+        if (TAR_GZ.equalsIgnoreCase(type) || TGZ.equalsIgnoreCase(type)) {
+            return CompressorStreamFactory.GZIP;
+        }
+
+        if (TAR_XZ.equalsIgnoreCase(type)) {
+            return CompressorStreamFactory.XZ;
+        }
+
+        if (TAR_ZST.equalsIgnoreCase(type)) {
+            return CompressorStreamFactory.ZSTANDARD;
+        }
+
+        return null;
+    }
+
+    /**
+     * Write the entry in the archive.
+     * @param aos      the archive output stream
+     * @param p        the path
+     * @param name     the name of the entry
+     * @param listener the listener
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void putArchiveEntry(final ArchiveOutputStream aos, final Path p, final String name, final FileProcessingListener listener) throws IOException {
+        try {
+            final ArchiveEntry entry = aos.createArchiveEntry(p, name);
+            aos.putArchiveEntry(entry);
+
+            if (Files.isRegularFile(p)) {
+                Files.copy(p, aos);
+            }
+
+            aos.closeArchiveEntry();
+        } catch (final IOException e) {
+            if (listener != null) {
+                listener.failed(p, e);
+            }
+
+            throw e;
+        }
+
+        if (listener != null) {
+            listener.processed(p, FileProcessingListener.COMPRESSED);
+        }
+    }
+
+    /**
+     * Decompress the stream if compressed, as the compressed tar archives.
+     * @param in the input stream supporting mark
+     * @return the decompressed stream or the given one
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static InputStream decompress(final InputStream in) throws IOException {
+        try {
+            return new CompressorStreamFactory().createCompressorInputStream(CompressorStreamFactory.detect(in), in, true);
+        } catch (@SuppressWarnings("unused") final CompressorException e) {
+            return in;
+        }
+    }
+
     /**
      * Extract.
      * @param in       the in
@@ -232,11 +342,11 @@ public final class CompressionUtilities {
         final Predicate<Path> filter = new FilterPredicate(Collections.emptyList(), excluded, true);
         final ArchiveStreamFactory archiveStreamFactory = new ArchiveStreamFactory();
 
-        try (BufferedInputStream bis = new BufferedInputStream(in); ArchiveInputStream ais = archiveStreamFactory.createArchiveInputStream(bis)) {
+        try (BufferedInputStream bis = new BufferedInputStream(decompress(new BufferedInputStream(in))); ArchiveInputStream ais = archiveStreamFactory.createArchiveInputStream(bis)) {
             ArchiveEntry entry;
 
             while ((entry = ais.getNextEntry()) != null) {
-                final Path path = dir.resolve(entry.getName());
+                final Path path = PathUtilities.resolveArchiveEntry(dir, entry.getName());
 
                 if (!filter.test(path)) {
                     continue;
@@ -272,12 +382,26 @@ public final class CompressionUtilities {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public void extract(final Path file, final Path dir, final Collection<String> excluded, final FileProcessingListener listener) throws IOException {
+        extract(file, dir, excluded, listener, 1);
+    }
+
+    /**
+     * Extract.<br>
+     * The ZIP files are extracted using the given number of threads, the other types are read sequentially.
+     * @param file        the file
+     * @param dir         the directory
+     * @param excluded    the excluded
+     * @param listener    the listener
+     * @param parallelism the maximum number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void extract(final Path file, final Path dir, final Collection<String> excluded, final FileProcessingListener listener, final int parallelism) throws IOException {
         PathUtilities.assertReadable(file);
         PathUtilities.assertFile(file);
         final PathUtilities utils = PathUtilities.getInstance();
 
         if (utils.isValidZipFile(file)) {
-            utils.unzip(file, dir, excluded, listener);
+            utils.unzip(file, dir, excluded, listener, parallelism);
 
             return;
         }
@@ -1,5 +1,7 @@
 package org.infodavid.commons.io;
 
+import java.nio.ByteBuffer;
+
 /**
  * The Class Content.
  */
@@ -8,17 +10,44 @@ class Content {
     /** The content. */
     private final byte[] data;
 
+    /** The entity tag. */
+    private final String eTag;
+
     /** The modification date. */
     private final long modificationDate;
 
+    /** The date of the last validation against the origin. */
+    private volatile long validationDate;
+
     /**
      * Instantiates a new content.
      * @param data the data
      * @param modificationDate the modification date
      */
     public Content(final byte[] data, final long modificationDate) {
+        this(data, modificationDate, null);
+    }
+
+    /**
+     * Instantiates a new content.
+     * @param data             the data
+     * @param modificationDate the modification date
+     * @param eTag             the entity tag
+     */
+    public Content(final byte[] data, final long modificationDate, final String eTag) {
         this.data = data;
         this.modificationDate = modificationDate;
+        this.eTag = eTag;
+        validationDate = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the read-only buffer.<br>
+     * The returned buffer is a new view, its position and limit can be changed without side effect on the content.
+     * @return the buffer
+     */
+    public ByteBuffer getBuffer() {
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
     }
 
     /**
@@ -29,6 +58,22 @@ class Content {
         return data;
     }
 
+    /**
+     * Gets the entity tag.
+     * @return the entity tag or null if unknown
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Gets the size of the data held on the heap.
+     * @return the size
+     */
+    public int getHeapSize() {
+        return data == null ? 0 : data.length;
+    }
+
     /**
      * Gets the modification date.
      * @return the modification date
@@ -36,4 +81,28 @@ class Content {
     public long getModificationDate() {
         return modificationDate;
     }
+
+    /**
+     * Gets the date of the last validation against the origin.
+     * @return the validation date
+     */
+    public long getValidationDate() {
+        return validationDate;
+    }
+
+    /**
+     * Sets the date of the last validation against the origin.
+     * @param validationDate the validation date
+     */
+    public void setValidationDate(final long validationDate) {
+        this.validationDate = validationDate;
+    }
+
+    /**
+     * Gets the size of the data held outside of the heap.
+     * @return the size
+     */
+    public long getOffHeapSize() {
+        return 0;
+    }
 }
@@ -0,0 +1,92 @@
+package org.infodavid.commons.io;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * The interface ContentFetcher.<br>
+ * The fetcher is used by the {@link FileCache} to retrieve the contents of the remote URIs and to revalidate them using their validators.
+ */
+public interface ContentFetcher {
+
+    /**
+     * The Class Response.
+     */
+    final class Response {
+
+        /** The not modified response. */
+        private static final Response NOT_MODIFIED = new Response(null, -1, null);
+
+        /**
+         * Returns the response indicating that the content has not been modified since the specified validators.
+         * @return the response
+         */
+        public static Response notModified() {
+            return NOT_MODIFIED;
+        }
+
+        /** The data. */
+        private final byte[] data;
+
+        /** The entity tag. */
+        private final String eTag;
+
+        /** The last modification date. */
+        private final long lastModified;
+
+        /**
+         * Instantiates a new response.
+         * @param data         the data
+         * @param lastModified the last modification date or 0 if unknown
+         * @param eTag         the entity tag or null if unknown
+         */
+        public Response(final byte[] data, final long lastModified, final String eTag) {
+            this.data = data;
+            this.lastModified = lastModified;
+            this.eTag = eTag;
+        }
+
+        /**
+         * Gets the data.
+         * @return the data
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * Gets the entity tag.
+         * @return the entity tag
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Gets the last modification date.
+         * @return the last modification date
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Checks if the content has not been modified.
+         * @return true, if the cached content is still valid
+         */
+        public boolean isNotModified() {
+            return this == NOT_MODIFIED;
+        }
+    }
+
+    /**
+     * Fetch the content.<br>
+     * When validators are specified, the fetcher should only transfer the content if it has been modified and return {@link Response#notModified()} otherwise.
+     * @param uri          the URI
+     * @param lastModified the last modification date of the cached content or 0 to fetch the content unconditionally
+     * @param eTag         the entity tag of the cached content or null
+     * @return the response
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    Response fetch(URI uri, long lastModified, String eTag) throws IOException;
+}
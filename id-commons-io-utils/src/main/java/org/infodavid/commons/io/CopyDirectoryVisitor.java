@@ -1,27 +1,75 @@
 package org.infodavid.commons.io;
 
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The Class CopyDirectoryVisitor.
+ * The Class CopyDirectoryVisitor.<br>
+ * Using {@link ExtendedCopyOption#CHANNEL_TRANSFER}, the regular files are copied by a {@link FileChannelCopier}.<br>
+ * In synchronization mode, the files having the same size and modification time in the target are skipped and reported as {@link FileProcessingListener#UNCHANGED}, the other ones are copied using the given options and the extraneous entries of the target can be deleted. {@link StandardCopyOption#COPY_ATTRIBUTES} has to be given so that the modification time of the copied files is the one of their source.<br>
+ * The synchronized files and links are first written to a temporary sibling which is then atomically moved over the target, when supported by the file system, so that the readers of the target never see a partially copied file.
  */
 class CopyDirectoryVisitor extends SimpleFileVisitor<Path> {
 
     /** The Constant LOGGER. */
     private static final Logger LOGGER = LoggerFactory.getLogger(CopyDirectoryVisitor.class);
 
+    /**
+     * Checks if the target is up to date.
+     * @param file        the source file
+     * @param attrs       the attributes of the source file
+     * @param p           the target path
+     * @param targetAttrs the attributes of the target path
+     * @return true, if up to date
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static boolean isUpToDate(final Path file, final BasicFileAttributes attrs, final Path p, final BasicFileAttributes targetAttrs) throws IOException {
+        if (attrs.isSymbolicLink()) {
+            return targetAttrs.isSymbolicLink() && Files.readSymbolicLink(file).equals(Files.readSymbolicLink(p));
+        }
+
+        return targetAttrs.isRegularFile() && attrs.size() == targetAttrs.size() && attrs.lastModifiedTime().toMillis() == targetAttrs.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Move the temporary file over the target, atomically if supported by the file system.
+     * @param temp   the temporary file
+     * @param target the target
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void replace(final Path temp, final Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (@SuppressWarnings("unused") final AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** The delete extraneous flag. */
+    private boolean deleteExtraneous = false;
+
+    /** The channel transfer flag. */
+    private final boolean channelTransfer;
+
     /** The excluded. */
     private final Set<String> excluded = new HashSet<>();
 
@@ -40,6 +88,9 @@ class CopyDirectoryVisitor extends SimpleFileVisitor<Path> {
     /** The source. */
     private final Path source;
 
+    /** The synchronization mode. */
+    private boolean synchronize = false;
+
     /** The target. */
     private final Path target;
 
@@ -54,7 +105,8 @@ class CopyDirectoryVisitor extends SimpleFileVisitor<Path> {
         this.move = move;
         this.source = source;
         this.target = target;
-        this.options = options;
+        this.options = FileChannelCopier.filter(options);
+        channelTransfer = FileChannelCopier.isChannelTransfer(options);
     }
 
     /**
@@ -80,7 +132,8 @@ class CopyDirectoryVisitor extends SimpleFileVisitor<Path> {
         move = false;
         this.source = source;
         this.target = target;
-        this.options = options;
+        this.options = FileChannelCopier.filter(options);
+        channelTransfer = FileChannelCopier.isChannelTransfer(options);
     }
 
     /**
@@ -113,11 +166,77 @@ class CopyDirectoryVisitor extends SimpleFileVisitor<Path> {
 
         if (move && PathUtilities.isEmpty(dir)) {
             Files.deleteIfExists(dir);
+        } else if (synchronize && deleteExtraneous) {
+            deleteExtraneous(dir);
         }
 
         return result;
     }
 
+    /**
+     * Delete the entries of the target directory which do not exist in the source directory.
+     * @param dir the source directory
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void deleteExtraneous(final Path dir) throws IOException {
+        final Path targetDir = target.resolve(source.relativize(dir));
+        final List<Path> extraneous = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(targetDir)) {
+            for (final Path p : stream) {
+                if (!Files.exists(dir.resolve(p.getFileName().toString()), LinkOption.NOFOLLOW_LINKS)) {
+                    extraneous.add(p);
+                }
+            }
+        }
+
+        for (final Path p : extraneous) {
+            LOGGER.debug("Deleting extraneous path: {}", p);
+
+            try {
+                if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                    PathUtilities.getInstance().delete(p);
+                } else {
+                    Files.delete(p);
+                }
+
+                if (listener != null) {
+                    listener.processed(p, FileProcessingListener.DELETED);
+                }
+            } catch (final IOException e) {
+                if (listener == null) {
+                    throw e;
+                }
+
+                listener.failed(p, e);
+            }
+        }
+    }
+
+    /**
+     * Checks if the regular files are copied using a {@link FileChannelCopier}.
+     * @return true, if {@link ExtendedCopyOption#CHANNEL_TRANSFER} is given
+     */
+    public boolean isChannelTransfer() {
+        return channelTransfer;
+    }
+
+    /**
+     * Checks if the extraneous entries of the target are deleted.
+     * @return true, if deleted in synchronization mode
+     */
+    public boolean isDeleteExtraneous() {
+        return deleteExtraneous;
+    }
+
+    /**
+     * Checks if the synchronization mode is enabled.
+     * @return true, if enabled
+     */
+    public boolean isSynchronize() {
+        return synchronize;
+    }
+
     /*
      * (non-javadoc)
      * @see java.nio.file.SimpleFileVisitor#preVisitDirectory(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
@@ -137,14 +256,31 @@ class CopyDirectoryVisitor extends SimpleFileVisitor<Path> {
 
         final Path targetPath = target.resolve(source.relativize(dir));
 
+        if (synchronize && Files.exists(targetPath, LinkOption.NOFOLLOW_LINKS) && !Files.isDirectory(targetPath, LinkOption.NOFOLLOW_LINKS)) {
+            LOGGER.debug("Replacing file by directory: {}", targetPath);
+            Files.delete(targetPath);
+        }
+
         if (!Files.exists(targetPath)) { // NOSONAR API NIO
             LOGGER.debug("Creating directory: {}", targetPath);
             Files.createDirectory(targetPath);
+
+            if (synchronize && listener != null) {
+                listener.processed(dir, FileProcessingListener.DIRECTORY_CREATED);
+            }
         }
 
         return FileVisitResult.CONTINUE;
     }
 
+    /**
+     * Sets the delete extraneous flag.
+     * @param deleteExtraneous true to delete the entries of the target which do not exist in the source, in synchronization mode
+     */
+    public void setDeleteExtraneous(final boolean deleteExtraneous) {
+        this.deleteExtraneous = deleteExtraneous;
+    }
+
     /**
      * Sets the include hidden.
      * @param includeHidden the includeHidden to set
@@ -153,6 +289,72 @@ class CopyDirectoryVisitor extends SimpleFileVisitor<Path> {
         this.includeHidden = includeHidden;
     }
 
+    /**
+     * Sets the synchronization mode.
+     * @param synchronize true to copy only the files which are not up to date in the target
+     */
+    public void setSynchronize(final boolean synchronize) {
+        this.synchronize = synchronize;
+    }
+
+    /**
+     * Synchronize the file.
+     * @param file  the source file
+     * @param attrs the attributes of the source file
+     * @param p     the target path
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void synchronize(final Path file, final BasicFileAttributes attrs, final Path p) throws IOException {
+        BasicFileAttributes targetAttrs;
+
+        try {
+            targetAttrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (@SuppressWarnings("unused") final NoSuchFileException e) {
+            targetAttrs = null;
+        }
+
+        if (targetAttrs != null && isUpToDate(file, attrs, p, targetAttrs)) {
+            LOGGER.trace("File is up to date: {}", p);
+
+            if (listener != null) {
+                listener.processed(file, FileProcessingListener.UNCHANGED);
+            }
+
+            return;
+        }
+
+        if (targetAttrs != null && targetAttrs.isDirectory()) {
+            PathUtilities.getInstance().delete(p);
+        }
+
+        // a name of fixed length so that a name close to the limit of the file system can still be synchronized
+        final Path temp = p.resolveSibling("." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+
+        try {
+            if (attrs.isSymbolicLink()) {
+                LOGGER.debug("Creating link {} to {}", file, p);
+                Files.createSymbolicLink(temp, Files.readSymbolicLink(file));
+            } else {
+                LOGGER.debug("Synchronizing {} to {}", file, p);
+
+                if (channelTransfer) {
+                    FileChannelCopier.copy(file, temp, options);
+                } else {
+                    // Files.copy delegates to the file system provider which can use the native copy support of the platform
+                    Files.copy(file, temp, options);
+                }
+            }
+
+            replace(temp, p);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        if (listener != null) {
+            listener.processed(file, targetAttrs == null ? FileProcessingListener.COPIED : FileProcessingListener.REPLACED);
+        }
+    }
+
     /*
      * (non-javadoc)
      * @see java.nio.file.SimpleFileVisitor#visitFile(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
@@ -186,13 +388,20 @@ class CopyDirectoryVisitor extends SimpleFileVisitor<Path> {
                 if (listener != null) {
                     listener.processed(file, FileProcessingListener.MOVED);
                 }
+            } else if (synchronize) {
+                synchronize(file, attrs, p);
             } else {
                 if (Files.isSymbolicLink(file)) {
                     LOGGER.debug("Creating link {} to {}", file, p);
                     Files.createSymbolicLink(p, Files.readSymbolicLink(file));
                 } else {
                     LOGGER.debug("Copying {} to {}", file, p);
-                    Files.copy(file, p, options);
+
+                    if (channelTransfer) {
+                        FileChannelCopier.copy(file, p, options);
+                    } else {
+                        Files.copy(file, p, options);
+                    }
                 }
 
                 if (listener != null) {
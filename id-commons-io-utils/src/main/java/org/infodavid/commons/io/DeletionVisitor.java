@@ -20,7 +20,7 @@ final class DeletionVisitor extends SimpleFileVisitor<Path> {
     private static final Logger LOGGER = LoggerFactory.getLogger(DeletionVisitor.class);
 
     /** The exception. */
-    private IOException exception = null;
+    private volatile IOException exception = null;
 
     /** The listener. */
     private FileProcessingListener listener = null;
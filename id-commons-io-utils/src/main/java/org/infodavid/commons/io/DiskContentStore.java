@@ -0,0 +1,419 @@
+package org.infodavid.commons.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class DiskContentStore.<br>
+ * The store is used as a second level by the {@link FileCache}. The data of the contents are appended to a segment file and their locations are appended to an index file keyed by URI.<br>
+ * The index is replayed when the store is opened so that the contents stored before a restart are available. Each record of the index is prefixed by its length and followed by its CRC-32 so that a truncated or corrupted record ends the replay, the index is then truncated to the last valid record before appending the new ones.<br>
+ * When the maximum size is reached, the oldest contents are dropped and the files are compacted.
+ */
+class DiskContentStore implements Closeable {
+
+    /**
+     * The Class Entry.
+     */
+    private static class Entry {
+
+        /** The entity tag. */
+        private final String eTag;
+
+        /** The length. */
+        private final int length;
+
+        /** The modification date. */
+        private final long modificationDate;
+
+        /** The offset in the segment. */
+        private final long offset;
+
+        /** The validation date. */
+        private final long validationDate;
+
+        /**
+         * Instantiates a new entry.
+         * @param offset           the offset
+         * @param length           the length
+         * @param modificationDate the modification date
+         * @param validationDate   the validation date
+         * @param eTag             the entity tag
+         */
+        Entry(final long offset, final int length, final long modificationDate, final long validationDate, final String eTag) {
+            this.offset = offset;
+            this.length = length;
+            this.modificationDate = modificationDate;
+            this.validationDate = validationDate;
+            this.eTag = eTag;
+        }
+    }
+
+    /** The Constant INDEX_FILE. */
+    private static final String INDEX_FILE = "contents.idx";
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskContentStore.class);
+
+    /** The Constant PUT. */
+    private static final byte PUT = 1;
+
+    /** The Constant REMOVE. */
+    private static final byte REMOVE = 0;
+
+    /** The Constant SEGMENT_FILE. */
+    private static final String SEGMENT_FILE = "contents.dat";
+
+    /** The directory. */
+    private final Path directory;
+
+    /** The entries ordered from the oldest to the newest. */
+    private final Map<URI, Entry> entries = new LinkedHashMap<>();
+
+    /** The index output. */
+    private DataOutputStream index;
+
+    /** The maximum size of the segment. */
+    private final long maximumSize;
+
+    /** The segment. */
+    private FileChannel segment;
+
+    /** The size of the live contents. */
+    private long size = 0;
+
+    /**
+     * Instantiates a new store.
+     * @param directory   the directory
+     * @param maximumSize the maximum size in bytes of the segment
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public DiskContentStore(final Path directory, final long maximumSize) throws IOException {
+        this.directory = directory;
+        this.maximumSize = maximumSize;
+        Files.createDirectories(directory);
+        segment = FileChannel.open(directory.resolve(SEGMENT_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replay();
+        // the index is truncated to the last valid record by the replay
+        index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        LOGGER.debug("Disk store opened: {} ({} entries)", directory, String.valueOf(entries.size()));
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            index.close();
+        } finally {
+            segment.close();
+        }
+    }
+
+    /**
+     * Gets the content.
+     * @param uri the URI
+     * @return the content or null if not stored
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized Content get(final URI uri) throws IOException {
+        final Entry entry = entries.get(uri);
+
+        if (entry == null) {
+            return null;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+
+        while (buffer.hasRemaining()) {
+            if (segment.read(buffer, entry.offset + buffer.position()) < 0) {
+                throw new EOFException("Truncated segment: " + directory.resolve(SEGMENT_FILE));
+            }
+        }
+
+        final Content result = new Content(buffer.array(), entry.modificationDate, entry.eTag);
+        result.setValidationDate(entry.validationDate);
+
+        return result;
+    }
+
+    /**
+     * Gets the directory.
+     * @return the directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the size of the stored contents.
+     * @return the size in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Stores the content.
+     * @param uri     the URI
+     * @param content the content
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized void put(final URI uri, final Content content) throws IOException {
+        final byte[] data = content.getData();
+
+        if (data == null || data.length > maximumSize) {
+            return;
+        }
+
+        final Entry existing = entries.get(uri);
+
+        if (existing != null && existing.length == data.length && existing.modificationDate == content.getModificationDate() && Objects.equals(existing.eTag, content.getETag())) {
+            return;
+        }
+
+        if (segment.size() + data.length > maximumSize) {
+            compact(maximumSize - maximumSize / 4 - data.length);
+        }
+
+        final long offset = segment.size();
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        while (buffer.hasRemaining()) {
+            segment.write(buffer, offset + buffer.position());
+        }
+
+        final Entry entry = new Entry(offset, data.length, content.getModificationDate(), content.getValidationDate(), content.getETag());
+        write(index, uri, entry);
+        index.flush();
+        remove(entries.remove(uri));
+        entries.put(uri, entry);
+        size += entry.length;
+    }
+
+    /**
+     * Removes the content.
+     * @param uri the URI
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized void remove(final URI uri) throws IOException {
+        final Entry entry = entries.remove(uri);
+
+        if (entry == null) {
+            return;
+        }
+
+        remove(entry);
+        final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            out.writeByte(REMOVE);
+            out.writeUTF(uri.toString());
+        }
+
+        writeRecord(index, record.toByteArray());
+        index.flush();
+    }
+
+    /**
+     * Compact the segment and the index, dropping the oldest entries until the size of the live contents is lower than the specified one.
+     * @param targetSize the target size
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void compact(final long targetSize) throws IOException {
+        final Iterator<Entry> iterator = entries.values().iterator();
+
+        while (size > targetSize && iterator.hasNext()) {
+            remove(iterator.next());
+            iterator.remove();
+        }
+
+        LOGGER.debug("Compacting disk store: {} ({} entries)", directory, String.valueOf(entries.size()));
+        final Path segmentFile = directory.resolve(SEGMENT_FILE);
+        final Path indexFile = directory.resolve(INDEX_FILE);
+        final Path compactedSegmentFile = directory.resolve(SEGMENT_FILE + ".tmp");
+        final Path compactedIndexFile = directory.resolve(INDEX_FILE + ".tmp");
+        final Map<URI, Entry> compacted = new LinkedHashMap<>();
+
+        try (FileChannel out = FileChannel.open(compactedSegmentFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE); DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compactedIndexFile)))) {
+            for (final Map.Entry<URI, Entry> item : entries.entrySet()) {
+                final Entry entry = item.getValue();
+                final Entry moved = new Entry(out.position(), entry.length, entry.modificationDate, entry.validationDate, entry.eTag);
+                long transferred = 0;
+
+                while (transferred < entry.length) {
+                    transferred += segment.transferTo(entry.offset + transferred, entry.length - transferred, out);
+                }
+
+                write(indexOut, item.getKey(), moved);
+                compacted.put(item.getKey(), moved);
+            }
+        }
+
+        index.close();
+        segment.close();
+        Files.move(compactedSegmentFile, segmentFile, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(compactedIndexFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        entries.clear();
+        entries.putAll(compacted);
+        segment = FileChannel.open(segmentFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile, StandardOpenOption.APPEND)));
+    }
+
+    /**
+     * Removes the entry from the size of the live contents.
+     * @param entry the entry
+     */
+    private void remove(final Entry entry) {
+        if (entry != null) {
+            size -= entry.length;
+        }
+    }
+
+    /**
+     * Replay the index.<br>
+     * Records referencing data beyond the end of the segment are ignored, a truncated record or a record not matching its CRC ends the replay and the index is truncated to the last valid record.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void replay() throws IOException {
+        final Path indexFile = directory.resolve(INDEX_FILE);
+
+        if (!Files.exists(indexFile)) { // NOSONAR NIO API
+            return;
+        }
+
+        final long segmentSize = segment.size();
+        final long indexSize = Files.size(indexFile);
+        final CRC32 crc = new CRC32();
+        long position = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            while (position + Integer.BYTES * 2 <= indexSize) {
+                final int length = in.readInt();
+
+                if (length <= 0 || position + Integer.BYTES * 2 + length > indexSize) {
+                    LOGGER.warn("Truncated index record ignored after {} entries", String.valueOf(entries.size()));
+
+                    break;
+                }
+
+                final byte[] record = new byte[length];
+                in.readFully(record);
+                crc.reset();
+                crc.update(record);
+
+                if ((int) crc.getValue() != in.readInt()) {
+                    LOGGER.warn("Corrupted index record ignored after {} entries", String.valueOf(entries.size()));
+
+                    break;
+                }
+
+                position += Integer.BYTES * 2 + length;
+                replay(record, segmentSize);
+            }
+        }
+
+        if (position < indexSize) {
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+            }
+        }
+    }
+
+    /**
+     * Replay the record of the index.
+     * @param record      the record
+     * @param segmentSize the size of the segment
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void replay(final byte[] record, final long segmentSize) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            final byte operation = in.readByte();
+            final URI uri = URI.create(in.readUTF());
+
+            if (operation == REMOVE) {
+                remove(entries.remove(uri));
+
+                return;
+            }
+
+            final long offset = in.readLong();
+            final int length = in.readInt();
+            final long modificationDate = in.readLong();
+            final long validationDate = in.readLong();
+            final String eTag = in.readBoolean() ? in.readUTF() : null;
+
+            if (offset >= 0 && length >= 0 && offset + length <= segmentSize) {
+                remove(entries.remove(uri));
+                entries.put(uri, new Entry(offset, length, modificationDate, validationDate, eTag));
+                size += length;
+            }
+        } catch (final IllegalArgumentException e) {
+            LOGGER.warn("Invalid index record ignored: {}", e.getMessage()); // NOSONAR Not with a throwable
+        }
+    }
+
+    /**
+     * Write the index record of the entry.
+     * @param out   the output
+     * @param uri   the URI
+     * @param entry the entry
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void write(final DataOutputStream out, final URI uri, final Entry entry) throws IOException {
+        final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+        try (DataOutputStream recordOut = new DataOutputStream(record)) {
+            recordOut.writeByte(PUT);
+            recordOut.writeUTF(uri.toString());
+            recordOut.writeLong(entry.offset);
+            recordOut.writeInt(entry.length);
+            recordOut.writeLong(entry.modificationDate);
+            recordOut.writeLong(entry.validationDate);
+            recordOut.writeBoolean(entry.eTag != null);
+
+            if (entry.eTag != null) {
+                recordOut.writeUTF(entry.eTag);
+            }
+        }
+
+        writeRecord(out, record.toByteArray());
+    }
+
+    /**
+     * Write the record prefixed by its length and followed by its CRC-32.
+     * @param out    the output
+     * @param record the record
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void writeRecord(final DataOutputStream out, final byte[] record) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(record);
+        out.writeInt(record.length);
+        out.write(record);
+        out.writeInt((int) crc.getValue());
+    }
+}
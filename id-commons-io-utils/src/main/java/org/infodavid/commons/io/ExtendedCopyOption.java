@@ -0,0 +1,17 @@
+package org.infodavid.commons.io;
+
+import java.nio.file.CopyOption;
+
+/**
+ * The Enum ExtendedCopyOption.<br>
+ * The options handled by {@link PathUtilities} in addition to the standard ones, they are removed before calling the methods of {@link java.nio.file.Files}.
+ */
+public enum ExtendedCopyOption implements CopyOption {
+
+    /**
+     * Copy the regular files using {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} in large chunks, ignored when moving.<br>
+     * The length of the targets is set before the transfer, their blocks are not preallocated.<br>
+     * Using {@link java.nio.file.StandardCopyOption#COPY_ATTRIBUTES}, the times, the owner and the group when permitted and the POSIX permissions are copied. The symbolic links, using {@link java.nio.file.LinkOption#NOFOLLOW_LINKS}, and the files which are not regular files are copied by {@link java.nio.file.Files#copy(java.nio.file.Path, java.nio.file.Path, CopyOption...)}.
+     */
+    CHANNEL_TRANSFER
+}
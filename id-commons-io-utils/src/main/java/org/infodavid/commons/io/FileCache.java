@@ -4,58 +4,460 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.github.benmanes.caffeine.cache.Weigher;
 
 /**
- * The Class FileCache.
+ * The Class FileCache.<br>
+ * Only one load is performed at a time for a given URI, concurrent readers of the same URI wait for the same load and cache hits are lock-free.<br>
+ * An optional disk store can be used as a second level, see {@link #setDiskStore(Path, long)}.<br>
+ * The statistics are available using {@link #getStatistics()} and can be published as a management bean using {@link #registerMBean(String)}.<br>
+ * Files larger than the chunking threshold are cached as fixed-size chunks when accessed using {@link #read(URI, long, int)}, {@link #openStream(URI)} or {@link #transferTo(URI, WritableByteChannel)}, only the chunks needed by the reads are loaded.<br>
+ * The maximum weight is shared by the whole contents and the chunks, the part reserved to the chunks is defined by {@link #setChunkWeightRatio(double)}.
  */
-public class FileCache {
+public class FileCache implements Closeable {
+
+    /**
+     * The Class DirectoryWatcher.<br>
+     * The watcher registers the directories of the cached files with a single {@link WatchService} and invalidates the entries of the files created, modified or deleted in them, the events are processed by a daemon thread owned by the cache.<br>
+     * A directory is registered before the load of its first entry and unregistered when its last entry is removed, the entries are counted by directory. The registrations are guarded by the watcher, the hits only read the map of the directories.
+     */
+    private class DirectoryWatcher implements Closeable, Runnable {
+
+        /** The watched directories. */
+        private final Map<Path, WatchedDirectory> directories = new ConcurrentHashMap<>();
+
+        /** The service. */
+        private final WatchService service;
+
+        /**
+         * Instantiates a new watcher and starts its thread.
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        DirectoryWatcher() throws IOException {
+            service = FileSystems.getDefault().newWatchService();
+            final Thread thread = new Thread(this, "file-cache-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.io.Closeable#close()
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                // the thread ends on the closing of the service
+                service.close();
+            } finally {
+                synchronized (this) {
+                    directories.clear();
+                }
+            }
+        }
+
+        /**
+         * Invalidate the entries of the files of the directory.
+         * @param dir the directory
+         */
+        private void invalidateDirectory(final Path dir) {
+            LOGGER.debug("Events lost or directory no more watched, invalidating the files of: {}", dir);
+            contentCache.asMap().keySet().removeIf(k -> dir.equals(getDirectory(k)));
+            chunkCache.asMap().keySet().removeIf(k -> dir.equals(getDirectory(k.uri)));
+        }
+
+        /**
+         * Checks if the content has been validated while its directory is watched, the events of its file are then received.
+         * @param dir     the directory
+         * @param content the content
+         * @return true, if the content is kept up to date by the events
+         */
+        boolean isWatched(final Path dir, final Content content) {
+            final WatchedDirectory watched = directories.get(dir);
+
+            return watched != null && content.getValidationDate() >= watched.since;
+        }
+
+        /**
+         * Register the directory or count a new entry if already registered.<br>
+         * The directories of the network file systems are not registered because their modifications are not reported.
+         * @param dir the directory
+         */
+        synchronized void register(final Path dir) {
+            final WatchedDirectory watched = directories.get(dir);
+
+            if (watched != null) {
+                watched.count++;
+
+                return;
+            }
+
+            if (PollingFilesRepositoryWatcher.isPollingRequired(dir)) {
+                LOGGER.debug("Directory not watchable, checking the modification dates of its files: {}", dir);
+
+                return;
+            }
+
+            try {
+                final WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                // the contents validated from now are kept up to date by the events
+                directories.put(dir, new WatchedDirectory(key, System.currentTimeMillis()));
+                LOGGER.debug("Watching directory: {}", dir);
+            } catch (final IOException | ClosedWatchServiceException e) {
+                LOGGER.warn("Cannot watch directory: {}, on Linux the number of watches is limited by fs.inotify.max_user_watches", dir, e);
+            }
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            try {
+                while (true) { // NOSONAR Exit on closing of the service
+                    final WatchKey key = service.take();
+                    final Path dir = (Path) key.watchable();
+                    final List<WatchEvent<?>> events = key.pollEvents();
+                    final boolean valid = key.reset();
+
+                    for (final WatchEvent<?> event : events) {
+                        if (StandardWatchEventKinds.OVERFLOW.equals(event.kind())) {
+                            invalidateDirectory(dir);
+                        } else {
+                            final Path file = dir.resolve((Path) event.context());
+                            LOGGER.debug("File modified, invalidating: {}", file);
+                            invalidate(file.toUri());
+                        }
+                    }
+
+                    if (!valid) {
+                        unregister(dir, key);
+                        invalidateDirectory(dir);
+                    }
+                }
+            } catch (@SuppressWarnings("unused") final ClosedWatchServiceException e) {
+                LOGGER.debug("End of the watcher of the cached files");
+            } catch (@SuppressWarnings("unused") final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Count the removal of an entry and unregister the directory when its last entry is removed.
+         * @param dir the directory
+         */
+        synchronized void unregister(final Path dir) {
+            final WatchedDirectory watched = directories.get(dir);
+
+            if (watched != null && --watched.count <= 0) {
+                LOGGER.debug("No more entry, unwatching directory: {}", dir);
+                watched.key.cancel();
+                directories.remove(dir);
+            }
+        }
+
+        /**
+         * Unregister the directory if the key is still the one of its registration.
+         * @param dir the directory
+         * @param key the key
+         */
+        private synchronized void unregister(final Path dir, final WatchKey key) {
+            final WatchedDirectory watched = directories.get(dir);
+
+            if (watched != null && watched.key == key) {
+                directories.remove(dir);
+            }
+        }
+    }
+
+    /**
+     * The Class CacheWeigher.<br>
+     * The bytes held on the heap are weighed, the mapped contents are accounted separately as off-heap bytes and are weighed using {@link FileCache#MAPPED_CONTENT_WEIGHT} so that the number of mappings is bounded by the maximum weight.
+     */
+    private static class CacheWeigher implements Weigher<Object, Content> {
+
+        /*
+         * (non-javadoc)
+         * @see com.github.benmanes.caffeine.cache.Weigher#weigh(java.lang.Object, java.lang.Object)
+         */
+        @Override
+        public int weigh(final Object key, final Content value) {
+            if (value == null) {
+                return 0;
+            }
+
+            if (value instanceof MappedContent) {
+                return MAPPED_CONTENT_WEIGHT;
+            }
+
+            return value.getHeapSize();
+        }
+    }
+
+    /**
+     * The Class ChunkKey.
+     */
+    private static final class ChunkKey {
+
+        /** The index of the chunk. */
+        private final long index;
+
+        /** The normalized URI of the file. */
+        private final URI uri;
+
+        /**
+         * Instantiates a new key.
+         * @param uri   the normalized URI
+         * @param index the index
+         */
+        ChunkKey(final URI uri, final long index) {
+            this.uri = uri;
+            this.index = index;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof final ChunkKey other)) {
+                return false;
+            }
+
+            return index == other.index && uri.equals(other.uri);
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(uri, Long.valueOf(index));
+        }
+    }
 
     /**
-     * The Class CacheWeigher.
+     * The Class ContentInputStream.<br>
+     * The stream reads the cached content or, for chunked files, the chunks one after the other.
      */
-    private static class CacheWeigher implements Weigher<URI, Content> {
+    private class ContentInputStream extends InputStream {
+
+        /** The current buffer. */
+        private ByteBuffer buffer;
+
+        /** The chunked flag. */
+        private final boolean chunked;
+
+        /** The position in the file of the end of the current buffer. */
+        private long position;
+
+        /** The normalized URI. */
+        private final URI uri;
 
+        /**
+         * Instantiates a new stream.
+         * @param uri     the normalized URI
+         * @param buffer  the buffer of the whole content or of the first chunk
+         * @param chunked true if the content is chunked
+         */
+        ContentInputStream(final URI uri, final ByteBuffer buffer, final boolean chunked) {
+            this.uri = uri;
+            this.buffer = buffer;
+            this.chunked = chunked;
+            position = buffer.remaining();
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.io.InputStream#available()
+         */
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.io.InputStream#read()
+         */
+        @Override
+        public int read() throws IOException {
+            return fill() ? buffer.get() & 0xFF : -1;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.io.InputStream#read(byte[], int, int)
+         */
         @Override
-        public int weigh(final URI key, final Content value) {
-            if (value == null || value.getData() == null) {
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+
+            if (len == 0) {
                 return 0;
             }
 
-            return value.getData().length;
+            if (!fill()) {
+                return -1;
+            }
+
+            final int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+
+            return count;
+        }
+
+        /**
+         * Fill the buffer using the next chunk if needed.
+         * @return true, if data is available
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        private boolean fill() throws IOException {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+
+            if (!chunked) {
+                return false;
+            }
+
+            buffer = readChunks(uri, position, chunkSize);
+            position += buffer.remaining();
+
+            return buffer.hasRemaining();
+        }
+    }
+
+    /**
+     * The Class WatchedDirectory.
+     */
+    private static final class WatchedDirectory {
+
+        /** The number of cached entries of the files of the directory, guarded by the watcher. */
+        private int count = 1;
+
+        /** The key. */
+        private final WatchKey key;
+
+        /** The date of the registration. */
+        private final long since;
+
+        /**
+         * Instantiates a new watched directory.
+         * @param key   the key
+         * @param since the date of the registration
+         */
+        WatchedDirectory(final WatchKey key, final long since) {
+            this.key = key;
+            this.since = since;
         }
     }
 
+    /** The Constant DEFAULT_CHUNK_SIZE. */
+    private static final int DEFAULT_CHUNK_SIZE = 1048576;
+
+    /** The Constant DEFAULT_CHUNK_WEIGHT_RATIO. */
+    private static final double DEFAULT_CHUNK_WEIGHT_RATIO = 0.25;
+
+    /** The Constant DEFAULT_CHUNKING_THRESHOLD. */
+    private static final long DEFAULT_CHUNKING_THRESHOLD = 8388608;
+
     /** The Constant DEFAULT_EXPIRATION. */
     private static final byte DEFAULT_EXPIRATION = 15;
 
+    /** The Constant FILE_SCHEME. */
+    private static final String FILE_SCHEME = "file";
+
     /** The Constant DEFAULT_MAXIMUM_WEIGHT. */
     private static final long DEFAULT_MAXIMUM_WEIGHT = 52428800;
 
+    /** The Constant LOADING_THREADS, the number of threads of the default executor, the loads are blocking I/O. */
+    private static final int LOADING_THREADS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
     /** The Constant LOGGER. */
     private static final Logger LOGGER = LoggerFactory.getLogger(FileCache.class);
 
+    /** The Constant MAPPED_CONTENT_WEIGHT, the nominal weight of a mapped content, one page. */
+    private static final int MAPPED_CONTENT_WEIGHT = 4096;
+
+    /** The access expiration. */
+    private final boolean accessExpiration;
+
+    /** The chunks cache. */
+    private AsyncCache<ChunkKey, Content> chunkCache;
+
+    /** The chunking threshold. */
+    private long chunkingThreshold = DEFAULT_CHUNKING_THRESHOLD;
+
+    /** The chunk size. */
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /** The part of the maximum weight reserved to the chunks. */
+    private double chunkWeightRatio = DEFAULT_CHUNK_WEIGHT_RATIO;
+
     /** The contents cache. */
-    private Cache<URI, Content> contentCache;
+    private AsyncCache<URI, Content> contentCache;
+
+    /** The second level store, null if disabled. */
+    private volatile DiskContentStore diskStore = null;
 
     /** The enabled. */
     private boolean enabled = true;
@@ -63,12 +465,48 @@ public class FileCache {
     /** The expiration. */
     private long expiration = DEFAULT_EXPIRATION;
 
-    /** The locks cache. */
-    private final Cache<URI, Lock> lockCache;
+    /** The executor used to load the contents. */
+    private final Executor executor;
+
+    /** The default executor created and shut down by the cache, null if the executor has been specified. */
+    private final ExecutorService ownedExecutor;
+
+    /** The histograms of the load times by scheme. */
+    private final Map<String, AtomicLongArray> loadTimeHistograms = new ConcurrentHashMap<>();
+
+    /** The fetcher of the contents of the remote URIs. */
+    private ContentFetcher fetcher = new URLConnectionContentFetcher();
 
     /** The maximum weight. */
     private long maximumWeight = DEFAULT_MAXIMUM_WEIGHT;
 
+    /** The memory mapped. */
+    private boolean memoryMapped = false;
+
+    /** The number of revalidations answered as not modified. */
+    private final LongAdder notModifiedCount = new LongAdder();
+
+    /** The size of the cached data held outside of the heap, increased by the loads and decreased by the removals. */
+    private final LongAdder offHeapSize = new LongAdder();
+
+    /** The name of the registered management bean, null if not registered. */
+    private ObjectName objectName = null;
+
+    /** The number of contents promoted from the disk store. */
+    private final LongAdder promotionCount = new LongAdder();
+
+    /** The number of revalidations of the contents of the remote URIs. */
+    private final LongAdder revalidationCount = new LongAdder();
+
+    /** The revalidation delay in milliseconds of the contents of the remote URIs. */
+    private long revalidationDelay = 0;
+
+    /** The number of reloads of modified files. */
+    private final LongAdder staleReloadCount = new LongAdder();
+
+    /** The watcher of the directories of the cached files, null if the files are checked on each hit. */
+    private volatile DirectoryWatcher watcher = null;
+
     /**
      * Instantiates a new cache.
      */
@@ -78,28 +516,187 @@ public class FileCache {
 
     /**
      * Instantiates a new cache.
+     * @param accessExpiration true to expire entries after the last access, false to expire them after the last load
+     * @param expiration       the expiration
+     * @param expirationUnit   the expiration unit
+     * @param maximumWeight    the maximum weight
      */
     protected FileCache(final boolean accessExpiration, final long expiration, final TimeUnit expirationUnit, final long maximumWeight) {
-        lockCache = Caffeine.newBuilder().build();
-        final Caffeine<Object, Object> builder = Caffeine.newBuilder();
+        this(accessExpiration, expiration, expirationUnit, maximumWeight, null);
+    }
+
+    /**
+     * Instantiates a new cache.
+     * @param accessExpiration true to expire entries after the last access, false to expire them after the last load
+     * @param expiration       the expiration
+     * @param expirationUnit   the expiration unit
+     * @param maximumWeight    the maximum weight
+     * @param executor         the executor used to load the contents or null to use a bounded pool of daemon threads owned by the cache and shut down by {@link #close()}
+     */
+    protected FileCache(final boolean accessExpiration, final long expiration, final TimeUnit expirationUnit, final long maximumWeight, final Executor executor) {
+        if (executor == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(LOADING_THREADS, LOADING_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                final Thread thread = new Thread(r, "file-cache-loader-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            ownedExecutor = pool;
+            this.executor = pool;
+        } else {
+            ownedExecutor = null;
+            this.executor = executor;
+        }
+
+        this.accessExpiration = accessExpiration;
+        this.expiration = expirationUnit.toMinutes(expiration);
+        this.maximumWeight = maximumWeight;
+        buildCaches(expiration, expirationUnit);
+    }
+
+    /**
+     * Builds the contents and chunks caches, the maximum weight is split between them so that their total weight never exceeds it.
+     * @param duration the expiration duration
+     * @param unit     the unit of the expiration duration
+     */
+    private void buildCaches(final long duration, final TimeUnit unit) {
+        final long chunkWeight = (long) (maximumWeight * chunkWeightRatio);
+        contentCache = this.<URI> newBuilder(duration, unit, maximumWeight - chunkWeight).removalListener(this::onRemoval).buildAsync();
+        chunkCache = this.<ChunkKey> newBuilder(duration, unit, chunkWeight).removalListener((k, v, c) -> unwatch(k == null ? null : k.uri)).buildAsync();
+    }
+
+    /**
+     * Creates a new builder of cache.
+     * @param <K>      the type of the keys
+     * @param duration the expiration duration
+     * @param unit     the unit of the expiration duration
+     * @param weight   the maximum weight of the cache
+     * @return the builder
+     */
+    @SuppressWarnings("unchecked")
+    private <K> Caffeine<K, Content> newBuilder(final long duration, final TimeUnit unit, final long weight) {
+        final Caffeine<Object, Object> builder = Caffeine.newBuilder().executor(executor).recordStats();
 
         if (accessExpiration) {
-            builder.expireAfterAccess(expiration, expirationUnit);
+            builder.expireAfterAccess(duration, unit);
         } else {
-            builder.expireAfterWrite(expiration, expirationUnit);
+            builder.expireAfterWrite(duration, unit);
         }
 
         if (maximumWeight > 0) {
-            builder.weigher(new CacheWeigher()).maximumWeight(maximumWeight);
+            builder.weigher(new CacheWeigher()).maximumWeight(weight);
         }
 
-        builder.removalListener((k, v, c) -> {
-            if (k instanceof final URI u) {
-                lockCache.invalidate(u);
+        return (Caffeine<K, Content>) (Object) builder;
+    }
+
+    /**
+     * Performs the pending maintenance of the caches, like the evictions and the update of the weights of the entries loaded asynchronously.<br>
+     * The maintenance is performed periodically by the caches, the statistics do not perform it so that reading them has no side effect.
+     */
+    public void cleanUp() {
+        contentCache.synchronous().cleanUp();
+        chunkCache.synchronous().cleanUp();
+    }
+
+    /**
+     * Unregisters the management bean, stops the watcher, stores the cached contents in the disk store if enabled and closes it, the default executor is then shut down.<br>
+     * The contents are then available after a restart using the same directory for the disk store.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        final DiskContentStore store = diskStore;
+        diskStore = null;
+
+        try {
+            if (store != null) {
+                try (store) {
+                    for (final Map.Entry<URI, CompletableFuture<Content>> entry : contentCache.asMap().entrySet()) {
+                        final Content content = getIfDone(entry.getValue());
+
+                        if (content != null && !(content instanceof MappedContent)) {
+                            store.put(entry.getKey(), content);
+                        }
+                    }
+                }
             }
-        });
+        } finally {
+            unregisterMBean();
+
+            try {
+                setWatching(false);
+            } catch (final IOException e) {
+                LOGGER.warn("Cannot stop the watcher of the cached files", e);
+            }
+
+            if (ownedExecutor != null) {
+                ownedExecutor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Gets the read-only buffer.
+     * @param file the file
+     * @return the buffer
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public ByteBuffer getBuffer(final File file) throws IOException {
+        if (file == null) {
+            throw new IOException("Specified file is null");
+        }
+
+        return getBuffer(file.toURI());
+    }
+
+    /**
+     * Gets the read-only buffer.
+     * @param path the path
+     * @return the buffer
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public ByteBuffer getBuffer(final Path path) throws IOException {
+        if (path == null) {
+            throw new IOException("Specified path is null");
+        }
+
+        return getBuffer(path.toUri());
+    }
+
+    /**
+     * Gets the read-only buffer.<br>
+     * When the memory mapped mode is enabled, the buffer of a file is a view of the mapped region and no data is copied on the heap.
+     * @param uri the URI
+     * @return the buffer
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public ByteBuffer getBuffer(final URI uri) throws IOException {
+        if (uri == null) {
+            throw new IOException("Specified URI is null");
+        }
+
+        return getContent(uri).getBuffer();
+    }
+
+    /**
+     * Gets the read-only buffer.
+     * @param url the URL
+     * @return the buffer
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public ByteBuffer getBuffer(final URL url) throws IOException {
+        if (url == null) {
+            throw new IOException("Specified URL is null");
+        }
 
-        contentCache = builder.build();
+        try {
+            return getBuffer(url.toURI());
+        } catch (final URISyntaxException e) {
+            throw new IOException(ExceptionUtils.getRootCause(e));
+        }
     }
 
     /**
@@ -141,36 +738,53 @@ public class FileCache {
             throw new IOException("Specified URI is null");
         }
 
-        final Lock lock = lockCache.get(uri, k -> new ReentrantLock());
-        lock.lock();
-
-        try {
-            Content content = enabled ? contentCache.getIfPresent(uri) : null;
+        return getContent(uri).getData();
+    }
 
-            if (content != null && content.getModificationDate() < getLastModificationDate(uri)) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Content modified since : {}, reloading", new Date(content.getModificationDate()));
-                }
+    /**
+     * Gets the content.
+     * @param uri the URI
+     * @return the content
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private Content getContent(final URI specified) throws IOException {
+        if (!enabled) {
+            return load(specified);
+        }
 
-                content = null;
-            }
+        final URI uri = normalize(specified);
+        final boolean[] loaded = {
+                false
+        };
+        // a single lookup is used to record the hit or the miss
+        CompletableFuture<Content> future = contentCache.get(uri, (k, e) -> {
+            loaded[0] = true;
 
-            if (content == null) {
-                content = load(uri);
+            return newWatchedLoad(k, () -> newLoad(k));
+        });
+        final Content current = loaded[0] ? null : getIfDone(future);
 
-                if (enabled) {
-                    contentCache.put(uri, content);
-                }
+        if (current != null && !FILE_SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            if (isRevalidationRequired(current)) {
+                final CompletableFuture<Content> validated = future;
+                // only the first reader triggers the conditional request, the others wait for it
+                future = contentCache.asMap().compute(uri, (k, v) -> v == null || v == validated ? newRevalidation(k, current) : v);
             }
-
-            return content.getData();
-        } finally {
-            lock.unlock();
-
+        } else if (current != null && isStale(uri, current)) {
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Cache size: {} ({})", String.valueOf(contentCache.estimatedSize()), String.valueOf(lockCache.estimatedSize()));
+                LOGGER.debug("Content modified since : {}, reloading", new Date(current.getModificationDate()));
             }
+
+            final CompletableFuture<Content> stale = future;
+            // only the first reader detecting the modification triggers the reload, the others wait for it
+            future = contentCache.asMap().compute(uri, (k, v) -> v == null || v == stale ? newStaleLoad(newWatchedLoad(k, () -> newLoad(k))) : v);
+        }
+
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Cache size: {}", String.valueOf(contentCache.synchronous().estimatedSize()));
         }
+
+        return join(future);
     }
 
     /**
@@ -192,53 +806,415 @@ public class FileCache {
     }
 
     /**
-     * Gets the expiration.
-     * @return the expiration
+     * Gets the chunking threshold.
+     * @return the size in bytes above which the files are cached as chunks
      */
-    public long getExpiration() {
-        return expiration;
+    public long getChunkingThreshold() {
+        return chunkingThreshold;
     }
 
     /**
-     * Gets the maximum weight.
-     * @return the maximumWeight
+     * Gets the chunk size.
+     * @return the size in bytes of the chunks
      */
-    public long getMaximumWeight() {
-        return maximumWeight;
+    public int getChunkSize() {
+        return chunkSize;
     }
 
     /**
-     * Gets the size.
-     * @return the size
+     * Gets the part of the maximum weight reserved to the chunks.
+     * @return the ratio between 0 and 1
      */
-    public long getSize() {
-        return contentCache.estimatedSize();
+    public double getChunkWeightRatio() {
+        return chunkWeightRatio;
     }
 
     /**
-     * Invalidate.
+     * Gets the directory of the disk store.
+     * @return the directory or null if the disk store is disabled
      */
-    public void invalidate() {
-        contentCache.invalidateAll();
+    public Path getDiskStoreDirectory() {
+        final DiskContentStore store = diskStore;
+
+        return store == null ? null : store.getDirectory();
     }
 
     /**
-     * Checks if is enabled.
-     * @return the enabled
+     * Gets the size of the contents held by the disk store.
+     * @return the size in bytes
      */
-    public boolean isEnabled() {
-        return enabled;
+    public long getDiskStoreSize() {
+        final DiskContentStore store = diskStore;
+
+        return store == null ? 0 : store.getSize();
     }
 
     /**
-     * Sets the enabled.
-     * @param enabled the enabled to set
+     * Opens a stream on the content.<br>
+     * The stream of a chunked file loads the chunks as they are read.
+     * @param uri the URI
+     * @return the stream
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public InputStream openStream(final URI uri) throws IOException {
+        if (uri == null) {
+            throw new IOException("Specified URI is null");
+        }
+
+        final URI normalized = normalize(uri);
+
+        if (isChunked(normalized, 0)) {
+            return new ContentInputStream(normalized, readChunks(normalized, 0, chunkSize), true);
+        }
+
+        return new ContentInputStream(normalized, getContent(normalized).getBuffer(), false);
+    }
+
+    /**
+     * Reads a range of the content.<br>
+     * For chunked files, only the chunks covering the range are loaded. The returned buffer is a view of the cached data when the range is held by a single chunk or content.
+     * @param uri    the URI
+     * @param offset the offset
+     * @param length the maximum length
+     * @return the read-only buffer, shorter than the specified length if the end of the content is reached
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public ByteBuffer read(final URI uri, final long offset, final int length) throws IOException {
+        if (uri == null) {
+            throw new IOException("Specified URI is null");
+        }
+
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Specified range is not valid: " + offset + '+' + length);
+        }
+
+        final URI normalized = normalize(uri);
+
+        if (!enabled && FILE_SCHEME.equalsIgnoreCase(normalized.getScheme())) {
+            return readRange(new File(normalized), offset, length).asReadOnlyBuffer();
+        }
+
+        if (isChunked(normalized, offset / chunkSize)) {
+            return readChunks(normalized, offset, length);
+        }
+
+        final ByteBuffer buffer = getContent(normalized).getBuffer();
+
+        if (offset >= buffer.limit()) {
+            return buffer.limit(0).slice();
+        }
+
+        buffer.position((int) offset);
+        buffer.limit((int) Math.min(buffer.limit(), offset + length));
+
+        return buffer.slice();
+    }
+
+    /**
+     * Transfers the content to the channel.<br>
+     * For chunked files, the chunks are loaded and written one after the other.
+     * @param uri     the URI
+     * @param channel the channel
+     * @return the number of bytes written
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public long transferTo(final URI uri, final WritableByteChannel channel) throws IOException {
+        if (uri == null) {
+            throw new IOException("Specified URI is null");
+        }
+
+        if (channel == null) {
+            throw new IOException("Specified channel is null");
+        }
+
+        final URI normalized = normalize(uri);
+
+        if (!isChunked(normalized, 0)) {
+            return write(getContent(normalized).getBuffer(), channel);
+        }
+
+        long result = 0;
+        ByteBuffer buffer;
+
+        do {
+            buffer = readChunks(normalized, result, chunkSize);
+            result += write(buffer, channel);
+        } while (buffer.limit() == chunkSize);
+
+        return result;
+    }
+
+    /**
+     * Gets the expiration.
+     * @return the expiration
+     */
+    public long getExpiration() {
+        return expiration;
+    }
+
+    /**
+     * Gets the fetcher of the contents of the remote URIs.
+     * @return the fetcher
+     */
+    public ContentFetcher getFetcher() {
+        return fetcher;
+    }
+
+    /**
+     * Gets the maximum weight.
+     * @return the maximumWeight
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Gets the size of the cached data held outside of the heap.<br>
+     * The size is maintained on the loads and the removals, the removals being notified asynchronously, the size of an entry just removed can still be included.
+     * @return the size in bytes
+     */
+    public long getOffHeapSize() {
+        return Math.max(0, offHeapSize.sum());
+    }
+
+    /**
+     * Gets the revalidation delay of the contents of the remote URIs.
+     * @return the delay in milliseconds
+     */
+    public long getRevalidationDelay() {
+        return revalidationDelay;
+    }
+
+    /**
+     * Gets the number of cached chunks.
+     * @return the number of chunks
+     */
+    public long getChunkCount() {
+        return chunkCache.synchronous().estimatedSize();
+    }
+
+    /**
+     * Gets the counters of the contents and chunks caches.
+     * @return the counters
+     */
+    CacheStats getCacheStats() {
+        return contentCache.synchronous().stats().plus(chunkCache.synchronous().stats());
+    }
+
+    /**
+     * Gets a snapshot of the statistics.<br>
+     * The counters of the underlying caches are reset when they are rebuilt by {@link #setExpiration(long)}, {@link #setMaximumWeight(long)} or {@link #setChunkWeightRatio(double)}.<br>
+     * The snapshot only reads the counters, the entries are not scanned and the maintenance of the caches is not performed, see {@link #cleanUp()}.
+     * @return the statistics
+     */
+    public FileCacheStatistics getStatistics() {
+        final CacheStats stats = getCacheStats();
+        final Map<String, long[]> histograms = new TreeMap<>();
+
+        for (final Map.Entry<String, AtomicLongArray> entry : loadTimeHistograms.entrySet()) {
+            final AtomicLongArray histogram = entry.getValue();
+            final long[] counts = new long[histogram.length()];
+
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = histogram.get(i);
+            }
+
+            histograms.put(entry.getKey(), counts);
+        }
+
+        return new FileCacheStatistics.Builder()
+                .chunkCount(chunkCache.synchronous().estimatedSize())
+                .evictionCount(stats.evictionCount())
+                .evictionWeight(stats.evictionWeight())
+                .hitCount(stats.hitCount())
+                .loadFailureCount(stats.loadFailureCount())
+                .loadSuccessCount(stats.loadSuccessCount())
+                .loadTimeHistograms(histograms)
+                .maximumWeight(maximumWeight)
+                .missCount(stats.missCount())
+                .notModifiedCount(notModifiedCount.sum())
+                .offHeapSize(getOffHeapSize())
+                .promotionCount(promotionCount.sum())
+                .revalidationCount(revalidationCount.sum())
+                .size(contentCache.synchronous().estimatedSize())
+                .staleReloadCount(staleReloadCount.sum())
+                .totalLoadTime(stats.totalLoadTime())
+                .weightedSize(getWeightedSize())
+                .build();
+    }
+
+    /**
+     * Gets the weighted size.<br>
+     * The weighted size is the total of the weights of the contents and of the chunks, both bounded by their part of the maximum weight. The weights of the entries loaded asynchronously are included once the maintenance of the caches is performed, see {@link #cleanUp()}.
+     * @return the weighted size
+     */
+    public long getWeightedSize() {
+        return getWeightedSize(contentCache) + getWeightedSize(chunkCache);
+    }
+
+    /**
+     * Registers the management bean exposing the statistics in the platform server.<br>
+     * The bean is unregistered by {@link #close()}.
+     * @param name the name of the cache used in the object name
+     * @return the object name
+     * @throws JMException the management exception
+     */
+    public synchronized ObjectName registerMBean(final String name) throws JMException {
+        unregisterMBean();
+        final ObjectName result = new ObjectName(FileCache.class.getPackageName() + ":type=FileCache,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new FileCacheMXBeanImpl(this), result);
+        objectName = result;
+
+        return result;
+    }
+
+    /**
+     * Unregisters the management bean if registered.
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (final JMException e) {
+            LOGGER.warn("Cannot unregister the management bean: {}", objectName, e);
+        }
+
+        objectName = null;
+    }
+
+    /**
+     * Gets the size.
+     * @return the size
+     */
+    public long getSize() {
+        return contentCache.synchronous().estimatedSize();
+    }
+
+    /**
+     * Invalidate.
+     */
+    public void invalidate() {
+        contentCache.synchronous().invalidateAll();
+        chunkCache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Invalidate the content and the chunks of the URI.
+     * @param uri the normalized URI
+     */
+    private void invalidate(final URI uri) {
+        contentCache.synchronous().invalidate(uri);
+        chunkCache.asMap().keySet().removeIf(k -> k.uri.equals(uri));
+    }
+
+    /**
+     * Checks if is enabled.
+     * @return the enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the number of watched directories.
+     * @return the number of directories
+     */
+    int getWatchedDirectoryCount() {
+        final DirectoryWatcher current = watcher;
+
+        return current == null ? 0 : current.directories.size();
+    }
+
+    /**
+     * Checks if the files are watched.
+     * @return true, if the cached entries of the files are invalidated using the events of the watcher
+     */
+    public boolean isWatching() {
+        return watcher != null;
+    }
+
+    /**
+     * Checks if the memory mapped mode is enabled.
+     * @return true, if files are mapped instead of being loaded on the heap
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Sets the chunking threshold.<br>
+     * The files larger than this threshold are cached as chunks when accessed using the range and streaming methods, the other ones are cached as a whole.<br>
+     * Chunks are not used in the memory mapped mode because the mapped regions are not loaded on the heap.
+     * @param threshold the size in bytes
+     */
+    public void setChunkingThreshold(final long threshold) {
+        invalidate();
+        chunkingThreshold = threshold;
+    }
+
+    /**
+     * Sets the chunk size.
+     * @param size the size in bytes of the chunks
+     */
+    public void setChunkSize(final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Specified chunk size is not valid: " + size);
+        }
+
+        invalidate();
+        chunkSize = size;
+    }
+
+    /**
+     * Sets the part of the maximum weight reserved to the chunks, the remaining part is used by the whole contents.<br>
+     * Use 0 to never keep the chunks in memory.
+     * @param ratio the ratio between 0 and 1
+     */
+    public void setChunkWeightRatio(final double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("Specified ratio is not valid: " + ratio);
+        }
+
+        invalidate();
+        chunkWeightRatio = ratio;
+        buildCaches(expiration, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Sets the disk store used as a second level.<br>
+     * The contents evicted from the memory are written in the disk store and are promoted back on the next miss without reading the origin. The modification date of the files is still checked before the promotion and the contents of the remote URIs follow the revalidation rules.<br>
+     * The index of the store is reloaded when the store is opened, call {@link #close()} on shutdown to also store the contents held in memory.<br>
+     * Mapped contents are not stored.<br>
+     * Use a null directory to disable the disk store.
+     * @param directory   the directory or null
+     * @param maximumSize the maximum size in bytes of the disk store
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized void setDiskStore(final Path directory, final long maximumSize) throws IOException {
+        final DiskContentStore previous = diskStore;
+        diskStore = null;
+
+        if (previous != null) {
+            previous.close();
+        }
+
+        if (directory != null) {
+            diskStore = new DiskContentStore(directory, maximumSize);
+        }
+    }
+
+    /**
+     * Sets the enabled.
+     * @param enabled the enabled to set
      */
     public void setEnabled(final boolean enabled) {
         this.enabled = enabled;
 
         if (!enabled) {
-            contentCache.invalidateAll();
+            invalidate();
         }
     }
 
@@ -247,15 +1223,22 @@ public class FileCache {
      * @param minutes the new expiration
      */
     public void setExpiration(final long minutes) {
-        contentCache.invalidateAll();
+        invalidate();
         expiration = minutes;
-        contentCache = Caffeine.newBuilder().expireAfterAccess(minutes, TimeUnit.MINUTES).weigher(new CacheWeigher()).maximumWeight(maximumWeight).removalListener((k, v, c) -> {
-            if (k == null) {
-                return;
-            }
+        buildCaches(expiration, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Sets the fetcher of the contents of the remote URIs.
+     * @param fetcher the fetcher
+     */
+    public void setFetcher(final ContentFetcher fetcher) {
+        if (fetcher == null) {
+            throw new IllegalArgumentException("Specified fetcher is null");
+        }
 
-            lockCache.invalidate(k);
-        }).build();
+        invalidate();
+        this.fetcher = fetcher;
     }
 
     /**
@@ -263,15 +1246,55 @@ public class FileCache {
      * @param weight the new maximum weight
      */
     public void setMaximumWeight(final long weight) {
-        contentCache.invalidateAll();
+        invalidate();
         maximumWeight = weight;
-        contentCache = Caffeine.newBuilder().expireAfterAccess(expiration, TimeUnit.MINUTES).weigher(new CacheWeigher()).maximumWeight(maximumWeight).removalListener((k, v, c) -> {
-            if (k == null) {
-                return;
-            }
+        buildCaches(expiration, TimeUnit.MINUTES);
+    }
 
-            lockCache.invalidate(k);
-        }).build();
+    /**
+     * Sets the revalidation delay of the contents of the remote URIs.<br>
+     * During this delay, the cached contents of the remote URIs are returned without checking the origin.<br>
+     * Use 0 to check the origin on each hit.
+     * @param delay the delay in milliseconds
+     */
+    public void setRevalidationDelay(final long delay) {
+        revalidationDelay = Math.max(0, delay);
+    }
+
+    /**
+     * Sets the watching mode.<br>
+     * When enabled, the directories of the cached files are registered with a watch service before the load of their first entry and the entries are invalidated on creation, modification or deletion events, the directories are unregistered when their last entry is removed.<br>
+     * Cache hits on files are then a simple lookup without any access to the file system, the events are processed by a single daemon thread owned by the cache and a modification is visible once its event is processed.<br>
+     * The files of the directories not registered, like the ones of the network file systems not reporting the modifications, and the entries loaded before the registration of their directory are still checked using their modification date on each hit.<br>
+     * On Linux, each watched directory uses an inotify watch, the limit of the user is given by <code>fs.inotify.max_user_watches</code>.
+     * @param watching true to watch the directories of the cached files, false to check the modification date of the files on each hit
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized void setWatching(final boolean watching) throws IOException {
+        if (watching == (watcher != null)) {
+            return;
+        }
+
+        final DirectoryWatcher previous = watcher;
+        watcher = watching ? new DirectoryWatcher() : null;
+        invalidate();
+
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Sets the memory mapped mode.<br>
+     * When enabled, the files are mapped using read-only regions held outside of the heap instead of being loaded in arrays.<br>
+     * The size of these regions is not weighed against the maximum weight, see {@link #getOffHeapSize()}, each mapped content has a nominal weight of 4096 so that the number of mappings stays bounded.<br>
+     * An evicted or invalidated region is not unmapped by the cache, Java has no API to do it, the region is released when the garbage collector reclaims its buffer and all the buffers returned by {@link #getBuffer(URI)}.<br>
+     * The files must not be truncated by another process while mapped, accessing a page beyond the new end of the file raises a SIGBUS signal, reported as an {@link InternalError} or crashing the virtual machine.
+     * @param memoryMapped true to map the files
+     */
+    public void setMemoryMapped(final boolean memoryMapped) {
+        invalidate();
+        this.memoryMapped = memoryMapped;
     }
 
     /**
@@ -280,35 +1303,548 @@ public class FileCache {
      * @return the content
      * @throws IOException Signals that an I/O exception has occurred.
      */
-    private static Content load(final URI uri) throws IOException {
+    private Content load(final URI uri) throws IOException {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Loading data from URI: {}", uri);
         }
 
-        if ("file".equalsIgnoreCase(uri.getScheme())) {
+        if (FILE_SCHEME.equalsIgnoreCase(uri.getScheme())) {
             final File file = new File(uri);
 
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Modification date: {}", new Date(file.lastModified()));
             }
 
+            if (memoryMapped) {
+                return map(file);
+            }
+
             return new Content(FileUtils.readFileToByteArray(file), file.lastModified());
         }
 
-        final URLConnection connection = uri.toURL().openConnection();
+        final ContentFetcher.Response response = fetcher.fetch(uri, 0, null);
 
-        try (InputStream in = connection.getInputStream()) {
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Modification date: {}", new Date(connection.getLastModified()));
+        return new Content(response.getData(), response.getLastModified(), response.getETag());
+    }
+
+    /**
+     * Checks if the cached content of a remote URI has to be revalidated.
+     * @param content the cached content
+     * @return true, if the content has validators and if the revalidation delay is elapsed
+     */
+    private boolean isRevalidationRequired(final Content content) {
+        if (content.getModificationDate() <= 0 && content.getETag() == null) {
+            // without validators, the content cannot be checked without a full transfer
+            return false;
+        }
+
+        return revalidationDelay <= 0 || System.currentTimeMillis() - content.getValidationDate() >= revalidationDelay;
+    }
+
+    /**
+     * Checks if the cached content of a file is stale.
+     * @param uri     the normalized URI
+     * @param content the cached content
+     * @return true, if the content must be reloaded
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private boolean isStale(final URI uri, final Content content) throws IOException {
+        final DirectoryWatcher current = watcher;
+        final Path directory = current == null ? null : getDirectory(uri);
+
+        if (directory != null && current.isWatched(directory, content)) {
+            // entries are invalidated by the watcher
+            return false;
+        }
+
+        final long validationDate = System.currentTimeMillis();
+
+        if (content.getModificationDate() < getLastModificationDate(uri)) {
+            return true;
+        }
+
+        if (directory != null) {
+            // checked after the registration of the directory, the next modifications are notified
+            content.setValidationDate(validationDate);
+        }
+
+        return false;
+    }
+
+    /**
+     * Normalizes the URI.<br>
+     * The URI of the files are made absolute and normalized to use the same key for a file specified as a path, a file or a URI.
+     * @param uri the URI
+     * @return the normalized URI
+     */
+    private static URI normalize(final URI uri) {
+        if (!FILE_SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            return uri;
+        }
+
+        try {
+            return Paths.get(uri).toAbsolutePath().normalize().toUri();
+        } catch (@SuppressWarnings("unused") final IllegalArgumentException e) {
+            return uri;
+        }
+    }
+
+    /**
+     * Gets the directory of the file.
+     * @param uri the normalized URI
+     * @return the directory or null if the URI is not the one of a file
+     */
+    private static Path getDirectory(final URI uri) {
+        if (uri == null || !FILE_SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            return null;
+        }
+
+        try {
+            return Paths.get(uri).getParent();
+        } catch (@SuppressWarnings("unused") final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a new asynchronous load of an entry, the directory of the file is registered by the watcher, if enabled, before the load starts so that no modification is missed.<br>
+     * The entry is counted until its removal, or until the failure of its load because the failed loads are removed without notification.
+     * @param uri    the normalized URI
+     * @param loader the loader
+     * @return the future content
+     */
+    private CompletableFuture<Content> newWatchedLoad(final URI uri, final Supplier<CompletableFuture<Content>> loader) {
+        final DirectoryWatcher current = watcher;
+        final Path directory = current == null ? null : getDirectory(uri);
+
+        if (directory == null) {
+            return loader.get();
+        }
+
+        current.register(directory);
+
+        return loader.get().whenComplete((c, e) -> {
+            if (e != null) {
+                current.unregister(directory);
+            }
+        });
+    }
+
+    /**
+     * Counts the removal of an entry of the file, its directory is unregistered when its last entry is removed.
+     * @param uri the normalized URI
+     */
+    private void unwatch(final URI uri) {
+        final DirectoryWatcher current = watcher;
+        final Path directory = current == null ? null : getDirectory(uri);
+
+        if (directory != null) {
+            current.unregister(directory);
+        }
+    }
+
+    /**
+     * Creates a new asynchronous load.
+     * @param uri the URI
+     * @return the future content
+     */
+    private CompletableFuture<Content> newLoad(final URI uri) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                final Content promoted = promote(uri);
+
+                if (promoted != null) {
+                    return promoted;
+                }
+
+                final long start = System.nanoTime();
+                final Content result;
+
+                try {
+                    result = load(uri);
+                } finally {
+                    recordLoadTime(uri, start);
+                }
+
+                // counted before the completion, the removal of the entry is notified after it
+                offHeapSize.add(result.getOffHeapSize());
+
+                return result;
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
             }
+        }, executor);
+    }
+
+    /**
+     * Creates a new asynchronous revalidation of the content of a remote URI.
+     * @param uri     the URI
+     * @param content the cached content
+     * @return the future content, the cached one if not modified
+     */
+    private CompletableFuture<Content> newRevalidation(final URI uri, final Content content) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return revalidate(uri, content);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Handles the removal of an entry.<br>
+     * Evicted contents are written in the disk store, invalidated and replaced ones are removed from it.
+     * @param uri     the URI
+     * @param content the removed content
+     * @param cause   the cause
+     */
+    private void onRemoval(final URI uri, final Content content, final RemovalCause cause) {
+        unwatch(uri);
+
+        if (content != null) {
+            offHeapSize.add(-content.getOffHeapSize());
+        }
+
+        final DiskContentStore store = diskStore;
+
+        if (store == null || uri == null) {
+            return;
+        }
+
+        try {
+            if (!cause.wasEvicted()) {
+                store.remove(uri);
+            } else if (content != null && !(content instanceof MappedContent)) {
+                LOGGER.debug("Content evicted, storing on disk: {}", uri);
+                store.put(uri, content);
+            }
+        } catch (final IOException e) {
+            LOGGER.warn("Cannot update the disk store for URI: {}", uri, e);
+        }
+    }
+
+    /**
+     * Promotes the content from the disk store.
+     * @param uri the normalized URI
+     * @return the content or null if not stored or no more valid
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private Content promote(final URI uri) throws IOException {
+        final DiskContentStore store = diskStore;
+
+        if (store == null) {
+            return null;
+        }
+
+        final boolean file = FILE_SCHEME.equalsIgnoreCase(uri.getScheme());
+
+        if (file && memoryMapped) {
+            return null;
+        }
+
+        final Content content = store.get(uri);
+
+        if (content == null) {
+            return null;
+        }
+
+        if (file) {
+            final long validationDate = System.currentTimeMillis();
+
+            if (content.getModificationDate() < getLastModificationDate(uri)) {
+                store.remove(uri);
+
+                return null;
+            }
+
+            LOGGER.debug("Content promoted from disk: {}", uri);
+            promotionCount.increment();
+            // checked after the registration of the directory if watched
+            content.setValidationDate(validationDate);
+
+            return content;
+        }
+
+        LOGGER.debug("Content promoted from disk: {}", uri);
+        promotionCount.increment();
+
+        return isRevalidationRequired(content) ? revalidate(uri, content) : content;
+    }
 
-            return new Content(IOUtils.toByteArray(in), connection.getLastModified());
+    /**
+     * Revalidates the content of a remote URI using a conditional request.
+     * @param uri     the URI
+     * @param content the cached content
+     * @return the content, the cached one if not modified
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private Content revalidate(final URI uri, final Content content) throws IOException {
+        final long start = System.nanoTime();
+        final ContentFetcher.Response response;
+        revalidationCount.increment();
+
+        try {
+            response = fetcher.fetch(uri, content.getModificationDate(), content.getETag());
         } finally {
-            if (connection instanceof final HttpURLConnection c) {
-                c.disconnect();
-            } else if (connection instanceof final Closeable c) {
-                c.close();
+            recordLoadTime(uri, start);
+        }
+
+        if (response.isNotModified()) {
+            notModifiedCount.increment();
+            content.setValidationDate(System.currentTimeMillis());
+
+            return content;
+        }
+
+        LOGGER.debug("Content modified, replacing: {}", uri);
+
+        return new Content(response.getData(), response.getLastModified(), response.getETag());
+    }
+
+    /**
+     * Counts the reload of a modified file.
+     * @param future the future content
+     * @return the future content
+     */
+    private CompletableFuture<Content> newStaleLoad(final CompletableFuture<Content> future) {
+        staleReloadCount.increment();
+
+        return future;
+    }
+
+    /**
+     * Records the load time in the histogram of the scheme of the URI.
+     * @param uri   the URI
+     * @param start the start time in nanoseconds
+     */
+    private void recordLoadTime(final URI uri, final long start) {
+        final String scheme = uri.getScheme() == null ? FILE_SCHEME : uri.getScheme().toLowerCase();
+        loadTimeHistograms.computeIfAbsent(scheme, k -> new AtomicLongArray(FileCacheStatistics.getLoadTimeBucketCount())).incrementAndGet(FileCacheStatistics.getLoadTimeBucket(System.nanoTime() - start));
+    }
+
+    /**
+     * Gets the weighted size of the cache.
+     * @param cache the cache
+     * @return the weighted size
+     */
+    private static long getWeightedSize(final AsyncCache<?, Content> cache) {
+        return cache.synchronous().policy().eviction().map(e -> Long.valueOf(e.weightedSize().orElse(0))).orElse(Long.valueOf(0)).longValue();
+    }
+
+    /**
+     * Checks if the file is cached as chunks.
+     * @param uri   the normalized URI
+     * @param index the index of the chunk to access
+     * @return true, if the chunks cache has to be used
+     */
+    private boolean isChunked(final URI uri, final long index) {
+        if (!enabled || memoryMapped || !FILE_SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            return false;
+        }
+
+        if (chunkCache.asMap().containsKey(new ChunkKey(uri, index))) {
+            return true;
+        }
+
+        if (contentCache.asMap().containsKey(uri)) {
+            return false;
+        }
+
+        return new File(uri).length() > chunkingThreshold;
+    }
+
+    /**
+     * Gets the chunk.
+     * @param key the key
+     * @return the chunk
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private Content getChunk(final ChunkKey key) throws IOException {
+        final boolean[] loaded = {
+                false
+        };
+        CompletableFuture<Content> future = chunkCache.get(key, (k, e) -> {
+            loaded[0] = true;
+
+            return newWatchedLoad(k.uri, () -> newChunkLoad(k));
+        });
+        final Content current = loaded[0] ? null : getIfDone(future);
+
+        if (current != null && isStale(key.uri, current)) {
+            final CompletableFuture<Content> stale = future;
+            // only the first reader detecting the modification triggers the reload, the others wait for it
+            future = chunkCache.asMap().compute(key, (k, v) -> v == null || v == stale ? newStaleLoad(newWatchedLoad(k.uri, () -> newChunkLoad(k))) : v);
+        }
+
+        return join(future);
+    }
+
+    /**
+     * Creates a new asynchronous load of a chunk.
+     * @param key the key
+     * @return the future chunk
+     */
+    private CompletableFuture<Content> newChunkLoad(final ChunkKey key) {
+        final long start = key.index * chunkSize;
+        final int size = chunkSize;
+
+        return CompletableFuture.supplyAsync(() -> {
+            final File file = new File(key.uri);
+            final long modificationDate = file.lastModified();
+            final long time = System.nanoTime();
+
+            try {
+                return new Content(readRange(file, start, size).array(), modificationDate);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                recordLoadTime(key.uri, time);
+            }
+        }, executor);
+    }
+
+    /**
+     * Reads a range of a chunked file.
+     * @param uri    the normalized URI
+     * @param offset the offset
+     * @param length the maximum length
+     * @return the read-only buffer
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private ByteBuffer readChunks(final URI uri, final long offset, final int length) throws IOException {
+        final long end = offset + length;
+        long position = offset;
+        ByteBuffer result = null;
+
+        while (position < end) {
+            final long index = position / chunkSize;
+            final ByteBuffer chunk = getChunk(new ChunkKey(uri, index)).getBuffer();
+            final int start = (int) (position - index * chunkSize);
+            final boolean last = chunk.limit() < chunkSize;
+
+            if (start >= chunk.limit()) {
+                break;
+            }
+
+            chunk.position(start);
+            chunk.limit((int) Math.min(chunk.limit(), start + end - position));
+
+            if (result == null && (last || chunk.remaining() == length)) {
+                // the range is held by a single chunk, no copy is needed
+                return chunk.slice();
+            }
+
+            if (result == null) {
+                result = ByteBuffer.allocate(length);
             }
+
+            position += chunk.remaining();
+            result.put(chunk);
+
+            if (last) {
+                break;
+            }
+        }
+
+        if (result == null) {
+            return ByteBuffer.allocate(0).asReadOnlyBuffer();
+        }
+
+        return result.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * Reads a range of the file.
+     * @param file   the file
+     * @param offset the offset
+     * @param length the maximum length
+     * @return the buffer, shorter than the specified length if the end of the file is reached
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static ByteBuffer readRange(final File file, final long offset, final int length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer result = ByteBuffer.allocate((int) Math.max(0, Math.min(length, channel.size() - offset)));
+
+            while (result.hasRemaining()) {
+                if (channel.read(result, offset + result.position()) < 0) {
+                    break;
+                }
+            }
+
+            result.flip();
+
+            // the file may have been truncated during the read
+            return result.limit() == result.capacity() ? result : ByteBuffer.wrap(Arrays.copyOf(result.array(), result.limit()));
+        }
+    }
+
+    /**
+     * Writes the buffer.
+     * @param buffer  the buffer
+     * @param channel the channel
+     * @return the number of bytes written
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static int write(final ByteBuffer buffer, final WritableByteChannel channel) throws IOException {
+        final int result = buffer.remaining();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        return result;
+    }
+
+    /**
+     * Waits for the future content.
+     * @param future the future
+     * @return the content
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static Content join(final CompletableFuture<Content> future) throws IOException {
+        try {
+            return future.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof final UncheckedIOException ioe) {
+                throw ioe.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Gets the content if the future is successfully done.
+     * @param future the future
+     * @return the content or null if not yet available
+     */
+    private static Content getIfDone(final CompletableFuture<Content> future) {
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+
+        return future.join();
+    }
+
+    /**
+     * Maps the file.
+     * @param file the file
+     * @return the content
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static Content map(final File file) throws IOException {
+        final long modificationDate = file.lastModified();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be mapped: " + file);
+            }
+
+            // the mapping remains valid after the channel is closed
+            return new MappedContent(channel.map(MapMode.READ_ONLY, 0, size), modificationDate);
         }
     }
 
@@ -323,7 +1859,7 @@ public class FileCache {
             throw new IOException("Specified file is null");
         }
 
-        final Content content = contentCache.getIfPresent(file.toURI());
+        final Content content = getIfDone(contentCache.asMap().get(normalize(file.toURI())));
 
         return content == null ? -1 : content.getModificationDate();
     }
@@ -339,7 +1875,7 @@ public class FileCache {
             throw new IOException("Specified URI is null");
         }
 
-        final Content content = contentCache.getIfPresent(uri);
+        final Content content = getIfDone(contentCache.asMap().get(normalize(uri)));
 
         return content == null ? -1 : content.getModificationDate();
     }
@@ -0,0 +1,123 @@
+package org.infodavid.commons.io;
+
+import java.util.Map;
+
+/**
+ * The interface FileCacheMXBean.<br>
+ * The management interface exposes the statistics of a {@link FileCache}, see {@link FileCacheStatistics} for the description of the attributes.
+ */
+public interface FileCacheMXBean {
+
+    /**
+     * Gets the average load time.
+     * @return the average load time in milliseconds
+     */
+    double getAverageLoadTime();
+
+    /**
+     * Gets the number of cached chunks.
+     * @return the number of chunks
+     */
+    long getChunkCount();
+
+    /**
+     * Gets the number of evicted entries.
+     * @return the eviction count
+     */
+    long getEvictionCount();
+
+    /**
+     * Gets the weight of the evicted entries.
+     * @return the eviction weight in bytes
+     */
+    long getEvictionWeight();
+
+    /**
+     * Gets the number of hits.
+     * @return the hit count
+     */
+    long getHitCount();
+
+    /**
+     * Gets the hit rate.
+     * @return the hit rate
+     */
+    double getHitRate();
+
+    /**
+     * Gets the number of failed loads.
+     * @return the load failure count
+     */
+    long getLoadFailureCount();
+
+    /**
+     * Gets the number of successful loads.
+     * @return the load success count
+     */
+    long getLoadSuccessCount();
+
+    /**
+     * Gets the histograms of the load times by scheme.
+     * @return the histograms
+     */
+    Map<String, long[]> getLoadTimeHistograms();
+
+    /**
+     * Gets the maximum weight.
+     * @return the maximum weight in bytes
+     */
+    long getMaximumWeight();
+
+    /**
+     * Gets the number of misses.
+     * @return the miss count
+     */
+    long getMissCount();
+
+    /**
+     * Gets the number of revalidations answered as not modified.
+     * @return the not modified count
+     */
+    long getNotModifiedCount();
+
+    /**
+     * Gets the size of the cached data held outside of the heap.
+     * @return the size in bytes
+     */
+    long getOffHeapSize();
+
+    /**
+     * Gets the number of contents promoted from the disk store.
+     * @return the promotion count
+     */
+    long getPromotionCount();
+
+    /**
+     * Gets the number of revalidations of remote contents.
+     * @return the revalidation count
+     */
+    long getRevalidationCount();
+
+    /**
+     * Gets the number of cached contents.
+     * @return the size
+     */
+    long getSize();
+
+    /**
+     * Gets the number of reloads of modified files.
+     * @return the stale reload count
+     */
+    long getStaleReloadCount();
+
+    /**
+     * Gets the current weight of the cached contents and chunks.
+     * @return the weighted size in bytes
+     */
+    long getWeightedSize();
+
+    /**
+     * Invalidate the cached contents and chunks.
+     */
+    void invalidate();
+}
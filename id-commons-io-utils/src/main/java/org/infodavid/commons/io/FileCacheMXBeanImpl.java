@@ -0,0 +1,192 @@
+package org.infodavid.commons.io;
+
+import java.util.Map;
+
+/**
+ * The Class FileCacheMXBeanImpl.<br>
+ * The management bean reads the counters of the cache for each attribute, the entries are never scanned and the maintenance of the caches is not performed.
+ */
+class FileCacheMXBeanImpl implements FileCacheMXBean {
+
+    /** The cache. */
+    private final FileCache cache;
+
+    /**
+     * Instantiates a new bean.
+     * @param cache the cache
+     */
+    FileCacheMXBeanImpl(final FileCache cache) {
+        this.cache = cache;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getAverageLoadTime()
+     */
+    @Override
+    public double getAverageLoadTime() {
+        return cache.getCacheStats().averageLoadPenalty() / 1000000;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getChunkCount()
+     */
+    @Override
+    public long getChunkCount() {
+        return cache.getChunkCount();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getEvictionCount()
+     */
+    @Override
+    public long getEvictionCount() {
+        return cache.getCacheStats().evictionCount();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getEvictionWeight()
+     */
+    @Override
+    public long getEvictionWeight() {
+        return cache.getCacheStats().evictionWeight();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getHitCount()
+     */
+    @Override
+    public long getHitCount() {
+        return cache.getCacheStats().hitCount();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getHitRate()
+     */
+    @Override
+    public double getHitRate() {
+        return cache.getCacheStats().hitRate();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getLoadFailureCount()
+     */
+    @Override
+    public long getLoadFailureCount() {
+        return cache.getCacheStats().loadFailureCount();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getLoadSuccessCount()
+     */
+    @Override
+    public long getLoadSuccessCount() {
+        return cache.getCacheStats().loadSuccessCount();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getLoadTimeHistograms()
+     */
+    @Override
+    public Map<String, long[]> getLoadTimeHistograms() {
+        return cache.getStatistics().getLoadTimeHistograms();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getMaximumWeight()
+     */
+    @Override
+    public long getMaximumWeight() {
+        return cache.getMaximumWeight();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getMissCount()
+     */
+    @Override
+    public long getMissCount() {
+        return cache.getCacheStats().missCount();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getNotModifiedCount()
+     */
+    @Override
+    public long getNotModifiedCount() {
+        return cache.getStatistics().getNotModifiedCount();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getOffHeapSize()
+     */
+    @Override
+    public long getOffHeapSize() {
+        return cache.getOffHeapSize();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getPromotionCount()
+     */
+    @Override
+    public long getPromotionCount() {
+        return cache.getStatistics().getPromotionCount();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getRevalidationCount()
+     */
+    @Override
+    public long getRevalidationCount() {
+        return cache.getStatistics().getRevalidationCount();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getSize()
+     */
+    @Override
+    public long getSize() {
+        return cache.getSize();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getStaleReloadCount()
+     */
+    @Override
+    public long getStaleReloadCount() {
+        return cache.getStatistics().getStaleReloadCount();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#getWeightedSize()
+     */
+    @Override
+    public long getWeightedSize() {
+        return cache.getWeightedSize();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileCacheMXBean#invalidate()
+     */
+    @Override
+    public void invalidate() {
+        cache.invalidate();
+    }
+}
@@ -0,0 +1,558 @@
+package org.infodavid.commons.io;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Class FileCacheStatistics.<br>
+ * The statistics are an immutable snapshot of the counters of a {@link FileCache}, the hits, misses, loads and evictions include the contents and the chunks.
+ */
+public final class FileCacheStatistics {
+
+    /** The upper bounds in milliseconds of the buckets of the load time histograms, the last bucket holds the longer loads. */
+    private static final long[] LOAD_TIME_BOUNDS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000
+    };
+
+    /**
+     * Copy the histograms.
+     * @param histograms the histograms
+     * @return the copy, sorted by scheme
+     */
+    private static Map<String, long[]> copy(final Map<String, long[]> histograms) {
+        final Map<String, long[]> result = new TreeMap<>();
+
+        for (final Map.Entry<String, long[]> entry : histograms.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().clone());
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the upper bounds of the buckets of the load time histograms.
+     * @return the upper bounds in milliseconds
+     */
+    public static long[] getLoadTimeBounds() {
+        return LOAD_TIME_BOUNDS.clone();
+    }
+
+    /**
+     * Gets the index of the bucket of the load time histograms.
+     * @param nanos the load time in nanoseconds
+     * @return the index
+     */
+    static int getLoadTimeBucket(final long nanos) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int result = 0;
+
+        while (result < LOAD_TIME_BOUNDS.length && millis >= LOAD_TIME_BOUNDS[result]) {
+            result++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the number of buckets of the load time histograms.
+     * @return the number of buckets
+     */
+    static int getLoadTimeBucketCount() {
+        return LOAD_TIME_BOUNDS.length + 1;
+    }
+
+    /** The number of cached chunks. */
+    private final long chunkCount;
+
+    /** The eviction count. */
+    private final long evictionCount;
+
+    /** The eviction weight. */
+    private final long evictionWeight;
+
+    /** The hit count. */
+    private final long hitCount;
+
+    /** The load failure count. */
+    private final long loadFailureCount;
+
+    /** The load success count. */
+    private final long loadSuccessCount;
+
+    /** The load time histograms by scheme. */
+    private final Map<String, long[]> loadTimeHistograms;
+
+    /** The maximum weight. */
+    private final long maximumWeight;
+
+    /** The miss count. */
+    private final long missCount;
+
+    /** The not modified count. */
+    private final long notModifiedCount;
+
+    /** The off-heap size. */
+    private final long offHeapSize;
+
+    /** The promotion count. */
+    private final long promotionCount;
+
+    /** The revalidation count. */
+    private final long revalidationCount;
+
+    /** The number of cached contents. */
+    private final long size;
+
+    /** The stale reload count. */
+    private final long staleReloadCount;
+
+    /** The total load time in nanoseconds. */
+    private final long totalLoadTime;
+
+    /** The weighted size. */
+    private final long weightedSize;
+
+    /**
+     * Instantiates a new statistics.
+     * @param builder the builder
+     */
+    FileCacheStatistics(final Builder builder) {
+        chunkCount = builder.chunkCount;
+        evictionCount = builder.evictionCount;
+        evictionWeight = builder.evictionWeight;
+        hitCount = builder.hitCount;
+        loadFailureCount = builder.loadFailureCount;
+        loadSuccessCount = builder.loadSuccessCount;
+        loadTimeHistograms = copy(builder.loadTimeHistograms);
+        maximumWeight = builder.maximumWeight;
+        missCount = builder.missCount;
+        notModifiedCount = builder.notModifiedCount;
+        offHeapSize = builder.offHeapSize;
+        promotionCount = builder.promotionCount;
+        revalidationCount = builder.revalidationCount;
+        size = builder.size;
+        staleReloadCount = builder.staleReloadCount;
+        totalLoadTime = builder.totalLoadTime;
+        weightedSize = builder.weightedSize;
+    }
+
+    /**
+     * Gets the average load time.
+     * @return the average load time in milliseconds
+     */
+    public double getAverageLoadTime() {
+        final long count = loadSuccessCount + loadFailureCount;
+
+        return count == 0 ? 0 : (double) totalLoadTime / count / 1000000;
+    }
+
+    /**
+     * Gets the number of cached chunks.
+     * @return the number of chunks
+     */
+    public long getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Gets the number of evicted entries.
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the weight of the evicted entries.
+     * @return the eviction weight in bytes
+     */
+    public long getEvictionWeight() {
+        return evictionWeight;
+    }
+
+    /**
+     * Gets the number of hits.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the hit rate.
+     * @return the ratio of the hits, 1 if no request has been done
+     */
+    public double getHitRate() {
+        final long count = hitCount + missCount;
+
+        return count == 0 ? 1 : (double) hitCount / count;
+    }
+
+    /**
+     * Gets the number of failed loads.
+     * @return the load failure count
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Gets the number of successful loads.
+     * @return the load success count
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * Gets the histograms of the load times from the origins, by scheme.<br>
+     * Each histogram holds the number of loads by bucket, see {@link #getLoadTimeBounds()}.
+     * @return a copy of the histograms
+     */
+    public Map<String, long[]> getLoadTimeHistograms() {
+        return copy(loadTimeHistograms);
+    }
+
+    /**
+     * Gets the maximum weight.
+     * @return the maximum weight in bytes
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Gets the number of misses.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the number of revalidations of remote contents answered as not modified.
+     * @return the not modified count
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount;
+    }
+
+    /**
+     * Gets the size of the cached data held outside of the heap.
+     * @return the size in bytes
+     */
+    public long getOffHeapSize() {
+        return offHeapSize;
+    }
+
+    /**
+     * Gets the number of contents promoted from the disk store.
+     * @return the promotion count
+     */
+    public long getPromotionCount() {
+        return promotionCount;
+    }
+
+    /**
+     * Gets the number of revalidations of remote contents.
+     * @return the revalidation count
+     */
+    public long getRevalidationCount() {
+        return revalidationCount;
+    }
+
+    /**
+     * Gets the number of cached contents.
+     * @return the size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of reloads of modified files.
+     * @return the stale reload count
+     */
+    public long getStaleReloadCount() {
+        return staleReloadCount;
+    }
+
+    /**
+     * Gets the total load time.
+     * @return the total load time in nanoseconds
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * Gets the current weight of the cached contents and chunks.
+     * @return the weighted size in bytes
+     */
+    public long getWeightedSize() {
+        return weightedSize;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "FileCacheStatistics [hitCount=" + hitCount + ", missCount=" + missCount + ", loadSuccessCount=" + loadSuccessCount + ", loadFailureCount=" + loadFailureCount + ", totalLoadTime=" + totalLoadTime + ", evictionCount=" + evictionCount + ", evictionWeight=" + evictionWeight + ", revalidationCount=" + revalidationCount + ", notModifiedCount=" + notModifiedCount + ", staleReloadCount=" + staleReloadCount + ", promotionCount=" + promotionCount + ", size=" + size + ", chunkCount=" + chunkCount + ", weightedSize=" + weightedSize + ", offHeapSize=" + offHeapSize + ", maximumWeight=" + maximumWeight + "]";
+    }
+
+    /**
+     * The Class Builder.
+     */
+    static class Builder {
+
+        /** The chunk count. */
+        private long chunkCount;
+
+        /** The eviction count. */
+        private long evictionCount;
+
+        /** The eviction weight. */
+        private long evictionWeight;
+
+        /** The hit count. */
+        private long hitCount;
+
+        /** The load failure count. */
+        private long loadFailureCount;
+
+        /** The load success count. */
+        private long loadSuccessCount;
+
+        /** The load time histograms. */
+        private Map<String, long[]> loadTimeHistograms = Collections.emptyMap();
+
+        /** The maximum weight. */
+        private long maximumWeight;
+
+        /** The miss count. */
+        private long missCount;
+
+        /** The not modified count. */
+        private long notModifiedCount;
+
+        /** The off-heap size. */
+        private long offHeapSize;
+
+        /** The promotion count. */
+        private long promotionCount;
+
+        /** The revalidation count. */
+        private long revalidationCount;
+
+        /** The size. */
+        private long size;
+
+        /** The stale reload count. */
+        private long staleReloadCount;
+
+        /** The total load time. */
+        private long totalLoadTime;
+
+        /** The weighted size. */
+        private long weightedSize;
+
+        /**
+         * Builds the statistics.
+         * @return the statistics
+         */
+        FileCacheStatistics build() {
+            return new FileCacheStatistics(this);
+        }
+
+        /**
+         * Sets the chunk count.
+         * @param chunkCount the chunk count
+         * @return the builder
+         */
+        Builder chunkCount(final long chunkCount) {
+            this.chunkCount = chunkCount;
+
+            return this;
+        }
+
+        /**
+         * Sets the eviction count.
+         * @param evictionCount the eviction count
+         * @return the builder
+         */
+        Builder evictionCount(final long evictionCount) {
+            this.evictionCount = evictionCount;
+
+            return this;
+        }
+
+        /**
+         * Sets the eviction weight.
+         * @param evictionWeight the eviction weight
+         * @return the builder
+         */
+        Builder evictionWeight(final long evictionWeight) {
+            this.evictionWeight = evictionWeight;
+
+            return this;
+        }
+
+        /**
+         * Sets the hit count.
+         * @param hitCount the hit count
+         * @return the builder
+         */
+        Builder hitCount(final long hitCount) {
+            this.hitCount = hitCount;
+
+            return this;
+        }
+
+        /**
+         * Sets the load failure count.
+         * @param loadFailureCount the load failure count
+         * @return the builder
+         */
+        Builder loadFailureCount(final long loadFailureCount) {
+            this.loadFailureCount = loadFailureCount;
+
+            return this;
+        }
+
+        /**
+         * Sets the load success count.
+         * @param loadSuccessCount the load success count
+         * @return the builder
+         */
+        Builder loadSuccessCount(final long loadSuccessCount) {
+            this.loadSuccessCount = loadSuccessCount;
+
+            return this;
+        }
+
+        /**
+         * Sets the load time histograms.
+         * @param loadTimeHistograms the load time histograms
+         * @return the builder
+         */
+        Builder loadTimeHistograms(final Map<String, long[]> loadTimeHistograms) {
+            this.loadTimeHistograms = loadTimeHistograms;
+
+            return this;
+        }
+
+        /**
+         * Sets the maximum weight.
+         * @param maximumWeight the maximum weight
+         * @return the builder
+         */
+        Builder maximumWeight(final long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+
+            return this;
+        }
+
+        /**
+         * Sets the miss count.
+         * @param missCount the miss count
+         * @return the builder
+         */
+        Builder missCount(final long missCount) {
+            this.missCount = missCount;
+
+            return this;
+        }
+
+        /**
+         * Sets the not modified count.
+         * @param notModifiedCount the not modified count
+         * @return the builder
+         */
+        Builder notModifiedCount(final long notModifiedCount) {
+            this.notModifiedCount = notModifiedCount;
+
+            return this;
+        }
+
+        /**
+         * Sets the off-heap size.
+         * @param offHeapSize the off-heap size
+         * @return the builder
+         */
+        Builder offHeapSize(final long offHeapSize) {
+            this.offHeapSize = offHeapSize;
+
+            return this;
+        }
+
+        /**
+         * Sets the promotion count.
+         * @param promotionCount the promotion count
+         * @return the builder
+         */
+        Builder promotionCount(final long promotionCount) {
+            this.promotionCount = promotionCount;
+
+            return this;
+        }
+
+        /**
+         * Sets the revalidation count.
+         * @param revalidationCount the revalidation count
+         * @return the builder
+         */
+        Builder revalidationCount(final long revalidationCount) {
+            this.revalidationCount = revalidationCount;
+
+            return this;
+        }
+
+        /**
+         * Sets the size.
+         * @param size the size
+         * @return the builder
+         */
+        Builder size(final long size) {
+            this.size = size;
+
+            return this;
+        }
+
+        /**
+         * Sets the stale reload count.
+         * @param staleReloadCount the stale reload count
+         * @return the builder
+         */
+        Builder staleReloadCount(final long staleReloadCount) {
+            this.staleReloadCount = staleReloadCount;
+
+            return this;
+        }
+
+        /**
+         * Sets the total load time.
+         * @param totalLoadTime the total load time
+         * @return the builder
+         */
+        Builder totalLoadTime(final long totalLoadTime) {
+            this.totalLoadTime = totalLoadTime;
+
+            return this;
+        }
+
+        /**
+         * Sets the weighted size.
+         * @param weightedSize the weighted size
+         * @return the builder
+         */
+        Builder weightedSize(final long weightedSize) {
+            this.weightedSize = weightedSize;
+
+            return this;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.infodavid.commons.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.Arrays;
+
+/**
+ * The Class FileChannelCopier.<br>
+ * The copier transfers the content of the regular files from channel to channel so that the platform can copy the data without going through the Java heap (sendfile or copy_file_range on Linux).<br>
+ * The length of the target is set to the size of the source before the transfer, this does not allocate the blocks of the file as the Java API has no equivalent of fallocate. On failure, the partially copied target is deleted like {@link Files#copy(Path, Path, CopyOption...)} does.<br>
+ * When {@link StandardCopyOption#COPY_ATTRIBUTES} is given, the times are restored in a single call followed, if supported, by the owner and the group, when permitted, and by the POSIX permissions like {@link Files#copy(Path, Path, CopyOption...)} does.<br>
+ * The symbolic links, when {@link LinkOption#NOFOLLOW_LINKS} is given, and the other files which are not regular files are copied using {@link Files#copy(Path, Path, CopyOption...)}.
+ */
+final class FileChannelCopier {
+
+    /** The Constant TRANSFER_SIZE, the maximum number of bytes transferred by a single call. */
+    static final long TRANSFER_SIZE = 67108864;
+
+    /**
+     * Copy the regular file.
+     * @param source  the source file
+     * @param target  the target file
+     * @param options the options, {@link StandardCopyOption#REPLACE_EXISTING}, {@link StandardCopyOption#COPY_ATTRIBUTES} and {@link LinkOption#NOFOLLOW_LINKS} are supported
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    static void copy(final Path source, final Path target, final CopyOption... options) throws IOException {
+        final boolean replace = contains(options, StandardCopyOption.REPLACE_EXISTING);
+        final boolean copyAttributes = contains(options, StandardCopyOption.COPY_ATTRIBUTES);
+        final LinkOption[] linkOptions = contains(options, LinkOption.NOFOLLOW_LINKS) ? new LinkOption[] { LinkOption.NOFOLLOW_LINKS } : new LinkOption[0];
+        final PosixFileAttributeView posixView = Files.getFileAttributeView(source, PosixFileAttributeView.class, linkOptions);
+        final BasicFileAttributes attrs = posixView == null ? Files.readAttributes(source, BasicFileAttributes.class, linkOptions) : posixView.readAttributes();
+
+        if (!attrs.isRegularFile()) {
+            Files.copy(source, target, filter(options));
+
+            return;
+        }
+
+        if (replace) {
+            Files.deleteIfExists(target);
+        }
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            final FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+            try (out) {
+                transfer(in, out);
+            } catch (final IOException | RuntimeException e) {
+                // like Files.copy, the partial target, already extended to the size of the source, is not left behind
+                try {
+                    Files.deleteIfExists(target);
+                } catch (final IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+
+                throw e;
+            }
+        }
+
+        if (copyAttributes) {
+            Files.getFileAttributeView(target, BasicFileAttributeView.class).setTimes(attrs.lastModifiedTime(), attrs.lastAccessTime(), attrs.creationTime());
+
+            if (attrs instanceof final PosixFileAttributes posixAttrs) {
+                final PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+
+                if (targetView != null) {
+                    copyOwnership(posixAttrs, targetView);
+                    targetView.setPermissions(posixAttrs.permissions());
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the option is given.
+     * @param options the options
+     * @param option  the option
+     * @return true, if given
+     */
+    private static boolean contains(final CopyOption[] options, final CopyOption option) {
+        if (options == null) {
+            return false;
+        }
+
+        for (final CopyOption item : options) {
+            if (item == option) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Copy the owner and the group, ignoring the failures as only a privileged user can give the file to another user.
+     * @param attrs      the attributes of the source
+     * @param targetView the view of the target
+     */
+    private static void copyOwnership(final PosixFileAttributes attrs, final PosixFileAttributeView targetView) {
+        try {
+            targetView.setOwner(attrs.owner());
+        } catch (@SuppressWarnings("unused") final IOException e) {
+            // noop
+        }
+
+        try {
+            targetView.setGroup(attrs.group());
+        } catch (@SuppressWarnings("unused") final IOException e) {
+            // noop
+        }
+    }
+
+    /**
+     * Remove the extended options not supported by {@link Files}.
+     * @param options the options
+     * @return the standard options
+     */
+    static CopyOption[] filter(final CopyOption... options) {
+        if (options == null) {
+            return new CopyOption[0];
+        }
+
+        return Arrays.stream(options).filter(o -> !(o instanceof ExtendedCopyOption)).toArray(CopyOption[]::new);
+    }
+
+    /**
+     * Checks if the channel transfer is requested.
+     * @param options the options
+     * @return true, if {@link ExtendedCopyOption#CHANNEL_TRANSFER} is given
+     */
+    static boolean isChannelTransfer(final CopyOption... options) {
+        return contains(options, ExtendedCopyOption.CHANNEL_TRANSFER);
+    }
+
+    /**
+     * Transfer the content of the source channel to the new target one.
+     * @param in  the source channel
+     * @param out the target channel
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void transfer(final FileChannel in, final FileChannel out) throws IOException {
+        final long size = in.size();
+
+        if (size > 0) {
+            // only sets the length, the file stays sparse until the transfer writes its blocks
+            out.write(ByteBuffer.wrap(new byte[1]), size - 1);
+        }
+
+        long position = 0;
+
+        while (position < size) {
+            final long transferred = in.transferTo(position, Math.min(TRANSFER_SIZE, size - position), out);
+
+            if (transferred <= 0) {
+                break;
+            }
+
+            position += transferred;
+        }
+
+        if (position != size) {
+            out.truncate(position);
+        }
+    }
+
+    /**
+     * Instantiates a new copier.
+     */
+    private FileChannelCopier() {
+    }
+}
@@ -47,6 +47,9 @@ public interface FileProcessingListener {
     /** The skipped. */
     byte SKIPPED = 12;
 
+    /** The unchanged, used when a synchronized file is already up to date. */
+    byte UNCHANGED = 13;
+
     /**
      * Failed.
      * @param path the path
@@ -61,4 +64,16 @@ public interface FileProcessingListener {
      * @param action the action
      */
     void processed(Path path, byte action); // NOSONAR Keep name
+
+    /**
+     * Progress, notified by the asynchronous operations of {@link PathUtilities} after each processed entry.<br>
+     * The bytes are only tracked by the operations transferring data, the totals being 0 otherwise.
+     * @param files      the number of entries processed
+     * @param totalFiles the total number of entries
+     * @param bytes      the number of bytes processed
+     * @param totalBytes the total number of bytes
+     */
+    default void progress(final long files, final long totalFiles, final long bytes, final long totalBytes) {
+        // noop
+    }
 }
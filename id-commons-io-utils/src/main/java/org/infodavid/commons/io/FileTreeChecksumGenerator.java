@@ -1,22 +1,99 @@
 package org.infodavid.commons.io;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 
 /**
- * The Class FileTreeChecksumGenerator.
+ * The Class FileTreeChecksumGenerator.<br>
+ * The generator computes a Merkle tree of the visited files tree: each regular file is hashed using its content, each symbolic link using its target and each directory using the sorted names, types and hashes of its entries.<br>
+ * The checksums of the directories are kept by path relative to the root so that two trees can be compared by descending only into the sub-trees having different checksums, see {@link #getModifiedDirectories(FileTreeChecksumGenerator)}.<br>
+ * The generator is thread-safe and can be used with {@link Files#walkFileTree(Path, FileVisitor)} or using {@link #walk(Path, int)} to hash the files in parallel.<br>
+ * The root of the tree is the first visited path, {@link #walk(Path, int)} resets the generator before each walk while {@link #reset()} must be called before visiting another tree using {@link Files#walkFileTree(Path, FileVisitor)}, the paths outside of the root are rejected.
  */
 public class FileTreeChecksumGenerator implements FileVisitor<Path> {
 
-    /** The buffer. */
-    private final StringBuilder buffer = new StringBuilder();
+    /** The Constant BUFFER_SIZE. */
+    private static final int BUFFER_SIZE = 65536;
+
+    /** The Constant DIRECTORY. */
+    private static final byte DIRECTORY = 'd';
+
+    /** The Constant FILE. */
+    private static final byte FILE = 'f';
+
+    /** The Constant LINK. */
+    private static final byte LINK = 'l';
+
+    /**
+     * Hash the content of the file.
+     * @param file the file
+     * @return the hash
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static byte[] hash(final Path file) throws IOException {
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(1, channel.size())));
+
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Prefix the hash with the type of the entry.
+     * @param type the type
+     * @param hash the hash
+     * @return the entry
+     */
+    private static byte[] toEntry(final byte type, final byte[] hash) {
+        final byte[] result = new byte[hash.length + 1];
+        result[0] = type;
+        System.arraycopy(hash, 0, result, 1, hash.length);
+
+        return result;
+    }
+
+    /** The checksums of the directories by relative path. */
+    private final Map<Path, byte[]> checksums = new ConcurrentHashMap<>();
+
+    /** The entries of the directories being visited. */
+    private final Map<Path, Map<String, byte[]>> pending = new ConcurrentHashMap<>();
+
+    /** The root. */
+    private final AtomicReference<Path> root = new AtomicReference<>();
 
     /**
      * Instantiates a new checksum generator.
@@ -26,23 +103,127 @@ public class FileTreeChecksumGenerator implements FileVisitor<Path> {
     }
 
     /**
-     * Gets the checksum.
-     * @return the checksum
+     * Adds the entry to its parent directory.
+     * @param path  the path
+     * @param entry the entry
+     */
+    private void addEntry(final Path path, final byte[] entry) {
+        final Path parent = path.getParent();
+
+        if (parent != null && !path.equals(root.get())) {
+            pending.computeIfAbsent(parent, k -> new ConcurrentSkipListMap<>()).put(path.getFileName().toString(), entry);
+        }
+    }
+
+    /**
+     * Checks that the path belongs to the tree being visited.
+     * @param path the path
+     */
+    private void checkRoot(final Path path) {
+        final Path current = root.get();
+
+        if (!path.startsWith(current)) {
+            throw new IllegalStateException("Path " + path + " is outside of the visited tree " + current + ", the generator must be reset before visiting another tree");
+        }
+    }
+
+    /**
+     * Gets the checksum of the root of the tree.
+     * @return the checksum or null if no tree has been visited
      */
     public String getChecksum() {
-        return DigestUtils.md5Hex(buffer.toString().getBytes(StandardCharsets.UTF_8));
+        final Path path = root.get();
+
+        return path == null ? null : getChecksum(path.getFileSystem().getPath(""));
     }
 
-    /*
-     * (non-javadoc)
-     * @see java.nio.file.FileVisitor#postVisitDirectory(java.lang.Object, java.io.IOException)
+    /**
+     * Gets the checksum of a directory of the tree.
+     * @param path the path relative to the root
+     * @return the checksum or null if the directory has not been visited
+     */
+    public String getChecksum(final Path path) {
+        final byte[] checksum = checksums.get(path);
+
+        return checksum == null ? null : Hex.encodeHexString(checksum);
+    }
+
+    /**
+     * Gets the checksums of the directories.
+     * @return the checksums by path relative to the root
      */
+    public Map<Path, String> getChecksums() {
+        final Map<Path, String> results = new HashMap<>();
+        checksums.forEach((k, v) -> results.put(k, Hex.encodeHexString(v)));
+
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * Gets the directories having different checksums in the other tree.<br>
+     * The comparison starts at the root and descends only into the directories having different checksums, the directories missing in one of the trees are included.
+     * @param other the checksum generator used on the other tree
+     * @return the paths relative to the roots, parents first
+     */
+    public List<Path> getModifiedDirectories(final FileTreeChecksumGenerator other) {
+        Objects.requireNonNull(other);
+        final Map<Path, Set<Path>> children = new HashMap<>();
+        final List<Path> results = new ArrayList<>();
+        final Deque<Path> queue = new ArrayDeque<>();
+        final Path path = root.get();
+
+        if (path == null) {
+            return results;
+        }
+
+        for (final Map<Path, byte[]> map : List.of(checksums, other.checksums)) {
+            for (final Path key : map.keySet()) {
+                if (!key.toString().isEmpty()) {
+                    final Path parent = key.getParent() == null ? path.getFileSystem().getPath("") : key.getParent();
+                    children.computeIfAbsent(parent, k -> new LinkedHashSet<>()).add(key);
+                }
+            }
+        }
+
+        queue.add(path.getFileSystem().getPath(""));
+
+        while (!queue.isEmpty()) {
+            final Path current = queue.poll();
+
+            if (!MessageDigest.isEqual(checksums.get(current), other.checksums.get(current))) {
+                results.add(current);
+                queue.addAll(children.getOrDefault(current, Collections.emptySet()));
+            }
+        }
+
+        return results;
+    }
+
     /*
-     * (non-Javadoc)
+     * (non-javadoc)
      * @see java.nio.file.FileVisitor#postVisitDirectory(java.lang.Object, java.io.IOException)
      */
     @Override
     public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+        if (exc != null) {
+            throw exc;
+        }
+
+        final MessageDigest digest = DigestUtils.getSha256Digest();
+        final Map<String, byte[]> entries = pending.remove(dir);
+
+        if (entries != null) {
+            for (final Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(entry.getValue());
+            }
+        }
+
+        final byte[] checksum = digest.digest();
+        checksums.put(root.get().relativize(dir), checksum);
+        addEntry(dir, toEntry(DIRECTORY, checksum));
+
         return FileVisitResult.CONTINUE;
     }
 
@@ -50,42 +231,45 @@ public class FileTreeChecksumGenerator implements FileVisitor<Path> {
      * (non-javadoc)
      * @see java.nio.file.FileVisitor#preVisitDirectory(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
      */
-    /*
-     * (non-Javadoc)
-     * @see java.nio.file.FileVisitor#preVisitDirectory(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
-     */
     @Override
     public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+        if (!root.compareAndSet(null, dir)) {
+            checkRoot(dir);
+        }
+
         return FileVisitResult.CONTINUE;
     }
 
-    /*
-     * (non-javadoc)
-     * @see java.nio.file.FileVisitor#visitFile(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
+    /**
+     * Reset the generator so that another tree can be visited.
      */
+    public void reset() {
+        root.set(null);
+        pending.clear();
+        checksums.clear();
+    }
+
     /*
-     * (non-Javadoc)
+     * (non-javadoc)
      * @see java.nio.file.FileVisitor#visitFile(java.lang.Object, java.nio.file.attribute.BasicFileAttributes)
      */
     @Override
     public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
-        if (Files.exists(file)) { // NOSONAR API NIO
-            buffer.append(file.toAbsolutePath().toString());
-            buffer.append('\n');
-            buffer.append(Files.size(file));
-            buffer.append('\n');
+        final byte[] entry;
 
-            try {
-                final String mime = Files.probeContentType(file);
-
-                if (mime != null) {
-                    buffer.append(mime);
-                }
-            } catch (@SuppressWarnings("unused") final Exception e) {
-                // noop
-            }
+        if (attrs.isSymbolicLink()) {
+            entry = toEntry(LINK, DigestUtils.sha256(Files.readSymbolicLink(file).toString().getBytes(StandardCharsets.UTF_8)));
+        } else if (attrs.isRegularFile()) {
+            entry = toEntry(FILE, hash(file));
+        } else {
+            return FileVisitResult.CONTINUE;
+        }
 
-            buffer.append('\n');
+        if (root.compareAndSet(null, file)) {
+            checksums.put(file.getFileSystem().getPath(""), Arrays.copyOfRange(entry, 1, entry.length));
+        } else {
+            checkRoot(file);
+            addEntry(file, entry);
         }
 
         return FileVisitResult.CONTINUE;
@@ -95,12 +279,27 @@ public class FileTreeChecksumGenerator implements FileVisitor<Path> {
      * (non-javadoc)
      * @see java.nio.file.FileVisitor#visitFileFailed(java.lang.Object, java.io.IOException)
      */
-    /*
-     * (non-Javadoc)
-     * @see java.nio.file.FileVisitor#visitFileFailed(java.lang.Object, java.io.IOException)
-     */
     @Override
     public FileVisitResult visitFileFailed(final Path file, final IOException exception) throws IOException {
         throw exception;
     }
+
+    /**
+     * Reset the generator, walk the tree and compute the checksums.
+     * @param path        the root of the tree
+     * @param parallelism the maximum number of threads used to hash the files
+     * @return the checksum of the root
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public String walk(final Path path, final int parallelism) throws IOException {
+        reset();
+
+        if (parallelism > 1) {
+            new ParallelFileTreeWalker(parallelism).walk(path, this);
+        } else {
+            Files.walkFileTree(path, this);
+        }
+
+        return getChecksum();
+    }
 }
@@ -0,0 +1,76 @@
+package org.infodavid.commons.io;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The Class FileTreeDifferences.<br>
+ * The differences between two files trees, the paths are relative to the roots of the trees.<br>
+ * When a directory is added or removed, its entries are not listed.
+ */
+public final class FileTreeDifferences {
+
+    /** The added paths, present only in the second tree. */
+    private final Set<Path> added;
+
+    /** The modified paths. */
+    private final Set<Path> modified;
+
+    /** The removed paths, present only in the first tree. */
+    private final Set<Path> removed;
+
+    /**
+     * Instantiates a new differences.
+     * @param added    the added paths
+     * @param removed  the removed paths
+     * @param modified the modified paths
+     */
+    FileTreeDifferences(final Set<Path> added, final Set<Path> removed, final Set<Path> modified) {
+        this.added = Collections.unmodifiableSet(new TreeSet<>(added));
+        this.removed = Collections.unmodifiableSet(new TreeSet<>(removed));
+        this.modified = Collections.unmodifiableSet(new TreeSet<>(modified));
+    }
+
+    /**
+     * Gets the added paths.
+     * @return the paths present only in the second tree
+     */
+    public Set<Path> getAdded() {
+        return added;
+    }
+
+    /**
+     * Gets the modified paths.
+     * @return the paths having a different type, size, link target or content
+     */
+    public Set<Path> getModified() {
+        return modified;
+    }
+
+    /**
+     * Gets the removed paths.
+     * @return the paths present only in the first tree
+     */
+    public Set<Path> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Checks if the trees are identical.
+     * @return true, if no difference
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "added=" + added + ", removed=" + removed + ", modified=" + modified;
+    }
+}
@@ -1,36 +1,79 @@
 package org.infodavid.commons.io;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The Class FileTreeMatcher.
+ * The Class FileTreeMatcher.<br>
+ * The matcher walks the first tree and compares the entries in tiers: the entries missing in one of the trees and the ones having a different type, link target or size are reported using the metadata only, the files sharing the same file key are considered identical and, if the modification time is trusted, the files having the same size and modification time too.<br>
+ * The content of the remaining candidates is compared in parallel by mapping the files and stopping at the first different byte.
  */
 class FileTreeMatcher implements FileVisitor<Path> {
 
     /** The Constant LOGGER. */
     private static final Logger LOGGER = LoggerFactory.getLogger(FileTreeMatcher.class);
 
-    /** The checksums. */
-    private final StringBuilder checksums = new StringBuilder();
+    /** The Constant REGION_SIZE, the size of the mapped regions. */
+    private static final long REGION_SIZE = 67108864;
 
-    /** The differences. */
-    private final Collection<Path> differences = new ArrayList<>();
+    /**
+     * Checks if the files have the same content.
+     * @param p1 the first file
+     * @param p2 the second file
+     * @return true, if same content
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    static boolean isSameContent(final Path p1, final Path p2) throws IOException {
+        try (FileChannel c1 = FileChannel.open(p1, StandardOpenOption.READ); FileChannel c2 = FileChannel.open(p2, StandardOpenOption.READ)) {
+            final long size = c1.size();
+
+            if (size != c2.size()) {
+                return false;
+            }
+
+            for (long position = 0; position < size; position += REGION_SIZE) {
+                final long length = Math.min(REGION_SIZE, size - position);
+                final MappedByteBuffer b1 = c1.map(MapMode.READ_ONLY, position, length);
+                final MappedByteBuffer b2 = c2.map(MapMode.READ_ONLY, position, length);
+
+                if (b1.mismatch(b2) >= 0) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /** The added. */
+    private final Set<Path> added = new ConcurrentSkipListSet<>();
+
+    /** The candidates for the comparison of the contents. */
+    private final List<Path> candidates = new ArrayList<>();
 
     /** The halt on first. */
     private boolean haltOnFirst = true;
@@ -38,12 +81,21 @@ class FileTreeMatcher implements FileVisitor<Path> {
     /** The include hidden. */
     private final boolean includeHidden;
 
+    /** The modification time trusted flag. */
+    private boolean modificationTimeTrusted = false;
+
+    /** The modified. */
+    private final Set<Path> modified = new ConcurrentSkipListSet<>();
+
     /** The p 1. */
     private final Path p1;
 
     /** The p 2. */
     private final Path p2;
 
+    /** The removed. */
+    private final Set<Path> removed = new ConcurrentSkipListSet<>();
+
     /**
      * Instantiates a new file tree matcher.
      * @param p1          the p 1
@@ -69,19 +121,84 @@ class FileTreeMatcher implements FileVisitor<Path> {
     }
 
     /**
-     * Gets the checksum.
-     * @return the checksum
+     * Compare the contents of the candidates.
+     * @param parallelism the maximum number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
      */
-    public String getChecksum() {
-        return DigestUtils.md5Hex(checksums.toString().getBytes(StandardCharsets.UTF_8));
+    private void compareContents(final int parallelism) throws IOException {
+        if (candidates.isEmpty() || isHalted()) {
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, candidates.size())));
+
+        try {
+            final List<Future<Void>> futures = new ArrayList<>(candidates.size());
+
+            for (final Path relative : candidates) {
+                futures.add(executor.submit(() -> {
+                    if (!isHalted() && !isSameContent(p1.resolve(relative), p2.resolve(relative))) {
+                        LOGGER.debug("Contents of files {} and {} are not the same", p1.resolve(relative), p2.resolve(relative));
+                        modified.add(relative);
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw (IOException) new InterruptedIOException("Interrupted while comparing: " + p1 + " and " + p2).initCause(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
      * Gets the differences.
      * @return the differences
      */
-    public Collection<Path> getDifferences() {
-        return differences;
+    public FileTreeDifferences getDifferences() {
+        return new FileTreeDifferences(added, removed, modified);
+    }
+
+    /**
+     * Checks if the comparison can stop.
+     * @return true, if halted
+     */
+    private boolean isHalted() {
+        return haltOnFirst && !(added.isEmpty() && removed.isEmpty() && modified.isEmpty());
+    }
+
+    /**
+     * Checks if the modification time is trusted.
+     * @return true, if the files having the same size and modification time are considered identical
+     */
+    public boolean isModificationTimeTrusted() {
+        return modificationTimeTrusted;
+    }
+
+    /**
+     * Walk the first tree and compare it to the second one.
+     * @param parallelism the maximum number of threads used to compare the contents
+     * @return the differences
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public FileTreeDifferences match(final int parallelism) throws IOException {
+        Files.walkFileTree(p1, this);
+        compareContents(parallelism);
+
+        return getDifferences();
     }
 
     /*
@@ -101,44 +218,46 @@ class FileTreeMatcher implements FileVisitor<Path> {
     public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
         Objects.requireNonNull(dir);
         Objects.requireNonNull(attrs);
-        final Path relativeDir = p1.relativize(dir.toAbsolutePath());
-        final Path actualDir = p2.resolve(relativeDir);
 
         if (PathUtilities.isHidden(dir) && !includeHidden) {
             return FileVisitResult.SKIP_SUBTREE;
         }
 
-        if (actualDir == null || !Files.exists(actualDir)) { // NOSONAR API NIO
+        final Path relativeDir = p1.relativize(dir.toAbsolutePath());
+        final Path actualDir = p2.resolve(relativeDir);
+
+        if (!Files.exists(actualDir, LinkOption.NOFOLLOW_LINKS)) {
             LOGGER.debug("Folder does not exist: {}", actualDir);
-            differences.add(dir);
-        } else {
-            final AtomicInteger left = new AtomicInteger(0);
-
-            try (Stream<Path> stream = Files.list(dir)) {
-                stream.forEach(p -> {
-                    if (includeHidden || !PathUtilities.isHidden(p)) {
-                        left.incrementAndGet();
-                    }
-                });
-            }
+            removed.add(relativeDir);
 
-            final AtomicInteger right = new AtomicInteger(0);
+            return isHalted() ? FileVisitResult.TERMINATE : FileVisitResult.SKIP_SUBTREE;
+        }
 
-            try (Stream<Path> stream = Files.list(actualDir)) {
-                stream.forEach(p -> {
-                    if (includeHidden || !PathUtilities.isHidden(p)) {
-                        right.incrementAndGet();
-                    }
-                });
-            }
+        if (!Files.isDirectory(actualDir, LinkOption.NOFOLLOW_LINKS)) {
+            LOGGER.debug("Not a folder: {}", actualDir);
+            modified.add(relativeDir);
+
+            return isHalted() ? FileVisitResult.TERMINATE : FileVisitResult.SKIP_SUBTREE;
+        }
 
-            if (left.get() != right.get()) {
-                LOGGER.debug("Children count of {} and {} are not the same", actualDir, dir);
-                differences.add(dir);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(actualDir)) {
+            for (final Path p : stream) {
+                if ((includeHidden || !PathUtilities.isHidden(p)) && !Files.exists(dir.resolve(p.getFileName().toString()), LinkOption.NOFOLLOW_LINKS)) {
+                    LOGGER.debug("Path does not exist: {}", dir.resolve(p.getFileName().toString()));
+                    added.add(relativeDir.resolve(p.getFileName().toString()));
+                }
             }
         }
 
-        return differences.isEmpty() || !haltOnFirst ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+        return isHalted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * Sets the modification time trusted flag.
+     * @param modificationTimeTrusted true to consider the files having the same size and modification time identical without comparing their contents
+     */
+    public void setModificationTimeTrusted(final boolean modificationTimeTrusted) {
+        this.modificationTimeTrusted = modificationTimeTrusted;
     }
 
     /*
@@ -149,31 +268,41 @@ class FileTreeMatcher implements FileVisitor<Path> {
     public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
         Objects.requireNonNull(file);
         Objects.requireNonNull(attrs);
-        final Path relativeFile = p1.relativize(file.toAbsolutePath());
-        final Path actualFile = p2.resolve(relativeFile);
 
         if (PathUtilities.isHidden(file) && !includeHidden) {
             return FileVisitResult.CONTINUE;
         }
 
-        if (!Files.exists(actualFile)) { // NOSONAR API NIO
+        final Path relativeFile = p1.relativize(file.toAbsolutePath());
+        final Path actualFile = p2.resolve(relativeFile);
+        BasicFileAttributes actualAttrs;
+
+        try {
+            actualAttrs = Files.readAttributes(actualFile, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (@SuppressWarnings("unused") final NoSuchFileException e) {
+            actualAttrs = null;
+        }
+
+        if (actualAttrs == null) {
             LOGGER.debug("File does not exist: {}", actualFile);
-            differences.add(file);
-        } else if (Files.size(file) != Files.size(actualFile)) { // NOSONAR API NIO
-            LOGGER.debug("Sizes of files {} and {} are not the same", actualFile, file);
-            differences.add(file);
-        } else {
-            final String checksum = getChecksum(file);
-
-            if (!checksum.equals(getChecksum(actualFile))) {
-                LOGGER.debug("Checksums of files {} and {} are not the same", actualFile, file);
-                differences.add(file);
+            removed.add(relativeFile);
+        } else if (attrs.isSymbolicLink() || actualAttrs.isSymbolicLink()) {
+            if (!attrs.isSymbolicLink() || !actualAttrs.isSymbolicLink() || !Files.readSymbolicLink(file).equals(Files.readSymbolicLink(actualFile))) {
+                LOGGER.debug("Links {} and {} are not the same", actualFile, file);
+                modified.add(relativeFile);
             }
-
-            checksums.append(checksum);
+        } else if (attrs.isRegularFile() != actualAttrs.isRegularFile() || attrs.size() != actualAttrs.size()) {
+            LOGGER.debug("Types or sizes of files {} and {} are not the same", actualFile, file);
+            modified.add(relativeFile);
+        } else if (attrs.fileKey() != null && attrs.fileKey().equals(actualAttrs.fileKey())) {
+            LOGGER.trace("Files {} and {} are the same", actualFile, file);
+        } else if (modificationTimeTrusted && attrs.lastModifiedTime().equals(actualAttrs.lastModifiedTime())) {
+            LOGGER.trace("Files {} and {} have the same size and modification time", actualFile, file);
+        } else if (attrs.isRegularFile() && attrs.size() > 0) {
+            candidates.add(relativeFile);
         }
 
-        return differences.isEmpty() || !haltOnFirst ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+        return isHalted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
     }
 
     /*
@@ -184,20 +313,4 @@ class FileTreeMatcher implements FileVisitor<Path> {
     public FileVisitResult visitFileFailed(final Path file, final IOException exception) throws IOException {
         throw exception;
     }
-
-    /**
-     * Gets the checksum.
-     * @param file the file
-     * @return the checksum
-     * @throws IOException Signals that an I/O exception has occurred.
-     */
-    private static String getChecksum(final Path file) throws IOException {
-        if (Files.isDirectory(file)) { // NOSONAR API NIO
-            throw new IllegalArgumentException("Not a regular file: " + file.toAbsolutePath());
-        }
-
-        try (InputStream in = Files.newInputStream(file)) {
-            return DigestUtils.md5Hex(in);
-        }
-    }
 }
@@ -2,6 +2,10 @@ package org.infodavid.commons.io;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.List;
+
+import org.infodavid.commons.io.FilesRepositoryWatcher.EventEntry;
 
 /**
  * An asynchronous update interface for receiving notifications about FilesRepository information as the FilesRepository is constructed.
@@ -26,6 +30,23 @@ public interface FilesRepositoryObserver {
      */
     void fileModfied(Path path);
 
+    /**
+     * This method is called by the watcher with the events coalesced during its dispatch window, ordered by their last occurrence.<br>
+     * By default, the events are passed one by one to {@link #fileCreated(Path)}, {@link #fileDeleted(Path)} and {@link #fileModfied(Path)}.
+     * @param events the events
+     */
+    default void filesChanged(final List<EventEntry> events) {
+        for (final EventEntry event : events) {
+            if (StandardWatchEventKinds.ENTRY_CREATE.equals(event.getKind())) {
+                fileCreated(event.getPath());
+            } else if (StandardWatchEventKinds.ENTRY_DELETE.equals(event.getKind())) {
+                fileDeleted(event.getPath());
+            } else if (StandardWatchEventKinds.ENTRY_MODIFY.equals(event.getKind())) {
+                fileModfied(event.getPath());
+            }
+        }
+    }
+
     /**
      * This method is called when information about an FilesRepository which was previously requested using an asynchronous interface becomes available.
      * @param repositoryPath the repository path
@@ -1,39 +1,47 @@
 package org.infodavid.commons.io;
 
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.infodavid.commons.io.FilesRepositoryWatcher.EventEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.RemovalCause;
-import com.github.benmanes.caffeine.cache.RemovalListener;
-
 /**
- * The Class FilesRepositoryWatcher.
+ * The Class FilesRepositoryWatcher.<br>
+ * The watcher registers the directory, and all its subdirectories in recursive mode, with a {@link WatchService} of its file system.<br>
+ * A snapshot of the entries of each watched directory is kept so that, when the service reports an {@link StandardWatchEventKinds#OVERFLOW}, the affected directory is listed again and the differences are dispatched as events.<br>
+ * In recursive mode, the directories created under the watched directory are registered when their creation is notified and their entries are dispatched as created.<br>
+ * On Linux, each watched directory uses an inotify watch, the limit of the user is given by <code>fs.inotify.max_user_watches</code>.<br>
+ * On file systems not reporting the events, like the network ones, use {@link PollingFilesRepositoryWatcher}.<br>
+ * The events are coalesced by path during a window, see {@link #setWindow(long)}, and delivered to the observers as a single batch by a task scheduled on the executor, no thread is used by the observers between the batches.
  */
-public class FilesRepositoryWatcher implements Runnable, RemovalListener<Path, EventEntry> {
+public class FilesRepositoryWatcher implements Runnable {
 
     /**
      * The Class EventEntry.
@@ -83,112 +91,79 @@ public class FilesRepositoryWatcher implements Runnable, RemovalListener<Path, E
             return Objects.equals(path, other.path);
         }
 
-        /*
-         * (non-javadoc)
-         * @see java.lang.Object#hashCode()
+        /**
+         * Gets the kind.
+         * @return the kind, {@link StandardWatchEventKinds#ENTRY_MODIFY} or {@link StandardWatchEventKinds#ENTRY_DELETE}
          */
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + (kind == null ? 0 : kind.name().hashCode());
-            return prime * result + (path == null ? 0 : path.hashCode());
+        public Kind<?> getKind() {
+            return kind;
         }
-    }
-
-    /**
-     * The Class EventEntryProcessor.<br>
-     * The processor is used to process event in a different thread and keep event order by observer using an internal BlockingQueue.
-     */
-    private static class EventEntryProcessor implements Runnable {
-
-        /** The observer. */
-        private final FilesRepositoryObserver observer;
-
-        /** The queue. */
-        private final BlockingQueue<EventEntry> queue = new ArrayBlockingQueue<>(10);
-
-        /** The running. */
-        private final AtomicBoolean running = new AtomicBoolean(false);
 
         /**
-         * Instantiates a new event entry processor.
-         * @param observer the observer
+         * Gets the path.
+         * @return the absolute path
          */
-        public EventEntryProcessor(final FilesRepositoryObserver observer) {
-            this.observer = observer;
+        public Path getPath() {
+            return path;
         }
 
         /*
          * (non-javadoc)
-         * @see java.lang.Runnable#run()
+         * @see java.lang.Object#hashCode()
          */
         @Override
-        public void run() {
-            LOGGER.debug("Starting entry processor for observer: {}", observer);
-            running.set(true);
-            EventEntry entry;
-
-            try {
-                while (running.get()) {
-                    entry = queue.poll(1000, TimeUnit.MILLISECONDS);
-
-                    if (entry == null) {
-                        continue;
-                    }
-
-                    if (StandardWatchEventKinds.ENTRY_CREATE.equals(entry.kind)) {
-                        observer.fileCreated(entry.path);
-                    } else if (StandardWatchEventKinds.ENTRY_DELETE.equals(entry.kind)) {
-                        observer.fileDeleted(entry.path);
-                    } else if (StandardWatchEventKinds.ENTRY_MODIFY.equals(entry.kind)) {
-                        observer.fileModfied(entry.path);
-                    }
-                }
-            } catch (final InterruptedException e) { // NOSONAR Handled by utilities
-                LOGGER.debug("Thread interrupted", e);
-                Thread.currentThread().interrupt();
-            } finally {
-                LOGGER.debug("Entry processor stopped for observer: {}", observer);
-            }
-        }
-
-        /**
-         * Stop.
-         */
-        public void stop() {
-            running.set(false);
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + (kind == null ? 0 : kind.name().hashCode());
+            return prime * result + (path == null ? 0 : path.hashCode());
         }
     }
 
     /** The Constant LOGGER. Keep it public. */
     public static final Logger LOGGER = LoggerFactory.getLogger(FilesRepositoryWatcher.class);
 
-    /**
-     * The cache.<br>
-     * This cache is used to enqueue store events and avoid multiple dispatching when multiple similar events are detected.<br>
-     * When cache entry expires, it indicates that no similar event has been detected and it can be dispatched.<br>
-     * Order is normally kept by the expiration duration.
-     */
-    private final Cache<Path, EventEntry> cache;
+    /** The Constant DEFAULT_WINDOW, the default duration of the dispatch window in milliseconds. */
+    public static final long DEFAULT_WINDOW = 1000;
+
+    /** The dispatch scheduled flag, true from the first pending event to the end of the delivery of the batch. */
+    private boolean dispatchScheduled = false;
 
     /** The enabled. */
     private final AtomicBoolean enabled = new AtomicBoolean(true);
 
     /** The executor. */
-    private final ExecutorService executor;
+    private final ScheduledExecutorService executor;
 
     /** The observers. */
-    private final Map<FilesRepositoryObserver, EventEntryProcessor> observers = new ConcurrentHashMap<>();
+    private final Collection<FilesRepositoryObserver> observers = new CopyOnWriteArrayList<>();
 
     /** The path. */
     private final Path path;
 
+    /** The watched directories by key. */
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
     /** The paused. */
     private final AtomicBoolean paused = new AtomicBoolean(false);
 
-    /** The thread. */
-    private Thread thread = null;
+    /**
+     * The pending events by path.<br>
+     * A new event on a path replaces the pending one and moves it at the end so that the batch is ordered by the last occurrence of the events.
+     */
+    private final Map<Path, EventEntry> pending = new LinkedHashMap<>();
+
+    /** The recursive flag. */
+    private final boolean recursive;
+
+    /** The service, closed by {@link #stop()} to end the blocking wait of {@link #run()}, null if not running. */
+    private volatile WatchService service = null;
+
+    /** The snapshots of the entries of the watched directories, the last modification time by name or -1 for the directories. */
+    private final Map<Path, Map<Path, Long>> snapshots = new HashMap<>();
+
+    /** The duration of the dispatch window in milliseconds. */
+    private volatile long window = DEFAULT_WINDOW;
 
     /**
      * Instantiates a new watcher.
@@ -196,10 +171,19 @@ public class FilesRepositoryWatcher implements Runnable, RemovalListener<Path, E
      * @param executor the executor
      */
     public FilesRepositoryWatcher(final Path path, final ScheduledExecutorService executor) {
-        cache = Caffeine.newBuilder().expireAfterWrite(1, TimeUnit.SECONDS).removalListener(this).build();
+        this(path, executor, false);
+    }
+
+    /**
+     * Instantiates a new watcher.
+     * @param path      the path
+     * @param executor  the executor
+     * @param recursive true to watch the subdirectories
+     */
+    public FilesRepositoryWatcher(final Path path, final ScheduledExecutorService executor, final boolean recursive) {
+        this.recursive = recursive;
         this.executor = executor;
         this.path = path;
-        executor.scheduleAtFixedRate(cache::cleanUp, 500, 500, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -211,9 +195,7 @@ public class FilesRepositoryWatcher implements Runnable, RemovalListener<Path, E
             return;
         }
 
-        final EventEntryProcessor processor = new EventEntryProcessor(observer);
-        observers.put(observer, processor);
-        executor.submit(processor);
+        observers.add(observer);
     }
 
     /**
@@ -233,8 +215,7 @@ public class FilesRepositoryWatcher implements Runnable, RemovalListener<Path, E
             return;
         }
 
-        final EventEntryProcessor processor = observers.remove(observer);
-        processor.stop();
+        observers.remove(observer);
     }
 
     /**
@@ -242,88 +223,398 @@ public class FilesRepositoryWatcher implements Runnable, RemovalListener<Path, E
      */
     public void resume() {
         LOGGER.debug("Resuming file monitor for directory: {}", path);
-        cache.invalidateAll();
+        synchronized (pending) {
+            pending.clear();
+        }
+
         paused.set(false);
     }
 
+    /**
+     * Adds the event to the list if the watcher is not paused.
+     * @param events the events
+     * @param file   the file
+     * @param kind   the kind
+     */
+    void addEvent(final Collection<EventEntry> events, final Path file, final Kind<?> kind) {
+        if (paused.get()) {
+            LOGGER.debug("Monitor is on pause, event on file: {} will not be dispatched to observers.", file);
+
+            return;
+        }
+
+        final EventEntry entry = new EventEntry(file, kind);
+        LOGGER.debug("File {}, event: {}", entry.path, entry.kind);
+        events.add(entry);
+    }
+
+    /**
+     * Deliver the pending events to the observers as a single batch.<br>
+     * The next batch is scheduled at the end of the delivery so that the batches are delivered one after the other in the order of the events.
+     */
+    private void dispatch() {
+        final List<EventEntry> batch;
+
+        synchronized (pending) {
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+
+        if (enabled.get() && !batch.isEmpty()) {
+            LOGGER.debug("Dispatching {} events of directory: {}", String.valueOf(batch.size()), path);
+            final List<EventEntry> events = Collections.unmodifiableList(batch);
+
+            for (final FilesRepositoryObserver observer : observers) {
+                try {
+                    observer.filesChanged(events);
+                } catch (final RuntimeException e) {
+                    LOGGER.warn("Observer: " + observer + " failed to process the events of directory: " + path, e); // NOSONAR No format when using Throwable
+                }
+            }
+        }
+
+        synchronized (pending) {
+            dispatchScheduled = !pending.isEmpty() && schedule();
+        }
+    }
+
+    /**
+     * Adds the events to the pending ones and schedule their dispatch at the end of the window if not already scheduled.
+     * @param events the events
+     */
+    void enqueue(final Collection<EventEntry> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        synchronized (pending) {
+            for (final EventEntry entry : events) {
+                pending.remove(entry.path);
+                pending.put(entry.path, entry);
+            }
+
+            if (!dispatchScheduled) {
+                dispatchScheduled = schedule();
+            }
+        }
+    }
+
+    /**
+     * Gets the executor.
+     * @return the executor
+     */
+    ScheduledExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Gets the watched directory.
+     * @return the path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the duration of the dispatch window.
+     * @return the duration in milliseconds
+     */
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * Checks if the watcher is not stopped.
+     * @return true, if enabled
+     */
+    boolean isEnabled() {
+        return enabled.get();
+    }
+
+    /**
+     * Checks if the subdirectories are watched.
+     * @return true, if recursive
+     */
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Gets the state of the entry stored in the snapshots.
+     * @param file the file
+     * @return the last modification time or -1 for a directory, null if the entry does not exist
+     */
+    private static Long getState(final Path file) {
+        try {
+            final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+
+            return Long.valueOf(attrs.isDirectory() ? -1 : attrs.lastModifiedTime().toMillis());
+        } catch (@SuppressWarnings("unused") final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Process the event of the directory and update its snapshot.
+     * @param service the service
+     * @param dir     the directory
+     * @param event   the event
+     * @param events  the events to dispatch
+     */
+    private void process(final WatchService service, final Path dir, final WatchEvent<?> event, final Collection<EventEntry> events) {
+        if (StandardWatchEventKinds.OVERFLOW.equals(event.kind())) {
+            LOGGER.debug("Events lost on directory: {}, rescanning it", dir);
+            rescan(service, dir, events);
+
+            return;
+        }
+
+        final Path name = (Path) event.context();
+        final Path file = dir.resolve(name);
+        final Map<Path, Long> snapshot = snapshots.computeIfAbsent(dir, d -> new HashMap<>());
+
+        if (StandardWatchEventKinds.ENTRY_DELETE.equals(event.kind())) {
+            snapshot.remove(name);
+        } else {
+            final Long state = getState(file);
+
+            if (state == null) {
+                // already deleted, the deletion event follows
+                return;
+            }
+
+            final Long previous = snapshot.put(name, state);
+
+            if (recursive && previous == null && state.longValue() == -1) {
+                register(service, file, events);
+            }
+        }
+
+        addEvent(events, file, event.kind());
+    }
+
+    /**
+     * Register the directory and its subdirectories in recursive mode.
+     * @param service the service
+     * @param dir     the directory
+     * @param events  the events to dispatch for the entries found in the directories or null on initialization
+     */
+    private void register(final WatchService service, final Path dir, final Collection<EventEntry> events) {
+        if (!recursive) {
+            registerDirectory(service, dir, events);
+
+            return;
+        }
+
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path d, final BasicFileAttributes attrs) {
+                    registerDirectory(service, d, events);
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                    LOGGER.debug("Cannot visit: {}", file, e);
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            LOGGER.warn("Cannot register directory: " + dir, e); // NOSONAR No format when using Throwable
+        }
+    }
+
+    /**
+     * Register the directory and store the snapshot of its entries.
+     * @param service the service
+     * @param dir     the directory
+     * @param events  the events to dispatch for the entries found in the directory or null on initialization
+     */
+    private void registerDirectory(final WatchService service, final Path dir, final Collection<EventEntry> events) {
+        try {
+            keys.put(dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+        } catch (final IOException e) {
+            LOGGER.warn("Cannot watch directory: {}, on Linux the number of watches is limited by fs.inotify.max_user_watches", dir, e);
+
+            return;
+        }
+
+        final Map<Path, Long> snapshot = snapshot(dir);
+        snapshots.put(dir, snapshot);
+
+        if (events != null) {
+            // the entries may have been created before the registration
+            snapshot.keySet().forEach(n -> addEvent(events, dir.resolve(n), StandardWatchEventKinds.ENTRY_CREATE));
+        }
+    }
+
+    /**
+     * List the directory again and dispatch the differences with its snapshot.
+     * @param service the service
+     * @param dir     the directory
+     * @param events  the events to dispatch
+     */
+    private void rescan(final WatchService service, final Path dir, final Collection<EventEntry> events) {
+        final Map<Path, Long> previous = snapshots.getOrDefault(dir, Collections.emptyMap());
+        final Map<Path, Long> current = snapshot(dir);
+        snapshots.put(dir, current);
+
+        for (final Entry<Path, Long> entry : current.entrySet()) {
+            final Long state = previous.get(entry.getKey());
+            final Path file = dir.resolve(entry.getKey());
+
+            if (state == null) {
+                addEvent(events, file, StandardWatchEventKinds.ENTRY_CREATE);
+
+                if (recursive && entry.getValue().longValue() == -1) {
+                    register(service, file, events);
+                }
+            } else if (!state.equals(entry.getValue())) {
+                addEvent(events, file, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+
+        for (final Path name : previous.keySet()) {
+            if (!current.containsKey(name)) {
+                addEvent(events, dir.resolve(name), StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
     /*
      * (non-javadoc)
      * @see java.lang.Runnable#run()
      */
     @Override
     public void run() {
-        thread = Thread.currentThread();
         LOGGER.debug("Initializing monitoring of directory: {}", path);
 
-        try (FileSystem fs = FileSystems.getDefault(); final WatchService service = fs.newWatchService()) {
-            path.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
-            final Collection<EventEntry> events = new LinkedList<>();
+        // the file system of the path is not closed, it may be the default one
+        try (WatchService watchService = path.getFileSystem().newWatchService()) {
+            // set before checking the enabled flag so that a concurrent stop closes it or is seen by the loop
+            service = watchService;
+            register(watchService, path, null);
+            final Collection<EventEntry> events = new ArrayList<>();
             WatchKey key;
-            LOGGER.debug("Monitoring directory: {}", path);
+            LOGGER.debug("Monitoring directory: {}, watched directories: {}", path, String.valueOf(keys.size()));
 
             while (enabled.get()) {
-                key = service.poll(1000, TimeUnit.MILLISECONDS);
-
-                if (key == null) {
-                    continue;
-                }
+                key = watchService.take();
+                final Path dir = keys.get(key);
 
-                for (final WatchEvent<?> event : key.pollEvents()) { // NOSONAR Number of continue
-                    if (StandardWatchEventKinds.OVERFLOW.equals(event.kind())) {
-                        continue;
-                    }
-
-                    if (paused.get()) {
-                        LOGGER.debug("Monitor is on pause, event on file: {} will not be dispatched to observers.", event.context());
-
-                        continue;
+                if (dir != null) {
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        process(watchService, dir, event, events);
                     }
+                }
 
-                    if (enabled.get() && key.reset()) {
-                        final EventEntry entry = new EventEntry(path.resolve((Path) event.context()), event.kind());
-                        LOGGER.debug("File {}, event: {}", entry.path, entry.kind);
-                        events.add(entry);
+                if (!key.reset()) {
+                    // the directory is no more accessible
+                    keys.remove(key);
 
+                    if (dir != null) {
+                        snapshots.remove(dir);
                     }
                 }
 
-                if (enabled.get() && key.reset()) {
-                    events.forEach(e -> cache.put(e.path, e));
+                if (enabled.get()) {
+                    enqueue(events);
                 }
 
                 events.clear();
             }
+        } catch (@SuppressWarnings("unused") final ClosedWatchServiceException e) {
+            if (enabled.get()) {
+                LOGGER.warn("Monitor of directory: {} closed.", path);
+            }
         } catch (@SuppressWarnings("unused") final InterruptedException e) {
-            LOGGER.warn("Monitor of directory: {} interrupted.", path);
+            if (enabled.get()) {
+                LOGGER.warn("Monitor of directory: {} interrupted.", path);
+            }
+
             Thread.currentThread().interrupt();
         } catch (final IOException e) {
             LOGGER.error("Cannot monitor modifications on directory: " + path, e); // NOSONAR No format when using Throwable
+        } finally {
+            service = null;
+            keys.clear();
+            snapshots.clear();
         }
 
         LOGGER.debug("End of monitoring of directory: {}", path);
     }
 
     /**
-     * Stop.
+     * Schedule the dispatch of the pending events at the end of the window.
+     * @return true, if scheduled
+     */
+    private boolean schedule() {
+        try {
+            executor.schedule(this::dispatch, window, TimeUnit.MILLISECONDS);
+
+            return true;
+        } catch (final RejectedExecutionException e) {
+            LOGGER.debug("Events of directory: {} cannot be dispatched", path, e);
+            pending.clear();
+
+            return false;
+        }
+    }
+
+    /**
+     * Sets the duration of the dispatch window.<br>
+     * The events detected during the window are coalesced by path and delivered as a single batch at its end, 0 delivers the events as soon as possible.
+     * @param window the duration in milliseconds
+     */
+    public void setWindow(final long window) {
+        this.window = Math.max(0, window);
+    }
+
+    /**
+     * Read the entries of the directory.
+     * @param dir the directory
+     * @return the last modification time by name or -1 for the directories
+     */
+    private static Map<Path, Long> snapshot(final Path dir) {
+        final Map<Path, Long> result = new HashMap<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (final Path file : stream) {
+                final Long state = getState(file);
+
+                if (state != null) {
+                    result.put(file.getFileName(), state);
+                }
+            }
+        } catch (final IOException e) {
+            LOGGER.debug("Cannot list directory: {}", dir, e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Stop.<br>
+     * The watch service is closed so that the thread waiting for the events ends without being interrupted.
      * @throws InterruptedException the interrupted exception
      */
     public void stop() throws InterruptedException {
         enabled.set(false);
-        thread.interrupt();
-        observers.values().forEach(EventEntryProcessor::stop); // NOSONAR Lambda
-    }
+        final WatchService current = service;
 
-    /*
-     * (non-javadoc)
-     * @see com.github.benmanes.caffeine.cache.RemovalListener#onRemoval(java.lang.Object, java.lang.Object, com.github.benmanes.caffeine.cache.RemovalCause)
-     */
-    @Override
-    public void onRemoval(final Path key, final EventEntry value, final RemovalCause cause) {
-        if (key == null || value == null) {
-            return;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (final IOException e) {
+                LOGGER.debug("Cannot close the watch service of directory: {}", path, e);
+            }
         }
 
-        LOGGER.debug("Dispatching file {}, event: {}", key, value.kind);
-        observers.values().forEach(p -> p.queue.offer(value));
+        synchronized (pending) {
+            pending.clear();
+        }
     }
 }
@@ -2,28 +2,55 @@ package org.infodavid.commons.io;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.function.Predicate;
-import java.util.regex.Pattern;
-
-import com.yevdo.jwildcard.JWildcard;
 
 /**
- * The Class FilterPredicate.
+ * The Class FilterPredicate.<br>
+ * The include and exclude wildcard patterns are matched against the absolute path using compiled {@link GlobSet}, the state reached for the parent directory of the last tested path is kept so that the entries of a directory only feed their own name.
  */
 class FilterPredicate implements Predicate<Path> {
 
-    /** The exclude patterns. */
-    private Collection<Pattern> excludePatterns;
+    /**
+     * The Class ParentState.<br>
+     * The immutable states reached after feeding a directory and the separator.
+     */
+    private static final class ParentState {
+
+        /** The directory. */
+        private final Path dir;
+
+        /** The exclude state. */
+        private final GlobSet.State exclude;
+
+        /** The include state. */
+        private final GlobSet.State include;
+
+        /**
+         * Instantiates a new parent state.
+         * @param dir     the directory
+         * @param include the include state
+         * @param exclude the exclude state
+         */
+        private ParentState(final Path dir, final GlobSet.State include, final GlobSet.State exclude) {
+            this.dir = dir;
+            this.include = include;
+            this.exclude = exclude;
+        }
+    }
 
-    /** The include patterns. */
-    private Collection<Pattern> includePatterns;
+    /** The exclude patterns. */
+    private final GlobSet excludePatterns;
 
     /** The include hidden. */
     private final boolean includeHidden;
 
+    /** The include patterns. */
+    private final GlobSet includePatterns;
+
+    /** The state of the last parent directory. */
+    private volatile ParentState parentState = null;
+
     /**
      * Instantiates a new filter predicate.
      * @param includes      the includes
@@ -32,26 +59,52 @@ class FilterPredicate implements Predicate<Path> {
      */
     public FilterPredicate(final Collection<String> includes, final Collection<String> excludes, final boolean includeHidden) {
         this.includeHidden = includeHidden;
+        includePatterns = new GlobSet(includes);
+        excludePatterns = new GlobSet(excludes);
+    }
 
-        if (includes == null || includes.isEmpty()) {
-            includePatterns = Collections.emptyList();
-        } else {
-            includePatterns = new ArrayList<>();
+    /**
+     * Gets the states reached after feeding the directory and the separator.
+     * @param dir the absolute directory
+     * @return the states
+     */
+    private ParentState getParentState(final Path dir) {
+        ParentState result = parentState;
 
-            for (final String item : includes) {
-                includePatterns.add(Pattern.compile(JWildcard.wildcardToRegex(item)));
-            }
+        if (result != null && result.dir.equals(dir)) {
+            return result;
         }
 
-        if (excludes == null || excludes.isEmpty()) {
-            excludePatterns = Collections.emptyList();
-        } else {
-            excludePatterns = new ArrayList<>();
+        GlobSet.State include = includePatterns.advance(dir);
+        GlobSet.State exclude = excludePatterns.advance(dir);
 
-            for (final String item : excludes) {
-                excludePatterns.add(Pattern.compile(JWildcard.wildcardToRegex(item)));
-            }
+        // the string of a root already ends with the separator
+        if (dir.getNameCount() > 0) {
+            final String separator = dir.getFileSystem().getSeparator();
+            include = includePatterns.advance(include, separator);
+            exclude = excludePatterns.advance(exclude, separator);
         }
+
+        result = new ParentState(dir, include, exclude);
+        parentState = result;
+
+        return result;
+    }
+
+    /**
+     * Checks if all the descendants of the directory are excluded whatever their names.<br>
+     * A pattern ending with <code>*</code> may match all the descendants, the directory can then be skipped when no include pattern can match one of them.
+     * @param dir the directory
+     * @return true, if all the descendants are excluded
+     */
+    boolean isSubtreeExcluded(final Path dir) {
+        if (dir == null || excludePatterns.isEmpty()) {
+            return false;
+        }
+
+        final ParentState state = getParentState(dir.toAbsolutePath());
+
+        return excludePatterns.isUniversal(state.exclude) && includePatterns.isDead(state.include);
     }
 
     /*
@@ -74,24 +127,30 @@ class FilterPredicate implements Predicate<Path> {
             }
         }
 
-        final String value = path.toAbsolutePath().toAbsolutePath().toString();
+        if (includePatterns.isEmpty() && excludePatterns.isEmpty()) {
+            return true;
+        }
 
-        if (!includePatterns.isEmpty()) {
-            for (final Pattern pattern : includePatterns) {
-                if (pattern.matcher(value).matches()) {
-                    return true;
-                }
-            }
+        final Path absolute = path.toAbsolutePath();
+        final Path parent = absolute.getParent();
+        final Path name = absolute.getFileName();
+        GlobSet.State include;
+        GlobSet.State exclude;
+
+        if (parent == null || name == null) {
+            include = includePatterns.advance(absolute);
+            exclude = excludePatterns.advance(absolute);
+        } else {
+            final ParentState state = getParentState(parent);
+            final String value = name.toString();
+            include = includePatterns.advance(state.include, value);
+            exclude = excludePatterns.advance(state.exclude, value);
         }
 
-        if (!excludePatterns.isEmpty()) {
-            for (final Pattern pattern : excludePatterns) {
-                if (pattern.matcher(value).matches()) {
-                    return false;
-                }
-            }
+        if (includePatterns.isAccepted(include)) {
+            return true;
         }
 
-        return true;
+        return !excludePatterns.isAccepted(exclude);
     }
 }
@@ -0,0 +1,332 @@
+package org.infodavid.commons.io;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The Class GlobSet.<br>
+ * The set compiles wildcard patterns, using the syntax of {@link com.yevdo.jwildcard.JWildcard} where <code>*</code> matches any sequence of characters including the separators and <code>?</code> any character, into a single nondeterministic automaton simulated using bit sets.<br>
+ * The automaton is fed with the names of a path one by one so that the state of a directory can be reused for its entries and that a directory can be identified as matching all its descendants.
+ */
+final class GlobSet {
+
+    /**
+     * The Class State.<br>
+     * The immutable set of the active states of the automaton.
+     */
+    static final class State {
+
+        /** The bits. */
+        private final long[] bits;
+
+        /**
+         * Instantiates a new state.
+         * @param bits the bits
+         */
+        private State(final long[] bits) {
+            this.bits = bits;
+        }
+    }
+
+    /** The Constant ACCEPT. */
+    private static final byte ACCEPT = 3;
+
+    /** The Constant ANY. */
+    private static final byte ANY = 1;
+
+    /** The Constant LITERAL. */
+    private static final byte LITERAL = 0;
+
+    /** The Constant STAR. */
+    private static final byte STAR = 2;
+
+    /**
+     * Checks if the bit is set.
+     * @param bits  the bits
+     * @param index the index
+     * @return true, if set
+     */
+    private static boolean get(final long[] bits, final int index) {
+        return (bits[index >> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Sets the bit.
+     * @param bits  the bits
+     * @param index the index
+     */
+    private static void set(final long[] bits, final int index) {
+        bits[index >> 6] |= 1L << index;
+    }
+
+    /** The accepting states. */
+    private final long[] accepting;
+
+    /** The kinds of the states. */
+    private final byte[] kinds;
+
+    /** The characters of the literal states. */
+    private final char[] literals;
+
+    /** The start state. */
+    private final State start;
+
+    /** The states matching any sequence of characters, a star followed by the accepting state. */
+    private final long[] universal;
+
+    /** The number of words of the bit sets. */
+    private final int words;
+
+    /**
+     * Instantiates a new set.
+     * @param patterns the wildcard patterns
+     */
+    GlobSet(final Collection<String> patterns) {
+        final StringBuilder kindsBuffer = new StringBuilder();
+        final StringBuilder literalsBuffer = new StringBuilder();
+        final List<Integer> starts = new ArrayList<>();
+
+        if (patterns != null) {
+            for (final String pattern : patterns) {
+                final int begin = kindsBuffer.length();
+                starts.add(Integer.valueOf(begin));
+
+                for (int i = 0; i < pattern.length(); i++) {
+                    final char c = pattern.charAt(i);
+
+                    if (c == '*') {
+                        // consecutive stars are equivalent to a single one
+                        if (kindsBuffer.length() == begin || kindsBuffer.charAt(kindsBuffer.length() - 1) != STAR) {
+                            kindsBuffer.append((char) STAR);
+                            literalsBuffer.append(c);
+                        }
+                    } else {
+                        kindsBuffer.append((char) (c == '?' ? ANY : LITERAL));
+                        literalsBuffer.append(c);
+                    }
+                }
+
+                kindsBuffer.append((char) ACCEPT);
+                literalsBuffer.append('\0');
+            }
+        }
+
+        final int count = kindsBuffer.length();
+        words = Math.max(1, (count + 63) >> 6);
+        kinds = new byte[count];
+        literals = literalsBuffer.toString().toCharArray();
+        accepting = new long[words];
+        universal = new long[words];
+
+        for (int i = 0; i < count; i++) {
+            kinds[i] = (byte) kindsBuffer.charAt(i);
+
+            if (kinds[i] == ACCEPT) {
+                set(accepting, i);
+            } else if (kinds[i] == STAR && kindsBuffer.charAt(i + 1) == ACCEPT) {
+                set(universal, i);
+            }
+        }
+
+        final long[] bits = new long[words];
+
+        for (final Integer i : starts) {
+            add(bits, i.intValue());
+        }
+
+        start = new State(bits);
+    }
+
+    /**
+     * Adds the state and the states reachable without consuming a character.
+     * @param bits  the bits
+     * @param index the index of the state
+     */
+    private void add(final long[] bits, final int index) {
+        int i = index;
+
+        while (!get(bits, i)) {
+            set(bits, i);
+
+            if (kinds[i] != STAR) {
+                break;
+            }
+
+            i++;
+        }
+    }
+
+    /**
+     * Feed the characters.
+     * @param state the state
+     * @param chars the characters
+     * @return the new state
+     */
+    State advance(final State state, final CharSequence chars) {
+        if (isDead(state) || chars.length() == 0) {
+            return state;
+        }
+
+        long[] current = state.bits;
+        long[] next = new long[words];
+
+        for (int i = 0; i < chars.length(); i++) {
+            Arrays.fill(next, 0);
+            step(current, chars.charAt(i), next);
+
+            if (isEmpty(next)) {
+                return new State(next);
+            }
+
+            final long[] tmp = current == state.bits ? new long[words] : current;
+            current = next;
+            next = tmp;
+        }
+
+        return new State(current);
+    }
+
+    /**
+     * Feed the absolute form of the path, the root and the names separated by the separator of its file system.
+     * @param path the path
+     * @return the state
+     */
+    State advance(final Path path) {
+        final Path absolute = path.toAbsolutePath();
+        State result = start;
+
+        if (absolute.getRoot() != null) {
+            result = advance(result, absolute.getRoot().toString());
+        }
+
+        for (int i = 0; i < absolute.getNameCount(); i++) {
+            if (i > 0) {
+                result = advance(result, absolute.getFileSystem().getSeparator());
+            }
+
+            result = advance(result, absolute.getName(i).toString());
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the start state.
+     * @return the start state
+     */
+    State getStart() {
+        return start;
+    }
+
+    /**
+     * Checks if the state is accepted, the characters fed matching one of the patterns.
+     * @param state the state
+     * @return true, if accepted
+     */
+    boolean isAccepted(final State state) {
+        return intersects(state.bits, accepting);
+    }
+
+    /**
+     * Checks if the state is dead, the characters fed and any continuation never matching one of the patterns.
+     * @param state the state
+     * @return true, if dead
+     */
+    boolean isDead(final State state) {
+        return isEmpty(state.bits);
+    }
+
+    /**
+     * Checks if the set has no pattern.
+     * @return true, if empty
+     */
+    boolean isEmpty() {
+        return kinds.length == 0;
+    }
+
+    /**
+     * Checks if the bits are all cleared.
+     * @param bits the bits
+     * @return true, if empty
+     */
+    private static boolean isEmpty(final long[] bits) {
+        for (final long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if the bit sets intersect.
+     * @param bits  the bits
+     * @param other the other bits
+     * @return true, if at least one bit is set in both
+     */
+    private static boolean intersects(final long[] bits, final long[] other) {
+        for (int i = 0; i < bits.length; i++) {
+            if ((bits[i] & other[i]) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the state is universal, the characters fed followed by any continuation matching one of the patterns.
+     * @param state the state
+     * @return true, if universal
+     */
+    boolean isUniversal(final State state) {
+        return intersects(state.bits, universal);
+    }
+
+    /**
+     * Compute the states reached by consuming the character.
+     * @param bits   the current states
+     * @param c      the character
+     * @param result the resulting states
+     */
+    private void step(final long[] bits, final char c, final long[] result) {
+        // like the dot of the regular expressions, the wildcards do not match the line terminators
+        final boolean terminator = c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+
+            while (word != 0) {
+                final int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+
+                switch (kinds[i]) {
+                    case LITERAL:
+                        if (literals[i] == c) {
+                            add(result, i + 1);
+                        }
+
+                        break;
+                    case ANY:
+                        if (!terminator) {
+                            add(result, i + 1);
+                        }
+
+                        break;
+                    case STAR:
+                        if (!terminator) {
+                            add(result, i);
+                        }
+
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+}
@@ -1,46 +1,104 @@
 package org.infodavid.commons.io;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
-import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 
 /**
- * The Class LoggerOutputStream.
+ * The Class LoggerOutputStream.<br>
+ * The stream scans the written bytes for the line feeds and copies each complete line, without its line separator, into a bounded ring buffer of slots reused from line to line. The lines are decoded using UTF-8 and logged by a background daemon thread, started on the first line and ended after one minute without lines or when the stream is closed.<br>
+ * The write path does not allocate once the slots are used and only locks the ring buffer once per line, a writer waits when the ring buffer is full so that no line is lost. If the ring buffer stays full during one second, the writer logs the queued lines and then its line itself so that a logger blocked by a lock of the writer cannot dead lock the stream, the order of the lines is kept except for the line already taken by the blocked logging thread.<br>
+ * The blank lines are ignored, the lines longer than {@link #MAX_LINE_LENGTH} bytes are logged in several messages and the bytes written by the logging thread itself, when the logger writes to a redirected standard stream, are ignored.<br>
+ * A flush logs the pending partial line without waiting for the logging thread, a close waits until all the lines are logged. The lines written after the close are logged by the writer itself.
  */
-public class LoggerOutputStream extends java.io.ByteArrayOutputStream {
+public class LoggerOutputStream extends OutputStream {
 
-    /** The error. */
-    private Throwable error = null;
+    /** The Constant CAPACITY, the number of lines held by the ring buffer. */
+    public static final int CAPACITY = 64;
 
-    /** The last logged line. */
-    private String lastLoggedLine = null;
+    /** The Constant FULL_TIMEOUT, the delay in milliseconds after which a line is logged by the writer if the ring buffer stays full. */
+    private static final long FULL_TIMEOUT = 1000;
 
-    /** The last logging thread. */
-    private long lastLoggingThread = 0;
+    /** The Constant IDLE_TIMEOUT, the delay in milliseconds after which the idle logging thread ends. */
+    private static final long IDLE_TIMEOUT = 60000;
+
+    /** The Constant MAX_LINE_LENGTH, the maximum number of bytes of a logged message. */
+    public static final int MAX_LINE_LENGTH = 4096;
+
+    /**
+     * Checks if the bytes are only white spaces or control characters.
+     * @param bytes  the bytes
+     * @param length the length
+     * @return true, if blank
+     */
+    private static boolean isBlank(final byte[] bytes, final int length) {
+        for (int i = 0; i < length; i++) {
+            // the bytes of the multibyte characters are negative
+            if (bytes[i] < 0 || bytes[i] > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /** The closed flag, guarded by the lock. */
+    private boolean closed = false;
+
+    /** The logging thread or null if not running. */
+    private volatile Thread consumer = null;
+
+    /** The number of lines in the ring buffer, guarded by the lock. */
+    private int count = 0;
+
+    /** The thread logging a line directly because the ring buffer stays full or null. */
+    private volatile Thread direct = null;
+
+    /** The index of the next line to log, guarded by the lock. */
+    private int head = 0;
+
+    /** The lengths of the lines of the ring buffer. */
+    private final int[] lengths = new int[CAPACITY];
 
     /** The level. */
     private final Level level;
 
-    /** The line separator. */
-    private final String lineSeparator;
+    /** The pending line, guarded by the monitor of the stream. */
+    private final byte[] line = new byte[MAX_LINE_LENGTH];
+
+    /** The length of the pending line, guarded by the monitor of the stream. */
+    private int lineLength = 0;
+
+    /** The slots of the ring buffer, allocated on their first use. */
+    private final byte[][] lines = new byte[CAPACITY][];
 
-    /** The lock. */
+    /** The lock of the ring buffer. */
     private final Lock lock = new ReentrantLock();
 
     /** The logger. */
     private final Logger logger;
 
-    /** The logging. */
-    private boolean logging = false;
+    /** The condition signaled when a line is added to the ring buffer or when the stream is closed. */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** The condition signaled when a line is removed from the ring buffer. */
+    private final Condition notFull = lock.newCondition();
 
     /** The source. */
     private final String source;
 
+    /** The index of the next free slot, guarded by the lock. */
+    private int tail = 0;
+
     /**
      * Instantiates a new logger output stream.
      * @param logger the logger
@@ -60,136 +118,120 @@ public class LoggerOutputStream extends java.io.ByteArrayOutputStream {
         this.logger = logger;
         this.level = level;
         this.source = source;
-        lineSeparator = System.getProperty("line.separator");
     }
 
     /*
      * (non-Javadoc)
-     * @see java.io.ByteArrayOutputStream#close()
+     * @see java.io.OutputStream#close()
      */
     @Override
-    public void close() throws java.io.IOException {
+    public void close() throws IOException {
+        flush();
+        final Thread thread;
+        lock.lock();
+
         try {
-            log(true);
-            super.close();
-        } catch (final java.io.IOException e) {
-            error = e;
+            closed = true;
+            thread = consumer;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
 
-            throw e;
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            } catch (@SuppressWarnings("unused") final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
-    /*
-     * (non-Javadoc)
-     * @see java.io.OutputStream#flush()
+    /**
+     * Log the lines of the ring buffer until the stream is closed or no line is written during {@link #IDLE_TIMEOUT}.
      */
-    @Override
-    public void flush() throws java.io.IOException {
-        try {
-            log(true);
-            super.flush();
-        } catch (final java.io.IOException e) {
-            error = e;
+    private void consume() {
+        final byte[] buffer = new byte[MAX_LINE_LENGTH];
+
+        while (true) {
+            final int length;
+            lock.lock();
 
-            throw e;
+            try {
+                while (count == 0) {
+                    if (closed || !notEmpty.await(IDLE_TIMEOUT, TimeUnit.MILLISECONDS) && count == 0) {
+                        consumer = null;
+
+                        return;
+                    }
+                }
+
+                length = lengths[head];
+                System.arraycopy(lines[head], 0, buffer, 0, length);
+                head = (head + 1) % CAPACITY;
+                count--;
+                notFull.signal();
+            } catch (@SuppressWarnings("unused") final InterruptedException e) {
+                consumer = null;
+                Thread.currentThread().interrupt();
+
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            final String data = new String(buffer, 0, length, StandardCharsets.UTF_8);
+
+            try {
+                log(level, source == null ? data : source + data);
+            } catch (@SuppressWarnings("unused") final RuntimeException e) {
+                // the logger failed, the next lines are still logged
+            }
         }
     }
 
-    /*
-     * (non-Javadoc)
-     * @see java.io.ByteArrayOutputStream#write(byte[], int, int)
+    /**
+     * Log the lines of the ring buffer from the current thread, in order, the lock is held on entry and on exit.
      */
-    @Override
-    public synchronized void write(final byte[] b, final int off, final int len) {
-        try {
-            super.write(b, off, len);
-            log(false);
-        } catch (final java.io.IOException e) {
-            error = e;
-
-            throw new RuntimeException(ExceptionUtils.getRootCause(e)); // NOSONAR
+    private void drain() {
+        final byte[] buffer = new byte[MAX_LINE_LENGTH];
+
+        while (count > 0) {
+            final int length = lengths[head];
+            System.arraycopy(lines[head], 0, buffer, 0, length);
+            head = (head + 1) % CAPACITY;
+            count--;
+            notFull.signalAll();
+            logUnlocked(buffer, length);
         }
     }
 
     /*
      * (non-Javadoc)
-     * @see java.io.ByteArrayOutputStream#write(int)
+     * @see java.io.OutputStream#flush()
      */
     @Override
-    public synchronized void write(final int b) {
-        try {
-            super.write(b);
-            log(false);
-        } catch (final java.io.IOException e) {
-            error = e;
-
-            throw new RuntimeException(ExceptionUtils.getRootCause(e)); // NOSONAR
+    public void flush() throws IOException {
+        if (isLoggingThread()) {
+            return;
         }
-    }
-
-    /**
-     * Already logged.
-     * @param data the data
-     * @return true, if successful
-     */
-    private boolean alreadyLogged(final String data) {
-        boolean result = false;
-
-        if (lastLoggedLine != null) {
-            final long currentThreadId = Thread.currentThread().getId();
 
-            if (lastLoggedLine.equals(data) && currentThreadId == lastLoggingThread) {
-                result = true;
-            } else {
-                lastLoggedLine = data;
-                lastLoggingThread = currentThreadId;
+        synchronized (this) {
+            if (lineLength > 0) {
+                publishLine();
             }
         }
-
-        return result;
     }
 
     /**
-     * Log.
-     * @param force the force
-     * @throws IOException Signals that an I/O exception has occurred.
+     * Checks if the current thread is logging the lines, its writes are the output of the logger and are ignored.
+     * @return true, if logging
      */
-    private void log(final boolean force) throws java.io.IOException { // NOSONAR
-        lock.lock();
+    private boolean isLoggingThread() {
+        final Thread current = Thread.currentThread();
 
-        try {
-            if (!logging) {
-                logging = true;
-                final String data = toString(StandardCharsets.UTF_8.name());
-
-                if (data != null && data.trim().length() != 0 && !alreadyLogged(data) && error == null) {
-                    final boolean hasLineSeparator = data.endsWith(lineSeparator);
-
-                    if (force || hasLineSeparator) {
-                        reset();
-
-                        if (hasLineSeparator) {
-                            if (source == null) {
-                                for (final String line : data.split(lineSeparator)) {
-                                    log(level, line);
-                                }
-                            } else {
-                                for (final String line : data.split(lineSeparator)) {
-                                    log(level, source + line);
-                                }
-                            }
-                        } else if (source == null) {
-                            log(level, data);
-                        } else {
-                            log(level, "Std: " + data);
-                        }
-                    }
-                }
-                logging = false;
-            }
-        } finally {
-            lock.unlock();
-        }
+        return current == consumer || current == direct;
     }
 
     /**
@@ -212,4 +254,203 @@ public class LoggerOutputStream extends java.io.ByteArrayOutputStream {
             logger.info(msg);
         }
     }
+
+    /**
+     * Log the line from the current thread, ignoring the bytes written by the logger.
+     * @param bytes  the bytes
+     * @param length the length
+     */
+    private void logDirectly(final byte[] bytes, final int length) {
+        final String data = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        direct = Thread.currentThread();
+
+        try {
+            log(level, source == null ? data : source + data);
+        } finally {
+            direct = null;
+        }
+    }
+
+    /**
+     * Log the line from the current thread after releasing the lock, the lock is held on entry and on exit.
+     * @param bytes  the bytes
+     * @param length the length
+     */
+    private void logUnlocked(final byte[] bytes, final int length) {
+        lock.unlock();
+
+        try {
+            logDirectly(bytes, length);
+        } finally {
+            lock.lock();
+        }
+    }
+
+    /**
+     * Copy the bytes into a slot of the ring buffer, waiting for a free slot if full.<br>
+     * If the ring buffer stays full, its lines are logged by the writer before the bytes so that the order is kept. The bytes written after the close are logged directly.
+     * @param bytes  the bytes
+     * @param length the length
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void publish(final byte[] bytes, final int length) throws IOException {
+        lock.lock();
+
+        try {
+            while (count == CAPACITY && !closed) {
+                if (!notFull.await(FULL_TIMEOUT, TimeUnit.MILLISECONDS) && count == CAPACITY) {
+                    // the logging thread may be blocked by a lock held by the writer, like the one of a redirected standard stream
+                    drain();
+                    logUnlocked(bytes, length);
+
+                    return;
+                }
+            }
+
+            if (closed) {
+                // the logging thread is ending or ended
+                logUnlocked(bytes, length);
+
+                return;
+            }
+
+            if (lines[tail] == null) {
+                lines[tail] = new byte[MAX_LINE_LENGTH];
+            }
+
+            System.arraycopy(bytes, 0, lines[tail], 0, length);
+            lengths[tail] = length;
+            tail = (tail + 1) % CAPACITY;
+            count++;
+
+            if (consumer == null) {
+                final Thread thread = new Thread(this::consume, source == null ? "LoggerOutputStream" : "LoggerOutputStream-" + source.trim());
+                thread.setDaemon(true);
+                consumer = thread;
+                thread.start();
+            } else {
+                notEmpty.signal();
+            }
+        } catch (@SuppressWarnings("unused") final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while waiting for the logging of the lines");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Publish the pending line without its carriage return, if not blank, and reset it.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void publishLine() throws IOException {
+        int length = lineLength;
+        lineLength = 0;
+
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+
+        if (!isBlank(line, length)) {
+            publish(line, length);
+        }
+    }
+
+    /**
+     * Publish the beginning of the pending line when it is full, the line is cut before the character containing the next byte.
+     * @param next the next byte
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void publishPart(final byte next) throws IOException {
+        int cut = MAX_LINE_LENGTH;
+
+        // do not split a multibyte character, its continuation bytes start with the bits 10
+        if ((next & 0xC0) == 0x80) {
+            while (cut > MAX_LINE_LENGTH - 3 && (line[cut - 1] & 0xC0) == 0x80) {
+                cut--;
+            }
+
+            if ((line[cut - 1] & 0xC0) == 0xC0) {
+                cut--;
+            }
+        }
+
+        if (!isBlank(line, cut)) {
+            publish(line, cut);
+        }
+
+        lineLength = MAX_LINE_LENGTH - cut;
+        System.arraycopy(line, cut, line, 0, lineLength);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+
+        if (isLoggingThread()) {
+            return;
+        }
+
+        synchronized (this) {
+            final int end = off + len;
+            int i = off;
+
+            while (i < end) {
+                final byte c = b[i];
+
+                if (c == '\n') {
+                    publishLine();
+                    i++;
+
+                    continue;
+                }
+
+                if (lineLength == MAX_LINE_LENGTH) {
+                    publishPart(c);
+                }
+
+                // copy the bytes up to the next line feed or the end of the pending line at once
+                int j = i + 1;
+                final int limit = Math.min(end, i + MAX_LINE_LENGTH - lineLength);
+
+                while (j < limit && b[j] != '\n') {
+                    j++;
+                }
+
+                System.arraycopy(b, i, line, lineLength, j - i);
+                lineLength += j - i;
+                i = j;
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.io.OutputStream#write(int)
+     */
+    @Override
+    public void write(final int b) throws IOException {
+        if (isLoggingThread()) {
+            return;
+        }
+
+        synchronized (this) {
+            if (b == '\n') {
+                publishLine();
+
+                return;
+            }
+
+            if (lineLength == MAX_LINE_LENGTH) {
+                publishPart((byte) b);
+            }
+
+            line[lineLength++] = (byte) b;
+        }
+    }
 }
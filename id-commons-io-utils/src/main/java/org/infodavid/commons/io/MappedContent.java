@@ -0,0 +1,58 @@
+package org.infodavid.commons.io;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * The Class MappedContent.<br>
+ * The data is held in a read-only region mapped from the file, outside of the heap.<br>
+ * The region is only unmapped when the garbage collector reclaims the buffer and all its views, not when the content is evicted from the cache.<br>
+ * If another process truncates the file, accessing the pages beyond the new end of the file raises a SIGBUS signal, reported as an {@link InternalError} or crashing the virtual machine.
+ */
+class MappedContent extends Content {
+
+    /** The buffer. */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * Instantiates a new content.
+     * @param buffer           the mapped buffer
+     * @param modificationDate the modification date
+     */
+    public MappedContent(final MappedByteBuffer buffer, final long modificationDate) {
+        super(null, modificationDate);
+        this.buffer = buffer;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.Content#getBuffer()
+     */
+    @Override
+    public ByteBuffer getBuffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the data.<br>
+     * A copy of the mapped region is returned, use {@link #getBuffer()} to avoid the allocation.
+     * @return the data
+     */
+    @Override
+    public byte[] getData() {
+        final ByteBuffer view = getBuffer();
+        final byte[] result = new byte[view.remaining()];
+        view.get(result);
+
+        return result;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.Content#getOffHeapSize()
+     */
+    @Override
+    public long getOffHeapSize() {
+        return buffer.capacity();
+    }
+}
@@ -0,0 +1,273 @@
+package org.infodavid.commons.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The Class ParallelFileTreeWalker.<br>
+ * The walker visits a files tree like {@link Files#walkFileTree(Path, FileVisitor)} but the directories and the batches of files are processed by the tasks of a fork/join pool with a bounded parallelism.<br>
+ * The visitor is called concurrently and must be thread-safe, the post visit of a directory is called after all its entries have been visited.<br>
+ * Symbolic links are not followed and the order of the visits is not guaranteed. {@link FileVisitResult#SKIP_SIBLINGS} only skips the entries not yet visited by the task of the directory.
+ */
+final class ParallelFileTreeWalker {
+
+    /**
+     * The Class DirectoryTask.
+     */
+    private class DirectoryTask extends RecursiveAction {
+
+        /** The Constant serialVersionUID. */
+        private static final long serialVersionUID = -2441096346829164232L;
+
+        /** The attributes. */
+        private final transient BasicFileAttributes attributes;
+
+        /** The directory. */
+        private final transient Path directory;
+
+        /**
+         * Instantiates a new task.
+         * @param directory  the directory
+         * @param attributes the attributes
+         */
+        DirectoryTask(final Path directory, final BasicFileAttributes attributes) {
+            this.directory = directory;
+            this.attributes = attributes;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+        @Override
+        protected void compute() {
+            try {
+                visitDirectory();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Visit the directory.
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        private void visitDirectory() throws IOException {
+            if (terminated) {
+                return;
+            }
+
+            final FileVisitResult result = visitor.preVisitDirectory(directory, attributes);
+
+            if (result == FileVisitResult.TERMINATE) {
+                terminated = true;
+
+                return;
+            }
+
+            if (result != FileVisitResult.CONTINUE) {
+                return;
+            }
+
+            final List<RecursiveAction> tasks = new ArrayList<>();
+            IOException exception = null;
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                List<Path> batch = new ArrayList<>(BATCH_SIZE);
+
+                for (final Path entry : stream) {
+                    if (terminated) {
+                        break;
+                    }
+
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        final BasicFileAttributes entryAttributes = readAttributes(entry);
+
+                        if (entryAttributes != null) {
+                            tasks.add(forkTask(new DirectoryTask(entry, entryAttributes)));
+                        }
+                    } else {
+                        batch.add(entry);
+
+                        if (batch.size() == BATCH_SIZE) {
+                            tasks.add(forkTask(new FilesTask(batch)));
+                            batch = new ArrayList<>(BATCH_SIZE);
+                        }
+                    }
+                }
+
+                // the last batch is processed by the current task
+                new FilesTask(batch).visitFiles();
+            } catch (final IOException e) {
+                exception = e;
+            }
+
+            for (final RecursiveAction task : tasks) {
+                task.join();
+            }
+
+            if (!terminated && visitor.postVisitDirectory(directory, exception) == FileVisitResult.TERMINATE) {
+                terminated = true;
+            }
+        }
+    }
+
+    /**
+     * The Class FilesTask.
+     */
+    private class FilesTask extends RecursiveAction {
+
+        /** The Constant serialVersionUID. */
+        private static final long serialVersionUID = 6098404372916283117L;
+
+        /** The files. */
+        private final transient List<Path> files;
+
+        /**
+         * Instantiates a new task.
+         * @param files the files
+         */
+        FilesTask(final List<Path> files) {
+            this.files = files;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+        @Override
+        protected void compute() {
+            try {
+                visitFiles();
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Visit the files.
+         * @throws IOException Signals that an I/O exception has occurred.
+         */
+        private void visitFiles() throws IOException {
+            for (final Path file : files) {
+                if (terminated) {
+                    return;
+                }
+
+                final BasicFileAttributes fileAttributes = readAttributes(file);
+
+                if (fileAttributes == null) {
+                    continue;
+                }
+
+                final FileVisitResult result = visitor.visitFile(file, fileAttributes);
+
+                if (result == FileVisitResult.TERMINATE) {
+                    terminated = true;
+                } else if (result == FileVisitResult.SKIP_SIBLINGS) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** The Constant BATCH_SIZE, the number of files visited by a task. */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Fork the task.
+     * @param task the task
+     * @return the task
+     */
+    private static RecursiveAction forkTask(final RecursiveAction task) {
+        task.fork();
+
+        return task;
+    }
+
+    /** The parallelism. */
+    private final int parallelism;
+
+    /** The terminated flag. */
+    private volatile boolean terminated = false;
+
+    /** The visitor. */
+    private FileVisitor<? super Path> visitor;
+
+    /**
+     * Instantiates a new walker.
+     * @param parallelism the maximum number of threads
+     */
+    public ParallelFileTreeWalker(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Walk the files tree.
+     * @param start   the starting path
+     * @param visitor the visitor
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized void walk(final Path start, final FileVisitor<? super Path> visitor) throws IOException {
+        this.visitor = visitor;
+        terminated = false;
+        final BasicFileAttributes attributes;
+
+        try {
+            attributes = Files.readAttributes(start, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (final IOException e) {
+            visitor.visitFileFailed(start, e);
+
+            return;
+        }
+
+        if (!attributes.isDirectory()) {
+            visitor.visitFile(start, attributes);
+
+            return;
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            pool.invoke(new DirectoryTask(start, attributes));
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Read the attributes of the entry.
+     * @param path the path
+     * @return the attributes or null if the failure has been handled by the visitor
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private BasicFileAttributes readAttributes(final Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (final IOException e) {
+            if (visitor.visitFileFailed(path, e) == FileVisitResult.TERMINATE) {
+                terminated = true;
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.infodavid.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The Class ParallelZipExtractor.<br>
+ * The extractor reads the central directory of the archive, creates the directories and then inflates the files concurrently, the length of each target file being set to the size of the entry before being written.<br>
+ * Like the sequential extraction, the entries whose parent directory is not writable are skipped but still notified to the listener.<br>
+ * The listener is notified by the calling thread in the order of the entries of the central directory.
+ */
+final class ParallelZipExtractor {
+
+    /** The Constant BUFFER_SIZE. */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Inflate the entry into the new file.
+     * @param zipFile the ZIP file
+     * @param entry   the entry
+     * @param path    the target file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void extract(final ZipFile zipFile, final ZipEntry entry, final Path path) throws IOException {
+        try (InputStream in = zipFile.getInputStream(entry); FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            final long size = entry.getSize();
+
+            if (size > 0) {
+                // only sets the length, the file stays sparse until its blocks are written
+                channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+                channel.position(0);
+            }
+
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            final ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+            long written = 0;
+            int read;
+
+            while ((read = in.read(buffer)) > 0) { // NOSONAR Assignment in condition
+                wrapper.clear().limit(read);
+
+                while (wrapper.hasRemaining()) {
+                    written += channel.write(wrapper);
+                }
+            }
+
+            if (written != size) {
+                channel.truncate(written);
+            }
+        }
+    }
+
+    /** The parallelism. */
+    private final int parallelism;
+
+    /**
+     * Instantiates a new extractor.
+     * @param parallelism the maximum number of threads
+     */
+    ParallelZipExtractor(final int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Extract the entries of the file into the directory.
+     * @param file     the ZIP file
+     * @param dir      the directory
+     * @param excluded the set of excluded files or directories
+     * @param listener the listener
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    void extract(final Path file, final Path dir, final Collection<String> excluded, final FileProcessingListener listener) throws IOException {
+        final Predicate<Path> filter = new FilterPredicate(Collections.emptyList(), excluded, true);
+        final List<ZipEntry> files = new ArrayList<>();
+        final List<Path> paths = new ArrayList<>();
+
+        try (ZipFile zipFile = new ZipFile(file.toFile())) {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                final Path path = PathUtilities.resolveArchiveEntry(dir, entry.getName());
+
+                if (!filter.test(path)) {
+                    continue;
+                }
+
+                final Path parent = path.getParent();
+
+                if (!Files.exists(parent)) { // NOSONAR NIO API
+                    Files.createDirectories(parent);
+                }
+
+                if (Files.isWritable(parent)) { // NOSONAR NIO API
+                    if (!entry.isDirectory()) {
+                        // notified once inflated
+                        files.add(entry);
+                        paths.add(path);
+
+                        continue;
+                    }
+
+                    Files.createDirectories(path);
+                }
+
+                if (listener != null) {
+                    listener.processed(path, FileProcessingListener.EXTRACTED);
+                }
+            }
+
+            extract(zipFile, files, paths, listener);
+        }
+    }
+
+    /**
+     * Inflate the files concurrently, the largest first.
+     * @param zipFile  the ZIP file
+     * @param files    the entries of the files
+     * @param paths    the target files
+     * @param listener the listener
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void extract(final ZipFile zipFile, final List<ZipEntry> files, final List<Path> paths, final FileProcessingListener listener) throws IOException {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        final List<Integer> order = new ArrayList<>(files.size());
+
+        for (int i = 0; i < files.size(); i++) {
+            order.add(Integer.valueOf(i));
+        }
+
+        order.sort(Comparator.comparingLong((final Integer i) -> files.get(i.intValue()).getSize()).reversed());
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, files.size()), r -> {
+            final Thread thread = new Thread(r, "zip-extractor");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        final List<Future<Void>> futures = new ArrayList<>(Collections.nCopies(files.size(), null));
+
+        try {
+            for (final Integer i : order) {
+                futures.set(i.intValue(), executor.submit(() -> {
+                    extract(zipFile, files.get(i.intValue()), paths.get(i.intValue()));
+
+                    return null;
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (final ExecutionException e) {
+                    final IOException exception = e.getCause() instanceof final IOException ioe ? ioe : new IOException(e.getCause());
+
+                    if (listener != null) {
+                        listener.failed(paths.get(i), exception);
+                    }
+
+                    throw exception;
+                }
+
+                if (listener != null) {
+                    listener.processed(paths.get(i), FileProcessingListener.EXTRACTED);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw (IOException) new InterruptedIOException("Interrupted while extracting").initCause(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
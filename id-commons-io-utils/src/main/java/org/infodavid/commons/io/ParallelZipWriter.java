@@ -0,0 +1,524 @@
+package org.infodavid.commons.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+/**
+ * The Class ParallelZipWriter.<br>
+ * The writer splits the files in chunks which are deflated concurrently, each chunk using the end of the previous one as dictionary and ending with a synchronization flush so that the chunks of a file form a single deflate stream.<br>
+ * The entries are written in the order they have been added using the raw entries support of {@link ZipArchiveOutputStream}, the CRC of the chunks being combined.<br>
+ * The number of chunks being compressed or waiting to be written is bounded and the compressed data of the entry being assembled is spilled to a temporary file when it exceeds a threshold, so that the memory use does not depend on the size of the files.
+ */
+final class ParallelZipWriter implements Closeable {
+
+    /**
+     * The Class Chunk.
+     */
+    static class Chunk {
+
+        /** The CRC of the uncompressed data. */
+        private final long crc;
+
+        /** The compressed data. */
+        private final byte[] data;
+
+        /** The length of the uncompressed data. */
+        private final int length;
+
+        /**
+         * Instantiates a new chunk.
+         * @param crc    the CRC of the uncompressed data
+         * @param length the length of the uncompressed data
+         * @param data   the compressed data
+         */
+        Chunk(final long crc, final int length, final byte[] data) {
+            this.crc = crc;
+            this.length = length;
+            this.data = data;
+        }
+
+        /**
+         * Gets the CRC of the uncompressed data.
+         * @return the CRC
+         */
+        long getCrc() {
+            return crc;
+        }
+
+        /**
+         * Gets the compressed data.
+         * @return the data
+         */
+        byte[] getData() {
+            return data;
+        }
+
+        /**
+         * Gets the length of the uncompressed data.
+         * @return the length
+         */
+        int getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * The Class PendingEntry.
+     */
+    private static class PendingEntry {
+
+        /** The compressed size. */
+        private long compressedSize = 0;
+
+        /** The CRC. */
+        private long crc = 0;
+
+        /** The entry. */
+        private final ZipArchiveEntry entry;
+
+        /** The file. */
+        private final Path file;
+
+        /** The chunks being compressed. */
+        private final List<Future<Chunk>> futures = new ArrayList<>();
+
+        /** The compressed data kept in memory. */
+        private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+
+        /** The index of the next chunk to append. */
+        private int next = 0;
+
+        /** The spill file. */
+        private Path spill = null;
+
+        /** The spill output stream. */
+        private OutputStream spillOut = null;
+
+        /** The flag indicating if all the chunks have been submitted. */
+        private boolean submitted = false;
+
+        /**
+         * Instantiates a new entry.
+         * @param entry the entry
+         * @param file  the file
+         */
+        PendingEntry(final ZipArchiveEntry entry, final Path file) {
+            this.entry = entry;
+            this.file = file;
+        }
+    }
+
+    /** The Constant CHUNK_SIZE. */
+    static final int CHUNK_SIZE = 1048576;
+
+    /** The Constant DICTIONARY_SIZE. */
+    static final int DICTIONARY_SIZE = 32768;
+
+    /** The Constant SPILL_THRESHOLD. */
+    static final int SPILL_THRESHOLD = 8388608;
+
+    /**
+     * Combine the CRC of two consecutive blocks, see crc32_combine of zlib.
+     * @param crc1   the CRC of the first block
+     * @param crc2   the CRC of the second block
+     * @param length the length of the second block
+     * @return the CRC of the concatenated blocks
+     */
+    static long combine(final long crc1, final long crc2, final long length) {
+        if (length <= 0) {
+            return crc1;
+        }
+
+        final long[] even = new long[32];
+        final long[] odd = new long[32];
+        long result = crc1;
+        long remaining = length;
+        long row = 1;
+        odd[0] = 0xedb88320L;
+
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+
+        square(even, odd);
+        square(odd, even);
+
+        while (remaining != 0) {
+            square(even, odd);
+
+            if ((remaining & 1) != 0) {
+                result = times(even, result);
+            }
+
+            remaining >>= 1;
+
+            if (remaining == 0) {
+                break;
+            }
+
+            square(odd, even);
+
+            if ((remaining & 1) != 0) {
+                result = times(odd, result);
+            }
+
+            remaining >>= 1;
+        }
+
+        return result ^ crc2;
+    }
+
+    /**
+     * Deflate the chunk as a raw deflate block, ending with a synchronization flush if it is not the last chunk of the stream.
+     * @param data       the data
+     * @param length     the length of the data
+     * @param dictionary the dictionary, the end of the previous chunk or null
+     * @param level      the level
+     * @param last       true if last chunk of the stream
+     * @return the compressed data
+     */
+    static byte[] deflate(final byte[] data, final int length, final byte[] dictionary, final int level, final boolean last) {
+        final Deflater deflater = new Deflater(level, true);
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(length / 2 + 64);
+        final byte[] bytes = new byte[65536];
+
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+
+            deflater.setInput(data, 0, length);
+
+            if (last) {
+                deflater.finish();
+
+                while (!deflater.finished()) {
+                    buffer.write(bytes, 0, deflater.deflate(bytes));
+                }
+            } else {
+                int count;
+
+                do {
+                    count = deflater.deflate(bytes, 0, bytes.length, Deflater.SYNC_FLUSH);
+                    buffer.write(bytes, 0, count);
+                } while (count == bytes.length || !deflater.needsInput());
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Read the data of the file.
+     * @param channel  the channel
+     * @param position the position
+     * @param length   the length
+     * @return the data
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static byte[] read(final FileChannel channel, final long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at position: " + (position + buffer.position()));
+            }
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Release the temporary resources of the entry.
+     * @param entry the entry
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void release(final PendingEntry entry) throws IOException {
+        for (final Future<Chunk> future : entry.futures) {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        if (entry.spillOut != null) {
+            entry.spillOut.close();
+            entry.spillOut = null;
+            Files.deleteIfExists(entry.spill);
+        }
+    }
+
+    /**
+     * Square the GF(2) matrix.
+     * @param square the result
+     * @param matrix the matrix
+     */
+    private static void square(final long[] square, final long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+
+    /**
+     * Multiply the GF(2) matrix by the vector.
+     * @param matrix the matrix
+     * @param vector the vector
+     * @return the result
+     */
+    private static long times(final long[] matrix, final long vector) {
+        long sum = 0;
+        long value = vector;
+
+        for (int i = 0; value != 0; i++, value >>>= 1) {
+            if ((value & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+
+        return sum;
+    }
+
+    /** The executor. */
+    private final ExecutorService executor;
+
+    /** The number of chunks being compressed or waiting to be written. */
+    private int inFlight = 0;
+
+    /** The level. */
+    private final int level;
+
+    /** The listener. */
+    private final FileProcessingListener listener;
+
+    /** The output stream. */
+    private final ZipArchiveOutputStream out;
+
+    /** The pending entries, in order. */
+    private final Deque<PendingEntry> pending = new ArrayDeque<>();
+
+    /** The maximum number of chunks being compressed or waiting to be written. */
+    private final int window;
+
+    /**
+     * Instantiates a new writer.
+     * @param out         the output stream
+     * @param level       the level from 0 (store) to 9
+     * @param parallelism the maximum number of threads
+     * @param listener    the listener
+     */
+    ParallelZipWriter(final OutputStream out, final int level, final int parallelism, final FileProcessingListener listener) {
+        this.out = new ZipArchiveOutputStream(out);
+        this.level = Math.max(0, Math.min(Deflater.BEST_COMPRESSION, level));
+        this.listener = listener;
+        window = parallelism * 2;
+        executor = Executors.newFixedThreadPool(parallelism, r -> {
+            final Thread thread = new Thread(r, "zip-compressor");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    /**
+     * Abort the writing, the chunks being compressed are cancelled and the temporary files are deleted.<br>
+     * The output stream is not closed.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    void abort() throws IOException {
+        executor.shutdownNow();
+
+        for (final PendingEntry entry : pending) {
+            release(entry);
+        }
+
+        pending.clear();
+    }
+
+    /**
+     * Adds the file, its chunks are compressed asynchronously.
+     * @param name the name of the entry
+     * @param file the file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    void add(final String name, final Path file) throws IOException {
+        final long size = Files.size(file);
+        final ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setMethod(level == 0 ? ZipArchiveEntry.STORED : ZipArchiveEntry.DEFLATED);
+        entry.setSize(size);
+        entry.setTime(Files.getLastModifiedTime(file).toMillis());
+        final PendingEntry pendingEntry = new PendingEntry(entry, file);
+        pending.add(pendingEntry);
+        long position = 0;
+
+        do {
+            final long chunkPosition = position;
+            final int length = (int) Math.min(CHUNK_SIZE, size - position);
+            final boolean last = position + length >= size;
+
+            while (inFlight >= window) {
+                drain();
+            }
+
+            pendingEntry.futures.add(executor.submit(() -> compress(file, chunkPosition, length, last)));
+            inFlight++;
+            position += length;
+        } while (position < size);
+
+        pendingEntry.submitted = true;
+    }
+
+    /**
+     * Append the next chunk to the entry.
+     * @param entry the entry
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void append(final PendingEntry entry) throws IOException {
+        final Chunk chunk;
+
+        try {
+            chunk = entry.futures.get(entry.next).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw (IOException) new InterruptedIOException("Interrupted while compressing: " + entry.file).initCause(e);
+        } catch (final ExecutionException e) {
+            final IOException exception = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+
+            if (listener != null) {
+                listener.failed(entry.file, exception);
+            }
+
+            throw exception;
+        }
+
+        entry.futures.set(entry.next, null);
+        entry.next++;
+        inFlight--;
+        entry.crc = entry.next == 1 ? chunk.crc : combine(entry.crc, chunk.crc, chunk.length);
+        entry.compressedSize += chunk.data.length;
+
+        if (entry.spillOut == null && entry.memory.size() + chunk.data.length > SPILL_THRESHOLD) {
+            entry.spill = Files.createTempFile("zip-", ".tmp");
+            entry.spillOut = Files.newOutputStream(entry.spill);
+            entry.memory.writeTo(entry.spillOut);
+            entry.memory.reset();
+        }
+
+        if (entry.spillOut == null) {
+            entry.memory.write(chunk.data);
+        } else {
+            entry.spillOut.write(chunk.data);
+        }
+    }
+
+
+    /*
+     * (non-javadoc)
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            while (!pending.isEmpty()) {
+                drain();
+            }
+
+            out.close();
+        } finally {
+            abort();
+        }
+    }
+
+    /**
+     * Compress the chunk.
+     * @param file     the file
+     * @param position the position of the chunk
+     * @param length   the length of the chunk
+     * @param last     true if last chunk of the file
+     * @return the chunk
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private Chunk compress(final Path file, final long position, final int length, final boolean last) throws IOException {
+        final byte[] data;
+        final byte[] dictionary;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = read(channel, position, length);
+            dictionary = level == 0 || position == 0 ? null : read(channel, position - Math.min(DICTIONARY_SIZE, position), (int) Math.min(DICTIONARY_SIZE, position));
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+
+        return new Chunk(crc.getValue(), length, level == 0 ? data : deflate(data, length, dictionary, level, last));
+    }
+
+    /**
+     * Append the next chunk of the first pending entry and write the entry if complete.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void drain() throws IOException {
+        final PendingEntry entry = pending.peek();
+
+        if (entry.next < entry.futures.size()) {
+            append(entry);
+        }
+
+        if (entry.submitted && entry.next == entry.futures.size()) {
+            write(pending.poll());
+        }
+    }
+
+    /**
+     * Write the entry.
+     * @param entry the entry
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void write(final PendingEntry entry) throws IOException {
+        entry.entry.setCrc(entry.crc);
+        entry.entry.setCompressedSize(entry.compressedSize);
+
+        if (entry.spillOut != null) {
+            entry.spillOut.close();
+        }
+
+        try (InputStream in = entry.spill == null ? new ByteArrayInputStream(entry.memory.toByteArray()) : Files.newInputStream(entry.spill)) {
+            out.addRawArchiveEntry(entry.entry, in);
+        } finally {
+            entry.spillOut = null;
+
+            if (entry.spill != null) {
+                Files.deleteIfExists(entry.spill);
+            }
+        }
+
+        if (listener != null) {
+            listener.processed(entry.file, FileProcessingListener.COMPRESSED);
+        }
+    }
+}
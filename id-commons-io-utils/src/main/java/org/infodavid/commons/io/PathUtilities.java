@@ -6,46 +6,53 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.lang.ref.WeakReference;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.file.CopyOption;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.AclEntry;
 import java.nio.file.attribute.AclEntry.Builder;
 import java.nio.file.attribute.AclEntryPermission;
 import java.nio.file.attribute.AclEntryType;
 import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.GroupPrincipal;
-import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.UserPrincipal;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.SetValuedMap;
-import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.function.IOFunction;
 import org.infodavid.commons.system.SystemUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -260,6 +267,65 @@ public final class PathUtilities {
         return instance.get();
     }
 
+    /**
+     * Gets the POSIX permissions resulting from the application of the ACL to the current permissions.<br>
+     * Static to allow use by the {@link AttributesUpdater}.
+     * @param attributes the current attributes
+     * @param acl        the ACL
+     * @return the permissions
+     */
+    static Set<PosixFilePermission> getPosixPermissions(final PosixFileAttributes attributes, final Set<AclEntry> acl) {
+        final String owner = attributes.owner().getName();
+        final GroupPrincipal groupPrincipal = attributes.group();
+        final Set<PosixFilePermission> permissions = new HashSet<>();
+
+        if (attributes.permissions() != null) {
+            permissions.addAll(attributes.permissions());
+        }
+
+        for (final AclEntry entry : acl) {
+            if (entry.principal().getName().equalsIgnoreCase(owner)) {
+                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.READ_ACL_ENTRY_PERMISSIONS).isEmpty()) {
+                    setPosixPermission(entry, PosixFilePermission.OWNER_READ, permissions);
+                }
+
+                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.WRITE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
+                    setPosixPermission(entry, PosixFilePermission.OWNER_WRITE, permissions);
+                }
+
+                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.EXECUTE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
+                    setPosixPermission(entry, PosixFilePermission.OWNER_EXECUTE, permissions);
+                }
+            } else if (entry.principal().equals(groupPrincipal)) {
+                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.READ_ACL_ENTRY_PERMISSIONS).isEmpty()) {
+                    setPosixPermission(entry, PosixFilePermission.GROUP_READ, permissions);
+                }
+
+                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.WRITE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
+                    setPosixPermission(entry, PosixFilePermission.GROUP_WRITE, permissions);
+                }
+
+                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.EXECUTE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
+                    setPosixPermission(entry, PosixFilePermission.GROUP_EXECUTE, permissions);
+                }
+            } else {
+                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.READ_ACL_ENTRY_PERMISSIONS).isEmpty()) {
+                    setPosixPermission(entry, PosixFilePermission.OTHERS_READ, permissions);
+                }
+
+                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.WRITE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
+                    setPosixPermission(entry, PosixFilePermission.OTHERS_WRITE, permissions);
+                }
+
+                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.EXECUTE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
+                    setPosixPermission(entry, PosixFilePermission.OTHERS_EXECUTE, permissions);
+                }
+            }
+        }
+
+        return permissions;
+    }
+
     /**
      * Checks if is empty.
      * @param path the path
@@ -352,6 +418,25 @@ public final class PathUtilities {
         return false;
     }
 
+    /**
+     * Resolve the name of an archive entry against the target directory.<br>
+     * Static to allow use by the extractors.
+     * @param dir  the target directory
+     * @param name the name of the entry
+     * @return the absolute and normalized path
+     * @throws IOException if the entry is outside of the target directory (zip slip)
+     */
+    static Path resolveArchiveEntry(final Path dir, final String name) throws IOException {
+        final Path root = dir.toAbsolutePath().normalize();
+        final Path result = root.resolve(name).normalize();
+
+        if (!result.startsWith(root)) {
+            throw new IOException("Entry is outside of the target directory: " + name);
+        }
+
+        return result;
+    }
+
     /**
      * Instantiates a new utilities.
      */
@@ -416,9 +501,38 @@ public final class PathUtilities {
 
         final FileTreeMatcher matcher = new FileTreeMatcher(p1, p2, true, includeHidden);
 
-        Files.walkFileTree(p1, matcher);
+        return matcher.match(Runtime.getRuntime().availableProcessors()).isEmpty();
+    }
+
+    /**
+     * Gets the differences between two folders.
+     * @param p1 first folder
+     * @param p2 second folder
+     * @return the differences, the added paths are present only in the second folder
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public FileTreeDifferences diff(final Path p1, final Path p2) throws IOException {
+        return diff(p1, p2, false, false, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Gets the differences between two folders.<br>
+     * The metadata are compared first and only the files having the same size are compared by content, using several threads.
+     * @param p1                      first folder
+     * @param p2                      second folder
+     * @param includeHidden           the include hidden
+     * @param modificationTimeTrusted true to consider the files having the same size and modification time identical without comparing their contents
+     * @param parallelism             the maximum number of threads used to compare the contents
+     * @return the differences, the added paths are present only in the second folder
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public FileTreeDifferences diff(final Path p1, final Path p2, final boolean includeHidden, final boolean modificationTimeTrusted, final int parallelism) throws IOException {
+        assertDirectory(p1);
+        assertDirectory(p2);
+        final FileTreeMatcher matcher = new FileTreeMatcher(p1, p2, false, includeHidden);
+        matcher.setModificationTimeTrusted(modificationTimeTrusted);
 
-        return matcher.getDifferences().isEmpty();
+        return matcher.match(parallelism);
     }
 
     /**
@@ -457,6 +571,23 @@ public final class PathUtilities {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public void copy(final Path from, final Path to, final Collection<String> excluded, final boolean includeHidden, final FileProcessingListener listener, final CopyOption... options) throws IOException {
+        copy(from, to, excluded, includeHidden, listener, 1, options);
+    }
+
+    /**
+     * Move copy or directory.<br/>
+     * When parallelism is greater than 1, the directories are copied by a {@link ParallelFileTreeWalker} and the listener must be thread-safe.<br>
+     * Using {@link ExtendedCopyOption#CHANNEL_TRANSFER}, the regular files are copied from channel to channel in large chunks.
+     * @param from          the path
+     * @param to            the destination path
+     * @param excluded      the excluded
+     * @param includeHidden true to include hidden
+     * @param listener      the listener
+     * @param parallelism   the maximum number of threads used to walk the directories
+     * @param options       the options
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void copy(final Path from, final Path to, final Collection<String> excluded, final boolean includeHidden, final FileProcessingListener listener, final int parallelism, final CopyOption... options) throws IOException {
         if (Files.isRegularFile(from)) { // NOSONAR API NIO
             if (!Files.isRegularFile(from)) { // NOSONAR API NIO
                 throw new IllegalArgumentException("Source is not a regular file: " + from);
@@ -466,7 +597,11 @@ public final class PathUtilities {
                 LOGGER.debug("Copying file {} to {}", from, to.toAbsolutePath());
             }
 
-            Files.copy(from, to, options);
+            if (FileChannelCopier.isChannelTransfer(options)) {
+                FileChannelCopier.copy(from, to, options);
+            } else {
+                Files.copy(from, to, options);
+            }
 
             if (listener != null) {
                 listener.processed(from, FileProcessingListener.COPIED);
@@ -493,7 +628,7 @@ public final class PathUtilities {
             final CopyDirectoryVisitor visitor = new CopyDirectoryVisitor(from.toAbsolutePath(), to.toAbsolutePath(), listener, options);
             visitor.getExcluded().addAll(excluded);
             visitor.setIncludeHidden(includeHidden);
-            Files.walkFileTree(from.toAbsolutePath(), visitor);
+            walkFileTree(from.toAbsolutePath(), visitor, parallelism);
 
             if (listener != null) {
                 listener.processed(from, FileProcessingListener.COPIED);
@@ -503,6 +638,27 @@ public final class PathUtilities {
         }
     }
 
+    /**
+     * Copy file or directory asynchronously using the executor, see {@link #copy(Path, Path, Collection, boolean, FileProcessingListener, CopyOption...)}.<br>
+     * The progress is reported to the listener and the operation stops at the next processed entry when the returned future is cancelled, the entries already copied being kept.
+     * @param from          the path
+     * @param to            the destination path
+     * @param excluded      the excluded
+     * @param includeHidden true to include hidden
+     * @param listener      the listener
+     * @param executor      the executor
+     * @param options       the options
+     * @return the future
+     */
+    public CompletableFuture<Void> copyAsync(final Path from, final Path to, final Collection<String> excluded, final boolean includeHidden, final FileProcessingListener listener, final Executor executor, final CopyOption... options) {
+        return runAsync(executor, listener, tracker -> {
+            tracker.count(from, UnaryOperator.identity());
+            copy(from, to, excluded, includeHidden, tracker, options);
+
+            return null;
+        });
+    }
+
     /**
      * Delete.
      * @param path the path
@@ -521,6 +677,19 @@ public final class PathUtilities {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public boolean delete(final Path path, final FileProcessingListener listener) throws IOException {
+        return delete(path, listener, 1);
+    }
+
+    /**
+     * Delete.<br>
+     * When parallelism is greater than 1, the directories are deleted by a {@link ParallelFileTreeWalker} and the listener must be thread-safe.
+     * @param path        the path
+     * @param listener    the listener
+     * @param parallelism the maximum number of threads used to walk the directories
+     * @return true, if successful
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public boolean delete(final Path path, final FileProcessingListener listener, final int parallelism) throws IOException {
         LOGGER.debug("Deleting: {}", path);
 
         if (path == null) {
@@ -529,7 +698,7 @@ public final class PathUtilities {
 
         if (Files.isDirectory(path)) { // NOSONAR API NIO
             final DeletionVisitor visitor = new DeletionVisitor(listener);
-            Files.walkFileTree(path, visitor);
+            walkFileTree(path, visitor, parallelism);
 
             if (visitor.getException() != null) {
                 throw visitor.getException();
@@ -565,6 +734,22 @@ public final class PathUtilities {
         return true;
     }
 
+    /**
+     * Delete asynchronously using the executor, see {@link #delete(Path, FileProcessingListener)}.<br>
+     * The progress is reported to the listener and the operation stops at the next processed entry when the returned future is cancelled.
+     * @param path     the path
+     * @param listener the listener
+     * @param executor the executor
+     * @return the future
+     */
+    public CompletableFuture<Boolean> deleteAsync(final Path path, final FileProcessingListener listener, final Executor executor) {
+        return runAsync(executor, listener, tracker -> {
+            tracker.count(path, null);
+
+            return Boolean.valueOf(delete(path, tracker));
+        });
+    }
+
     /**
      * Delete on exit.
      * @param path the path
@@ -600,19 +785,7 @@ public final class PathUtilities {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     private boolean equals(final Path p1, final Path p2) throws IOException {
-        String left;
-
-        try (InputStream in = Files.newInputStream(p1)) {
-            left = DigestUtils.md5Hex(in);
-        }
-
-        String right;
-
-        try (InputStream in = Files.newInputStream(p2)) {
-            right = DigestUtils.md5Hex(in);
-        }
-
-        return left.equals(right);
+        return FileTreeMatcher.isSameContent(p1, p2);
     }
 
     /**
@@ -812,12 +985,25 @@ public final class PathUtilities {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public long getSize(final Path path, final boolean recursive) throws IOException {
+        return getSize(path, recursive, 1);
+    }
+
+    /**
+     * Gets the size.<br>
+     * When parallelism is greater than 1, the directories are walked by a {@link ParallelFileTreeWalker}.
+     * @param path        the path
+     * @param recursive   the recursive
+     * @param parallelism the maximum number of threads used to walk the directories
+     * @return the size
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public long getSize(final Path path, final boolean recursive, final int parallelism) throws IOException {
         if (!Files.isDirectory(path)) { // NOSONAR API NIO
             return Files.size(path);
         }
 
         final DirectorySizeVisitor visitor = new DirectorySizeVisitor(path, recursive);
-        Files.walkFileTree(path, visitor);
+        walkFileTree(path, visitor, parallelism);
 
         return visitor.getSize();
     }
@@ -934,12 +1120,26 @@ public final class PathUtilities {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public void move(final Path from, final Path to, final FileProcessingListener listener, final CopyOption... options) throws IOException {
+        move(from, to, listener, 1, options);
+    }
+
+    /**
+     * Move file or directory.<br>
+     * When parallelism is greater than 1, the directories are moved by a {@link ParallelFileTreeWalker} and the listener must be thread-safe.
+     * @param from        the path
+     * @param to          the destination path
+     * @param listener    the listener
+     * @param parallelism the maximum number of threads used to walk the directories
+     * @param options     the options
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void move(final Path from, final Path to, final FileProcessingListener listener, final int parallelism, final CopyOption... options) throws IOException {
         if (Files.isRegularFile(from)) { // NOSONAR API NIO
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Moving file {} to {}", from, to.toAbsolutePath());
             }
 
-            Files.move(from, to, options);
+            Files.move(from, to, FileChannelCopier.filter(options));
 
             if (listener != null) {
                 listener.processed(from, FileProcessingListener.MOVED);
@@ -965,7 +1165,7 @@ public final class PathUtilities {
             }
 
             final CopyDirectoryVisitor visitor = new CopyDirectoryVisitor(from.toAbsolutePath(), to.toAbsolutePath(), true, listener, options);
-            Files.walkFileTree(from.toAbsolutePath(), visitor);
+            walkFileTree(from.toAbsolutePath(), visitor, parallelism);
 
             if (listener != null) {
                 listener.processed(from, FileProcessingListener.COPIED);
@@ -979,6 +1179,27 @@ public final class PathUtilities {
         }
     }
 
+    /**
+     * Move file or directory asynchronously using the executor, see {@link #move(Path, Path, FileProcessingListener, CopyOption...)}.<br>
+     * The progress is reported to the listener and the operation stops at the next processed entry when the returned future is cancelled, the entries already moved being kept.
+     * @param from     the path
+     * @param to       the destination path
+     * @param listener the listener
+     * @param executor the executor
+     * @param options  the options
+     * @return the future
+     */
+    public CompletableFuture<Void> moveAsync(final Path from, final Path to, final FileProcessingListener listener, final Executor executor, final CopyOption... options) {
+        return runAsync(executor, listener, tracker -> {
+            final Path source = from.toAbsolutePath();
+            final Path target = to.toAbsolutePath();
+            tracker.count(from, p -> target.resolve(source.relativize(p.toAbsolutePath())));
+            move(from, to, tracker, options);
+
+            return null;
+        });
+    }
+
     /**
      * Build a string representation of the files tree.
      * @param folder the path
@@ -1092,6 +1313,41 @@ public final class PathUtilities {
         Files.setPosixFilePermissions(path, perms);
     }
 
+    /**
+     * Run the operation using the executor.<br>
+     * The operation receives a {@link ProgressTracker} wrapping the listener which reports the progress and stops the operation when the returned future is cancelled.
+     * @param <T>       the type of the result
+     * @param executor  the executor
+     * @param listener  the listener
+     * @param operation the operation
+     * @return the future
+     */
+    private static <T> CompletableFuture<T> runAsync(final Executor executor, final FileProcessingListener listener, final IOFunction<ProgressTracker, T> operation) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        try {
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+
+                final ProgressTracker tracker = new ProgressTracker(listener, result::isCancelled);
+
+                try {
+                    final T value = operation.apply(tracker);
+                    tracker.complete();
+                    result.complete(value);
+                } catch (final Throwable e) { // NOSONAR Reported to the future, ignored if cancelled
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+
     /**
      * Sets the owner without recursive processing.
      * @param path  the path
@@ -1145,6 +1401,22 @@ public final class PathUtilities {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public void setOwner(final Path path, final UserPrincipal owner, final GroupPrincipal group, final boolean recursive, final FileProcessingListener listener) throws IOException {
+        setOwner(path, owner, group, recursive, listener, 1);
+    }
+
+    /**
+     * Sets the owner.<br>
+     * The paths already having the owner and the group are skipped and reported as {@link FileProcessingListener#UNCHANGED}, the entries of a directory are processed by batches using the given number of threads, see {@link AttributesUpdater}.<br>
+     * When parallelism is greater than 1, the listener must be thread-safe.
+     * @param path        the path
+     * @param owner       the owner
+     * @param group       the group or null to keep the current one
+     * @param recursive   the recursive
+     * @param listener    the listener
+     * @param parallelism the maximum number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void setOwner(final Path path, final UserPrincipal owner, final GroupPrincipal group, final boolean recursive, final FileProcessingListener listener, final int parallelism) throws IOException {
         if (!Files.exists(path)) { // NOSONAR NIO API
             if (listener != null) {
                 listener.processed(path, FileProcessingListener.SKIPPED);
@@ -1154,68 +1426,37 @@ public final class PathUtilities {
         }
 
         LOGGER.debug("Setting owner for path: {} to {} ({})", path, owner, group);
+        final AttributesUpdater updater = AttributesUpdater.owner(owner, group, listener);
+        updater.update(path);
 
-        try {
-            final PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
-
-            if (view == null) {
-                throw new UnsupportedOperationException();
-            }
-
-            view.setOwner(owner);
+        if (recursive && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) { // NOSONAR NIO API
+            updater.walk(path, parallelism);
+        }
+    }
 
-            if (group == null) {
-                if (listener != null) {
-                    listener.processed(path, FileProcessingListener.SKIPPED);
-                }
+    /**
+     * Sets the owner asynchronously using the executor, see {@link #setOwner(Path, UserPrincipal, GroupPrincipal, boolean, FileProcessingListener)}.<br>
+     * The progress is reported to the listener and the operation stops at the next processed entry when the returned future is cancelled.
+     * @param path      the path
+     * @param owner     the owner
+     * @param group     the group
+     * @param recursive the recursive
+     * @param listener  the listener
+     * @param executor  the executor
+     * @return the future
+     */
+    public CompletableFuture<Void> setOwnerAsync(final Path path, final UserPrincipal owner, final GroupPrincipal group, final boolean recursive, final FileProcessingListener listener, final Executor executor) {
+        return runAsync(executor, listener, tracker -> {
+            if (recursive) {
+                tracker.count(path, null);
             } else {
-                view.setGroup(group);
+                tracker.setTotals(1, 0, null);
             }
-        } catch (@SuppressWarnings("unused") final UnsupportedOperationException e) {
-            try {
-                Files.setOwner(path, owner);
-            } catch (final IOException e2) {
-                if (listener != null) {
-                    listener.failed(path, e2);
-                }
 
-                throw e2;
-            }
-        }
-
-        if (listener != null) {
-            listener.processed(path, FileProcessingListener.OWNER_CHANGED);
-        }
+            setOwner(path, owner, group, recursive, tracker);
 
-        if (recursive && Files.isDirectory(path)) { // NOSONAR NIO API
-            try (final Stream<Path> stream = Files.walk(path, 1)) {
-                stream.filter(p -> !Files.isSymbolicLink(p)).forEach(p -> {
-                    try {
-                        setOwner(p, owner, group, recursive, listener);
-                    } catch (final IOException e) {
-                        if (listener == null) {
-                            throw new RuntimeException(e); // NOSONAR Used in stream
-                        }
-
-                        try {
-                            listener.failed(p, e);
-                        } catch (final IOException e1) {
-                            throw new RuntimeException(e1); // NOSONAR Used in stream
-                        }
-                    }
-                });
-            } catch (final RuntimeException e) {
-                IOException cause;
-
-                if (e.getCause() instanceof final IOException e2) {
-                    cause = e2;
-                } else {
-                    cause = new IOException(e);
-                }
-
-                throw cause;
-            }
-        }
+            return null;
+        });
     }
 
     /**
@@ -1237,6 +1478,21 @@ public final class PathUtilities {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public void setPermissions(final Path path, final Set<AclEntry> acl, final boolean recursive, final FileProcessingListener listener) throws IOException {
+        setPermissions(path, acl, recursive, listener, 1);
+    }
+
+    /**
+     * Sets the permissions.<br>
+     * The ACL are used if supported by the file system, the POSIX permissions otherwise. The paths already having the permissions are skipped and reported as {@link FileProcessingListener#UNCHANGED}, the entries of a directory are processed by batches using the given number of threads, see {@link AttributesUpdater}.<br>
+     * When parallelism is greater than 1, the listener must be thread-safe.
+     * @param path        the path
+     * @param acl         the ACL
+     * @param recursive   the recursive
+     * @param listener    the listener
+     * @param parallelism the maximum number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void setPermissions(final Path path, final Set<AclEntry> acl, final boolean recursive, final FileProcessingListener listener, final int parallelism) throws IOException {
         if (!Files.exists(path)) { // NOSONAR NIO API
             if (listener != null) {
                 listener.processed(path, FileProcessingListener.SKIPPED);
@@ -1245,97 +1501,12 @@ public final class PathUtilities {
             throw new NoSuchFileException(FILE_NOT_FOUND + path.toString());
         }
 
-        final Set<AclEntry> specific = new HashSet<>(acl);
-
-        if (!Files.isDirectory(path)) { // NOSONAR NIO API
-            for (final AclEntry entry : specific) {
-                entry.permissions().remove(AclEntryPermission.DELETE_CHILD);
-            }
-        }
-
-        LOGGER.debug("Setting permissions for path: {} to {}", path, specific);
-        final AclFileAttributeView view = Files.getFileAttributeView(path, AclFileAttributeView.class);
-
-        if (view == null) {
-            LOGGER.debug("ACL are not supported, setting POSIX permissions.");
-
-            try {
-                setPosixPermissions(path, specific);
-            } catch (final IOException e) {
-                if (listener != null) {
-                    listener.failed(path, e);
-                }
-
-                throw e;
-            }
-        } else {
-            final SetValuedMap<UserPrincipal, AclEntry> entries = new HashSetValuedHashMap<>();
-
-            for (final AclEntry entry : view.getAcl()) {
-                entries.put(entry.principal(), entry);
-            }
-
-            for (final AclEntry entry : specific) {
-                final Set<AclEntry> conflictingEntries = entries.get(entry.principal());
-
-                if (conflictingEntries == null || conflictingEntries.isEmpty()) {
-                    continue;
-                }
-
-                final Iterator<AclEntry> conflictingIterator = conflictingEntries.iterator();
-
-                while (conflictingIterator.hasNext()) {
-                    final AclEntry conflictingEntry = conflictingIterator.next();
-
-                    for (final AclEntryPermission permission : entry.permissions()) {
-                        conflictingEntry.permissions().remove(permission);
-
-                        if (conflictingEntry.permissions().isEmpty()) {
-                            conflictingIterator.remove();
-                        }
-                    }
-                }
-            }
-
-            try {
-                view.setAcl(new ArrayList<>(entries.values()));
-            } catch (final IOException e) {
-                if (listener != null) {
-                    listener.failed(path, e);
-                }
-
-                throw e;
-            }
-        }
-
-        if (recursive && Files.isDirectory(path)) { // NOSONAR NIO API
-            try (final Stream<Path> stream = Files.walk(path, 1)) {
-                stream.filter(p -> !Files.isSymbolicLink(p)).forEach(p -> {
-                    try {
-                        setPermissions(p, acl, recursive, listener);
-                    } catch (final IOException e) {
-                        if (listener == null) {
-                            throw new RuntimeException(e); // NOSONAR Used in stream
-                        }
+        LOGGER.debug("Setting permissions for path: {} to {}", path, acl);
+        final AttributesUpdater updater = AttributesUpdater.permissions(acl, listener);
+        updater.update(path);
 
-                        try {
-                            listener.failed(p, e);
-                        } catch (final IOException e1) {
-                            throw new RuntimeException(e1); // NOSONAR Used in stream
-                        }
-                    }
-                });
-            } catch (final RuntimeException e) {
-                IOException cause;
-
-                if (e.getCause() instanceof final IOException e2) {
-                    cause = e2;
-                } else {
-                    cause = new IOException(e);
-                }
-
-                throw cause;
-            }
+        if (recursive && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) { // NOSONAR NIO API
+            updater.walk(path, parallelism);
         }
     }
 
@@ -1350,13 +1521,37 @@ public final class PathUtilities {
         setPermissions(path, acl, false, listener);
     }
 
+    /**
+     * Sets the permissions asynchronously using the executor, see {@link #setPermissions(Path, Set, boolean, FileProcessingListener)}.<br>
+     * The progress is reported to the listener and the operation stops at the next processed entry when the returned future is cancelled.
+     * @param path      the path
+     * @param acl       the ACL
+     * @param recursive the recursive
+     * @param listener  the listener
+     * @param executor  the executor
+     * @return the future
+     */
+    public CompletableFuture<Void> setPermissionsAsync(final Path path, final Set<AclEntry> acl, final boolean recursive, final FileProcessingListener listener, final Executor executor) {
+        return runAsync(executor, listener, tracker -> {
+            if (recursive) {
+                tracker.count(path, null);
+            } else {
+                tracker.setTotals(1, 0, null);
+            }
+
+            setPermissions(path, acl, recursive, tracker);
+
+            return null;
+        });
+    }
+
     /**
      * Sets the POSIX permission.
      * @param entry       the entry
      * @param permission  the permission
      * @param permissions the permissions
      */
-    private void setPosixPermission(final AclEntry entry, final PosixFilePermission permission, final Set<PosixFilePermission> permissions) {
+    private static void setPosixPermission(final AclEntry entry, final PosixFilePermission permission, final Set<PosixFilePermission> permissions) {
         if (AclEntryType.ALLOW.equals(entry.type())) {
             permissions.add(permission);
         } else if (AclEntryType.DENY.equals(entry.type())) {
@@ -1364,69 +1559,6 @@ public final class PathUtilities {
         }
     }
 
-    /**
-     * Sets the POSIX permissions.
-     * @param path the path
-     * @param acl  the ACL
-     * @throws IOException Signals that an I/O exception has occurred.
-     */
-    private void setPosixPermissions(final Path path, final Set<AclEntry> acl) throws IOException {
-        final String owner = getOwner(path).getName();
-        final GroupPrincipal groupPrincipal = getGroup(path);
-        final PosixFileAttributes attributes = Files.readAttributes(path, PosixFileAttributes.class);
-
-        if (attributes == null) {
-            return;
-        }
-
-        final Set<PosixFilePermission> permissions = new HashSet<>();
-
-        if (attributes.permissions() != null) {
-            permissions.addAll(attributes.permissions());
-        }
-
-        for (final AclEntry entry : acl) {
-            if (entry.principal().getName().equalsIgnoreCase(owner)) {
-                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.READ_ACL_ENTRY_PERMISSIONS).isEmpty()) {
-                    setPosixPermission(entry, PosixFilePermission.OWNER_READ, permissions);
-                }
-
-                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.WRITE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
-                    setPosixPermission(entry, PosixFilePermission.OWNER_WRITE, permissions);
-                }
-
-                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.EXECUTE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
-                    setPosixPermission(entry, PosixFilePermission.OWNER_EXECUTE, permissions);
-                }
-            } else if (entry.principal().equals(groupPrincipal)) {
-                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.READ_ACL_ENTRY_PERMISSIONS).isEmpty()) {
-                    setPosixPermission(entry, PosixFilePermission.GROUP_READ, permissions);
-                }
-
-                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.WRITE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
-                    setPosixPermission(entry, PosixFilePermission.GROUP_WRITE, permissions);
-                }
-
-                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.EXECUTE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
-                    setPosixPermission(entry, PosixFilePermission.GROUP_EXECUTE, permissions);
-                }
-            } else {
-                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.READ_ACL_ENTRY_PERMISSIONS).isEmpty()) {
-                    setPosixPermission(entry, PosixFilePermission.OTHERS_READ, permissions);
-                }
-
-                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.WRITE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
-                    setPosixPermission(entry, PosixFilePermission.OTHERS_WRITE, permissions);
-                }
-
-                if (!CollectionUtils.intersection(entry.permissions(), PathUtilities.EXECUTE_ACL_ENTRY_PERMISSIONS).isEmpty()) {
-                    setPosixPermission(entry, PosixFilePermission.OTHERS_EXECUTE, permissions);
-                }
-            }
-        }
-
-        Files.setPosixFilePermissions(path, permissions);
-    }
 
     /**
      * Sets the readable.
@@ -1454,6 +1586,52 @@ public final class PathUtilities {
         Files.setPosixFilePermissions(path, perms);
     }
 
+    /**
+     * Synchronize the target directory with the source one.
+     * @param from             the source directory
+     * @param to               the target directory
+     * @param excluded         the excluded
+     * @param includeHidden    true to include hidden
+     * @param deleteExtraneous true to delete the entries of the target which do not exist in the source
+     * @param listener         the listener
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void sync(final Path from, final Path to, final Collection<String> excluded, final boolean includeHidden, final boolean deleteExtraneous, final FileProcessingListener listener) throws IOException {
+        sync(from, to, excluded, includeHidden, deleteExtraneous, listener, 1);
+    }
+
+    /**
+     * Synchronize the target directory with the source one.<br>
+     * The files having the same size and modification time in both directories are skipped and reported as {@link FileProcessingListener#UNCHANGED}, the other ones are copied with their attributes and reported as {@link FileProcessingListener#COPIED} or {@link FileProcessingListener#REPLACED}.<br>
+     * The excluded and hidden entries of the source are never deleted from the target. When parallelism is greater than 1, the listener must be thread-safe.
+     * @param from             the source directory
+     * @param to               the target directory
+     * @param excluded         the excluded
+     * @param includeHidden    true to include hidden
+     * @param deleteExtraneous true to delete the entries of the target which do not exist in the source, reported as {@link FileProcessingListener#DELETED}
+     * @param listener         the listener
+     * @param parallelism      the maximum number of threads used to walk the directories
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void sync(final Path from, final Path to, final Collection<String> excluded, final boolean includeHidden, final boolean deleteExtraneous, final FileProcessingListener listener, final int parallelism) throws IOException {
+        assertDirectory(from);
+
+        if (!Files.exists(to)) { // NOSONAR API NIO
+            LOGGER.debug("Creating directory: {}", to);
+
+            Files.createDirectories(to.toAbsolutePath());
+        } else if (!Files.isDirectory(to)) { // NOSONAR API NIO
+            throw new IllegalArgumentException("Target exists but is not a directory: " + to);
+        }
+
+        final CopyDirectoryVisitor visitor = new CopyDirectoryVisitor(from.toAbsolutePath(), to.toAbsolutePath(), listener, StandardCopyOption.COPY_ATTRIBUTES);
+        visitor.getExcluded().addAll(excluded);
+        visitor.setIncludeHidden(includeHidden);
+        visitor.setSynchronize(true);
+        visitor.setDeleteExtraneous(deleteExtraneous);
+        walkFileTree(from.toAbsolutePath(), visitor, parallelism);
+    }
+
     /**
      * Unzip.
      * @param in       the in
@@ -1476,10 +1654,10 @@ public final class PathUtilities {
         final Predicate<Path> filter = new FilterPredicate(Collections.emptyList(), excluded, true);
 
         try (final ZipInputStream zis = new ZipInputStream(new ValidatedZipInputStream(in))) {
-            ZipEntry entry = zis.getNextEntry();
+            ZipEntry entry;
 
-            while (entry != null) {
-                final Path path = dir.resolve(entry.getName()).toAbsolutePath();
+            while ((entry = zis.getNextEntry()) != null) { // NOSONAR Assignment in condition
+                final Path path = resolveArchiveEntry(dir, entry.getName());
 
                 if (!filter.test(path)) {
                     continue;
@@ -1504,8 +1682,6 @@ public final class PathUtilities {
                 if (listener != null) {
                     listener.processed(path, FileProcessingListener.EXTRACTED);
                 }
-
-                entry = zis.getNextEntry();
             }
         }
     }
@@ -1518,6 +1694,20 @@ public final class PathUtilities {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public void unzip(final Path file, final Path dir, final Collection<String> excluded, final FileProcessingListener listener) throws IOException {
+        unzip(file, dir, excluded, listener, 1);
+    }
+
+    /**
+     * Unzip.<br>
+     * When parallelism is greater than 1, the central directory of the file is read and the entries are inflated concurrently, see {@link ParallelZipExtractor}.
+     * @param file        the file
+     * @param dir         the directory
+     * @param excluded    the set of excluded files or directories
+     * @param listener    the listener
+     * @param parallelism the maximum number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void unzip(final Path file, final Path dir, final Collection<String> excluded, final FileProcessingListener listener, final int parallelism) throws IOException {
         assertReadable(file);
         assertFile(file);
 
@@ -1525,19 +1715,82 @@ public final class PathUtilities {
             throw new IOException(file.toString() + " is not a valid ZIP file.");
         }
 
+        if (parallelism > 1) {
+            new ParallelZipExtractor(parallelism).extract(file, dir, excluded, listener);
+
+            return;
+        }
+
         try (final InputStream in = Files.newInputStream(file)) {
             unzip(in, dir, excluded, listener);
         }
     }
 
     /**
-     * Walk.
+     * Unzip asynchronously using the executor, see {@link #unzip(Path, Path, Collection, FileProcessingListener)}.<br>
+     * The totals are read from the central directory, the progress is reported to the listener and the operation stops at the next extracted entry when the returned future is cancelled, the entries already extracted being kept.
+     * @param file     the file
+     * @param dir      the directory
+     * @param excluded the set of excluded files or directories
+     * @param listener the listener
+     * @param executor the executor
+     * @return the future
+     */
+    public CompletableFuture<Void> unzipAsync(final Path file, final Path dir, final Collection<String> excluded, final FileProcessingListener listener, final Executor executor) {
+        return runAsync(executor, listener, tracker -> {
+            long files = 0;
+            long bytes = 0;
+
+            try (ZipFile zipFile = new ZipFile(file.toFile())) {
+                final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+                while (entries.hasMoreElements()) {
+                    final ZipEntry entry = entries.nextElement();
+                    files++;
+                    bytes += Math.max(0, entry.getSize());
+                }
+            }
+
+            tracker.setTotals(files, bytes, UnaryOperator.identity());
+            unzip(file, dir, excluded, tracker);
+
+            return null;
+        });
+    }
+
+    /**
+     * Walk.<br>
+     * When the filter is built from wildcard patterns, the directories whose descendants are all excluded are not traversed.
      * @param dir      the directory
      * @param filter   the filter
      * @param consumer the consumer
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public void walk(final Path dir, final Predicate<Path> filter, final Consumer<Path> consumer) throws IOException {
+        if (filter instanceof final FilterPredicate predicate) {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path path, final BasicFileAttributes attrs) {
+                    if (predicate.test(path)) {
+                        consumer.accept(path);
+                    }
+
+                    return !path.equals(dir) && predicate.isSubtreeExcluded(path) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path path, final BasicFileAttributes attrs) {
+                    if (predicate.test(path)) {
+                        consumer.accept(path);
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            return;
+        }
+
         try (Stream<Path> pathStream = Files.walk(dir).filter(filter)) {
             pathStream.forEach(consumer::accept);
         }
@@ -1558,6 +1811,21 @@ public final class PathUtilities {
         }
     }
 
+    /**
+     * Walk the files tree sequentially or using a {@link ParallelFileTreeWalker} when parallelism is greater than 1.
+     * @param path        the path
+     * @param visitor     the visitor
+     * @param parallelism the maximum number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void walkFileTree(final Path path, final FileVisitor<Path> visitor, final int parallelism) throws IOException {
+        if (parallelism > 1) {
+            new ParallelFileTreeWalker(parallelism).walk(path, visitor);
+        } else {
+            Files.walkFileTree(path, visitor);
+        }
+    }
+
     /**
      * Zip.
      * @param path          the directory or file
@@ -1665,6 +1933,52 @@ public final class PathUtilities {
         }
     }
 
+    /**
+     * Zip using several threads.<br>
+     * The files are split in chunks compressed concurrently and the entries are written in the order of the walk, see {@link ParallelZipWriter}. When parallelism is lower or equal to 1, the files are compressed by the calling thread.
+     * @param path          the directory or file
+     * @param out           the output stream
+     * @param level         the level from 0 (store) to 9
+     * @param excluded      the set of excluded files or directories
+     * @param includeHidden true to include hidden directories and files
+     * @param listener      the listener
+     * @param parallelism   the maximum number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void zip(final Path path, final OutputStream out, final byte level, final Collection<String> excluded, final boolean includeHidden, final FileProcessingListener listener, final int parallelism) throws IOException {
+        if (parallelism <= 1) {
+            zip(path, out, level, excluded, includeHidden, listener);
+
+            return;
+        }
+
+        assertReadable(path);
+
+        final ParallelZipWriter writer = new ParallelZipWriter(out, level, parallelism, listener);
+
+        try {
+            if (Files.isRegularFile(path)) {
+                writer.add(path.getFileName().toString(), path);
+            } else {
+                walk(path, new FilterPredicate(Collections.emptyList(), excluded, includeHidden), p -> {
+                    if (!path.equals(p) && Files.isRegularFile(p)) {
+                        try {
+                            writer.add(path.relativize(p).toString(), p);
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            }
+
+            writer.close();
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            writer.abort();
+        }
+    }
+
     /**
      * Zip.
      * @param path          the directory or file
@@ -1718,4 +2032,25 @@ public final class PathUtilities {
     public void zip(final Path path, final Path file, final Collection<String> excluded, final boolean includeHidden) throws IOException {
         zip(path, file, (byte) 1, excluded, includeHidden, new FileProcessingAdapter());
     }
+
+    /**
+     * Zip asynchronously using the executor, see {@link #zip(Path, Path, byte, Collection, boolean, FileProcessingListener)}.<br>
+     * The progress is reported to the listener and the operation stops at the next compressed entry when the returned future is cancelled, the file being incomplete.
+     * @param path          the directory or file
+     * @param file          the file
+     * @param level         the level from 0 (store) to 9
+     * @param excluded      the set of excluded files or directories
+     * @param includeHidden true to include hidden directories and files
+     * @param listener      the listener
+     * @param executor      the executor
+     * @return the future
+     */
+    public CompletableFuture<Void> zipAsync(final Path path, final Path file, final byte level, final Collection<String> excluded, final boolean includeHidden, final FileProcessingListener listener, final Executor executor) {
+        return runAsync(executor, listener, tracker -> {
+            tracker.count(path, UnaryOperator.identity());
+            zip(path, file, level, excluded, includeHidden, tracker);
+
+            return null;
+        });
+    }
 }
@@ -0,0 +1,400 @@
+package org.infodavid.commons.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.apache.commons.compress.compressors.xz.XZUtils;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+
+/**
+ * The Class PipelinedCompressorOutputStream.<br>
+ * The stream accumulates the written data in blocks which are compressed by a separate stage so that the writing thread, typically walking a files tree and writing the archive entries, is not slowed down by the compression.<br>
+ * Using several threads, the gzip blocks are deflated concurrently like in {@link ParallelZipWriter} and assembled in order as a single gzip member, the other formats are compressed by a single thread.<br>
+ * The xz and zstd formats require the optional dependencies of Apache Commons Compress, org.tukaani:xz and com.github.luben:zstd-jni.<br>
+ * The number of blocks waiting for the compression is bounded, the underlying stream is closed when this stream is closed.<br>
+ * Any failure of the compressing stage, including the runtime exceptions of the compressors, is reported by the next write or by the close and the writing thread is never blocked by a compressing thread which has ended.
+ */
+final class PipelinedCompressorOutputStream extends OutputStream {
+
+    /**
+     * The Class Block.
+     */
+    private static class Block {
+
+        /** The data. */
+        private final byte[] data;
+
+        /** The compressed chunk, if compressed concurrently. */
+        private final Future<ParallelZipWriter.Chunk> future;
+
+        /** The length. */
+        private final int length;
+
+        /**
+         * Instantiates a new block.
+         * @param data   the data
+         * @param length the length
+         * @param future the compressed chunk or null
+         */
+        Block(final byte[] data, final int length, final Future<ParallelZipWriter.Chunk> future) {
+            this.data = data;
+            this.length = length;
+            this.future = future;
+        }
+    }
+
+    /** The Constant END. */
+    private static final Block END = new Block(new byte[0], 0, null);
+
+    /** The Constant GZIP_HEADER. */
+    private static final byte[] GZIP_HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    /** The Constant PUT_TIMEOUT, the delay in milliseconds after which the writing thread checks if the compressing thread is still alive. */
+    private static final long PUT_TIMEOUT = 100;
+
+    /**
+     * Creates the compressor output stream used by the single threaded stage.
+     * @param out        the output stream
+     * @param compressor the compressor name
+     * @param level      the level
+     * @return the output stream
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static OutputStream newCompressorOutputStream(final OutputStream out, final String compressor, final int level) throws IOException {
+        if (CompressorStreamFactory.GZIP.equals(compressor)) {
+            final GzipParameters parameters = new GzipParameters();
+            parameters.setCompressionLevel(level);
+
+            return new GzipCompressorOutputStream(out, parameters);
+        }
+
+        if (CompressorStreamFactory.XZ.equals(compressor)) {
+            if (!XZUtils.isXZCompressionAvailable()) {
+                throw new IOException("XZ compression requires org.tukaani:xz in the classpath");
+            }
+
+            return new XZCompressorOutputStream(out, level);
+        }
+
+        if (CompressorStreamFactory.ZSTANDARD.equals(compressor)) {
+            if (!ZstdUtils.isZstdCompressionAvailable()) {
+                throw new IOException("Zstandard compression requires com.github.luben:zstd-jni in the classpath");
+            }
+
+            return new ZstdCompressorOutputStream(out, level);
+        }
+
+        throw new IllegalArgumentException("Compressor not supported: " + compressor);
+    }
+
+    /**
+     * Write the integer using the little endian order.
+     * @param out   the output stream
+     * @param value the value
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static void writeInt(final OutputStream out, final long value) throws IOException {
+        out.write((int) (value & 0xff));
+        out.write((int) (value >> 8 & 0xff));
+        out.write((int) (value >> 16 & 0xff));
+        out.write((int) (value >> 24 & 0xff));
+    }
+
+    /** The current block. */
+    private byte[] block;
+
+    /** The block size. */
+    private final int blockSize;
+
+    /** The closed flag. */
+    private boolean closed = false;
+
+    /** The compressing thread writing the output stream. */
+    private final Thread consumer;
+
+    /** The number of bytes of the current block. */
+    private int count = 0;
+
+    /** The executor used to deflate the gzip blocks concurrently or null. */
+    private final ExecutorService executor;
+
+    /** The failure of the compressing thread. */
+    private volatile IOException failure = null;
+
+    /** The level. */
+    private final int level;
+
+    /** The previous block, used as dictionary. */
+    private byte[] previous = null;
+
+    /** The blocks waiting for the compression. */
+    private final BlockingQueue<Block> queue;
+
+    /** The flag indicating if the failure has been thrown to the writing thread. */
+    private boolean reported = false;
+
+    /**
+     * Instantiates a new stream.
+     * @param out        the output stream
+     * @param compressor the compressor name, see {@link CompressorStreamFactory#GZIP}, {@link CompressorStreamFactory#XZ} and {@link CompressorStreamFactory#ZSTANDARD}
+     * @param level      the level
+     * @param threads    the number of threads used to compress the data
+     * @param blockSize  the size of the blocks
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    PipelinedCompressorOutputStream(final OutputStream out, final String compressor, final int level, final int threads, final int blockSize) throws IOException {
+        if (blockSize < ParallelZipWriter.DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Block size must be greater or equal to: " + ParallelZipWriter.DICTIONARY_SIZE);
+        }
+
+        this.blockSize = blockSize;
+        this.level = level;
+        block = new byte[blockSize];
+        queue = new ArrayBlockingQueue<>(Math.max(2, threads * 2));
+
+        if (threads > 1 && CompressorStreamFactory.GZIP.equals(compressor)) {
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                final Thread thread = new Thread(r, "gzip-compressor");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+            consumer = new Thread(() -> consume(out, null), "gzip-writer");
+        } else {
+            executor = null;
+            final OutputStream compressorOut = newCompressorOutputStream(out, compressor, level);
+            consumer = new Thread(() -> consume(out, compressorOut), compressor + "-compressor");
+        }
+
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Check if the compressing thread has failed.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            reported = true;
+
+            throw failure;
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.io.OutputStream#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            try {
+                if (failure == null) {
+                    dispatch(true);
+                }
+            } finally {
+                // the compressing thread discards the blocks after a failure and always ends on the end marker
+                put(END);
+                consumer.join();
+            }
+        } catch (final InterruptedException e) {
+            consumer.interrupt();
+            Thread.currentThread().interrupt();
+
+            throw (IOException) new InterruptedIOException("Interrupted while compressing").initCause(e);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        // a failure already thrown by a write is not thrown again
+        if (!reported) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Take the blocks and write them compressed to the output stream.<br>
+     * After a failure, the blocks are discarded until the end of the stream so that the writing thread is never blocked.
+     * @param out           the output stream
+     * @param compressorOut the compressor output stream or null if the blocks are deflated concurrently
+     */
+    private void consume(final OutputStream out, final OutputStream compressorOut) {
+        long crc = 0;
+        long size = 0;
+
+        try {
+            if (compressorOut == null) {
+                out.write(GZIP_HEADER);
+            }
+
+            Block item;
+
+            while ((item = queue.take()) != END) { // NOSONAR Assignment in condition
+                if (failure != null) {
+                    if (item.future != null) {
+                        item.future.cancel(true);
+                    }
+
+                    continue;
+                }
+
+                try {
+                    if (compressorOut == null) {
+                        final ParallelZipWriter.Chunk chunk = item.future.get();
+                        crc = size == 0 ? chunk.getCrc() : ParallelZipWriter.combine(crc, chunk.getCrc(), chunk.getLength());
+                        size += chunk.getLength();
+                        out.write(chunk.getData());
+                    } else {
+                        compressorOut.write(item.data, 0, item.length);
+                    }
+                } catch (final IOException e) {
+                    failure = e;
+                } catch (final ExecutionException e) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                } catch (final RuntimeException e) {
+                    // including the cancellation of the concurrent compression
+                    failure = new IOException(e);
+                }
+            }
+
+            if (failure != null) {
+                return;
+            }
+
+            if (compressorOut == null) {
+                writeInt(out, crc);
+                writeInt(out, size);
+                out.close();
+            } else {
+                compressorOut.close();
+            }
+        } catch (final IOException e) {
+            failure = e;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = (IOException) new InterruptedIOException("Interrupted while compressing").initCause(e);
+        } catch (final Throwable e) { // NOSONAR Reported to the writing thread
+            failure = new IOException(e);
+        }
+    }
+
+    /**
+     * Send the current block to the compressing stage.
+     * @param last true if last block of the stream
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void dispatch(final boolean last) throws IOException {
+        checkFailure();
+
+        if (count == 0 && !(last && executor != null)) {
+            return;
+        }
+
+        final byte[] data = block;
+        final int length = count;
+        Future<ParallelZipWriter.Chunk> future = null;
+
+        if (executor != null) {
+            final byte[] dictionary = previous == null ? null : Arrays.copyOfRange(previous, previous.length - ParallelZipWriter.DICTIONARY_SIZE, previous.length);
+            future = executor.submit(() -> {
+                final CRC32 crc = new CRC32();
+                crc.update(data, 0, length);
+
+                return new ParallelZipWriter.Chunk(crc.getValue(), length, ParallelZipWriter.deflate(data, length, dictionary, level, last));
+            });
+            previous = data;
+        }
+
+        put(new Block(data, length, future));
+
+        if (!last) {
+            block = new byte[blockSize];
+            count = 0;
+        }
+    }
+
+    /**
+     * Put the block in the queue, waiting for a free place as long as the compressing thread is alive.
+     * @param item the block
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private void put(final Block item) throws IOException {
+        try {
+            while (!queue.offer(item, PUT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                if (!consumer.isAlive()) {
+                    checkFailure();
+
+                    throw new IOException("Compressing thread ended");
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw (IOException) new InterruptedIOException("Interrupted while compressing").initCause(e);
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.io.OutputStream#write(byte[], int, int)
+     */
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        int offset = off;
+        int remaining = len;
+
+        while (remaining > 0) {
+            final int length = Math.min(remaining, blockSize - count);
+            System.arraycopy(b, offset, block, count, length);
+            count += length;
+            offset += length;
+            remaining -= length;
+
+            if (count == blockSize) {
+                dispatch(false);
+            }
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see java.io.OutputStream#write(int)
+     */
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] {
+                (byte) b
+        }, 0, 1);
+    }
+}
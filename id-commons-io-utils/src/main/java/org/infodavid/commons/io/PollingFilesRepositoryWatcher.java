@@ -0,0 +1,503 @@
+package org.infodavid.commons.io;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Class PollingFilesRepositoryWatcher.<br>
+ * The watcher is used when the {@link java.nio.file.WatchService} does not report the modifications, like on NFS or CIFS mounts. It periodically compares the watched directories with a snapshot of their entries (type, size, modification time and file key) and dispatches the differences like {@link FilesRepositoryWatcher}.<br>
+ * The creation, deletion and renaming of an entry modify its directory, so only the directories whose modification time changed are listed again, the attributes of the known files of the other directories are read to detect the modifications of their content.<br>
+ * A modification time too close to the scan is not trusted, because of the granularity of the time of the file systems, and the directory is listed again on the next scan.<br>
+ * The scans are scheduled on the executor with a fixed delay and, in recursive mode when the parallelism is greater than 1, the directories are scanned by the threads of a fork/join pool.
+ */
+public class PollingFilesRepositoryWatcher extends FilesRepositoryWatcher {
+
+    /**
+     * The Class DirectorySnapshot.
+     */
+    private static final class DirectorySnapshot {
+
+        /** The entries by name. */
+        private final Map<Path, EntrySnapshot> entries;
+
+        /** The modification time in milliseconds or -1 if the directory must be listed on the next scan. */
+        private final long modified;
+
+        /**
+         * Instantiates a new snapshot.
+         * @param modified the modification time in milliseconds or -1 if the directory must be listed on the next scan
+         * @param entries  the entries by name
+         */
+        private DirectorySnapshot(final long modified, final Map<Path, EntrySnapshot> entries) {
+            this.modified = modified;
+            this.entries = entries;
+        }
+    }
+
+    /**
+     * The Class EntrySnapshot.
+     */
+    private static final class EntrySnapshot {
+
+        /** The directory flag. */
+        private final boolean directory;
+
+        /** The file key or null if not supported. */
+        private final Object fileKey;
+
+        /** The modification time in milliseconds. */
+        private final long modified;
+
+        /** The size. */
+        private final long size;
+
+        /**
+         * Instantiates a new snapshot.
+         * @param attrs the attributes
+         */
+        private EntrySnapshot(final BasicFileAttributes attrs) {
+            directory = attrs.isDirectory();
+            fileKey = attrs.fileKey();
+            modified = attrs.lastModifiedTime().toMillis();
+            size = attrs.size();
+        }
+
+        /**
+         * Checks if the content of the file differs from the given snapshot, the directories are only compared by their type.
+         * @param other the other snapshot
+         * @return true, if modified
+         */
+        private boolean isModified(final EntrySnapshot other) {
+            if (directory) {
+                return false;
+            }
+
+            return modified != other.modified || size != other.size || !Objects.equals(fileKey, other.fileKey);
+        }
+    }
+
+    /** The Constant DEFAULT_INTERVAL, the default delay between two scans in milliseconds. */
+    public static final long DEFAULT_INTERVAL = 5000;
+
+    /** The Constant DEFAULT_PARALLELISM, the default number of directories scanned concurrently. */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /** The Constant NETWORK_FILE_STORE_TYPES, the types of the file stores not reporting the modifications to the watch service. */
+    private static final Set<String> NETWORK_FILE_STORE_TYPES = Set.of("9p", "afs", "cifs", "davfs", "fuse.sshfs", "ncpfs", "nfs", "nfs4", "smb", "smb2", "smb3", "smbfs");
+
+    /** The Constant TIME_GRANULARITY, the coarsest granularity of the modification times of the file systems in milliseconds. */
+    private static final long TIME_GRANULARITY = 2000;
+
+    /**
+     * Checks if the directory is on a file store not reporting the modifications to the watch service and must be polled.
+     * @param dir the directory
+     * @return true, if the polling is required
+     */
+    public static boolean isPollingRequired(final Path dir) {
+        try {
+            return NETWORK_FILE_STORE_TYPES.contains(Files.getFileStore(dir).type().toLowerCase(Locale.ROOT));
+        } catch (@SuppressWarnings("unused") final IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the attributes of the entry.
+     * @param file the file
+     * @return the attributes or null if the entry does not exist anymore
+     */
+    private static BasicFileAttributes readAttributes(final Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (@SuppressWarnings("unused") final IOException e) {
+            return null;
+        }
+    }
+
+    /** The scheduled scan. */
+    private volatile ScheduledFuture<?> future = null;
+
+    /** The delay between two scans in milliseconds. */
+    private final long interval;
+
+    /** The number of directories scanned concurrently. */
+    private final int parallelism;
+
+    /** The pool used to scan the directories concurrently, null if sequential. */
+    private volatile ExecutorService pool = null;
+
+    /** The snapshots of the scanned directories. */
+    private final Map<Path, DirectorySnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates a new watcher using the default interval and parallelism.
+     * @param path     the path
+     * @param executor the executor
+     */
+    public PollingFilesRepositoryWatcher(final Path path, final ScheduledExecutorService executor) {
+        this(path, executor, false, DEFAULT_INTERVAL, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Instantiates a new watcher.
+     * @param path        the path
+     * @param executor    the executor
+     * @param recursive   true to watch the subdirectories
+     * @param interval    the delay between two scans in milliseconds
+     * @param parallelism the number of directories scanned concurrently
+     */
+    public PollingFilesRepositoryWatcher(final Path path, final ScheduledExecutorService executor, final boolean recursive, final long interval, final int parallelism) {
+        super(path, executor, recursive);
+        this.interval = Math.max(1, interval);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Compare the entries of the directory with its snapshot.
+     * @param dir      the directory
+     * @param previous the previous entries by name
+     * @param current  the current entries by name
+     * @param start    the start time of the scan
+     * @param events   the events
+     */
+    private void diff(final Path dir, final Map<Path, EntrySnapshot> previous, final Map<Path, EntrySnapshot> current, final long start, final Collection<EventEntry> events) {
+        for (final Entry<Path, EntrySnapshot> entry : current.entrySet()) {
+            final EntrySnapshot snapshot = previous.get(entry.getKey());
+            final Path file = dir.resolve(entry.getKey());
+
+            if (snapshot == null || snapshot.directory != entry.getValue().directory) {
+                if (snapshot != null) {
+                    removeSubtree(file, events);
+                }
+
+                addEvent(events, file, StandardWatchEventKinds.ENTRY_CREATE);
+
+                if (isRecursive() && entry.getValue().directory) {
+                    register(file, start, events);
+                }
+            } else if (entry.getValue().isModified(snapshot)) {
+                addEvent(events, file, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+
+        for (final Entry<Path, EntrySnapshot> entry : previous.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                final Path file = dir.resolve(entry.getKey());
+                addEvent(events, file, StandardWatchEventKinds.ENTRY_DELETE);
+
+                if (entry.getValue().directory) {
+                    removeSubtree(file, events);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the delay between two scans.
+     * @return the delay in milliseconds
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Gets the number of directories scanned concurrently.
+     * @return the parallelism
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Gets the modification time to store in the snapshot.
+     * @param attrs the attributes of the directory
+     * @param start the start time of the scan
+     * @return the modification time or -1 if it is too close to the scan to be trusted
+     */
+    private static long getModified(final BasicFileAttributes attrs, final long start) {
+        final long result = attrs.lastModifiedTime().toMillis();
+
+        return result >= start - TIME_GRANULARITY ? -1 : result;
+    }
+
+    /**
+     * List the entries of the directory.
+     * @param dir the directory
+     * @return the entries by name
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    private static Map<Path, EntrySnapshot> list(final Path dir) throws IOException {
+        final Map<Path, EntrySnapshot> result = new HashMap<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (final Path file : stream) {
+                final BasicFileAttributes attrs = readAttributes(file);
+
+                if (attrs != null) {
+                    result.put(file.getFileName(), new EntrySnapshot(attrs));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Register the directory and its subdirectories in recursive mode.
+     * @param dir    the directory
+     * @param start  the start time of the scan
+     * @param events the events to dispatch for the entries found in the directories or null on initialization
+     */
+    private void register(final Path dir, final long start, final Collection<EventEntry> events) {
+        if (!isRecursive()) {
+            final BasicFileAttributes attrs = readAttributes(dir);
+
+            if (attrs != null) {
+                registerDirectory(dir, attrs, start, events);
+            }
+
+            return;
+        }
+
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path d, final BasicFileAttributes attrs) {
+                    registerDirectory(d, attrs, start, events);
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                    LOGGER.debug("Cannot visit: {}", file, e);
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            LOGGER.warn("Cannot register directory: " + dir, e); // NOSONAR No format when using Throwable
+        }
+    }
+
+    /**
+     * Store the snapshot of the directory.
+     * @param dir    the directory
+     * @param attrs  the attributes of the directory
+     * @param start  the start time of the scan
+     * @param events the events to dispatch for the entries found in the directory or null on initialization
+     */
+    private void registerDirectory(final Path dir, final BasicFileAttributes attrs, final long start, final Collection<EventEntry> events) {
+        final Map<Path, EntrySnapshot> entries;
+
+        try {
+            entries = list(dir);
+        } catch (final IOException e) {
+            LOGGER.debug("Cannot list directory: {}", dir, e);
+
+            return;
+        }
+
+        snapshots.put(dir, new DirectorySnapshot(getModified(attrs, start), entries));
+
+        if (events != null) {
+            entries.keySet().forEach(n -> addEvent(events, dir.resolve(n), StandardWatchEventKinds.ENTRY_CREATE));
+        }
+    }
+
+    /**
+     * Remove the snapshots of the directory and its subdirectories and dispatch the deletion of their entries.
+     * @param dir    the directory
+     * @param events the events
+     */
+    private void removeSubtree(final Path dir, final Collection<EventEntry> events) {
+        for (final Path d : new ArrayList<>(snapshots.keySet())) {
+            if (d.startsWith(dir)) {
+                final DirectorySnapshot snapshot = snapshots.remove(d);
+
+                if (snapshot != null) {
+                    snapshot.entries.keySet().forEach(n -> addEvent(events, d.resolve(n), StandardWatchEventKinds.ENTRY_DELETE));
+                }
+            }
+        }
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FilesRepositoryWatcher#run()
+     */
+    @Override
+    public void run() {
+        LOGGER.debug("Initializing polling of directory: {}", getPath());
+        register(getPath(), System.currentTimeMillis(), null);
+
+        if (parallelism > 1 && isRecursive()) {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        future = getExecutor().scheduleWithFixedDelay(this::scan, interval, interval, TimeUnit.MILLISECONDS);
+        LOGGER.debug("Polling directory: {}, scanned directories: {}", getPath(), String.valueOf(snapshots.size()));
+    }
+
+    /**
+     * Scan the directories and dispatch the differences with their snapshots.
+     */
+    void scan() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final long start = System.currentTimeMillis();
+        final List<Path> dirs = new ArrayList<>(snapshots.keySet());
+        final List<EventEntry> events = new ArrayList<>();
+        // the parents are scanned before their children
+        Collections.sort(dirs);
+
+        try {
+            if (pool == null) {
+                for (final Path dir : dirs) {
+                    events.addAll(scanDirectory(dir, start));
+                }
+            } else {
+                final List<Callable<List<EventEntry>>> tasks = new ArrayList<>(dirs.size());
+
+                for (final Path dir : dirs) {
+                    tasks.add(() -> scanDirectory(dir, start));
+                }
+
+                for (final Future<List<EventEntry>> result : pool.invokeAll(tasks)) {
+                    events.addAll(result.get());
+                }
+            }
+        } catch (@SuppressWarnings("unused") final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return;
+        } catch (final ExecutionException | RuntimeException e) {
+            // the scheduled scans are cancelled if an exception is raised
+            LOGGER.warn("Cannot scan directory: " + getPath(), e); // NOSONAR No format when using Throwable
+        }
+
+        if (isEnabled()) {
+            enqueue(events);
+        }
+    }
+
+    /**
+     * Scan the directory.
+     * @param dir   the directory
+     * @param start the start time of the scan
+     * @return the events
+     */
+    private List<EventEntry> scanDirectory(final Path dir, final long start) {
+        final DirectorySnapshot previous = snapshots.get(dir);
+
+        if (previous == null) {
+            // removed with its parent
+            return Collections.emptyList();
+        }
+
+        final List<EventEntry> events = new ArrayList<>();
+        final BasicFileAttributes attrs = readAttributes(dir);
+
+        if (attrs == null || !attrs.isDirectory()) {
+            diff(dir, previous.entries, Collections.emptyMap(), start, events);
+
+            if (dir.equals(getPath())) {
+                snapshots.put(dir, new DirectorySnapshot(-1, Collections.emptyMap()));
+            } else {
+                snapshots.remove(dir);
+            }
+
+            return events;
+        }
+
+        if (previous.modified != -1 && previous.modified == attrs.lastModifiedTime().toMillis()) {
+            // the names are unchanged, only the attributes of the files are compared
+            final Map<Path, EntrySnapshot> current = new HashMap<>(previous.entries);
+            boolean listed = true;
+
+            for (final Entry<Path, EntrySnapshot> entry : previous.entries.entrySet()) {
+                if (!entry.getValue().directory) {
+                    final BasicFileAttributes fileAttrs = readAttributes(dir.resolve(entry.getKey()));
+
+                    if (fileAttrs == null) {
+                        listed = false;
+
+                        break;
+                    }
+
+                    current.put(entry.getKey(), new EntrySnapshot(fileAttrs));
+                }
+            }
+
+            if (listed) {
+                diff(dir, previous.entries, current, start, events);
+                snapshots.put(dir, new DirectorySnapshot(getModified(attrs, start), current));
+
+                return events;
+            }
+        }
+
+        try {
+            final Map<Path, EntrySnapshot> current = list(dir);
+            diff(dir, previous.entries, current, start, events);
+            snapshots.put(dir, new DirectorySnapshot(getModified(attrs, start), current));
+        } catch (final IOException e) {
+            LOGGER.debug("Cannot list directory: {}", dir, e);
+        }
+
+        return events;
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FilesRepositoryWatcher#stop()
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        final ScheduledFuture<?> scheduled = future;
+
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+
+        super.stop();
+        snapshots.clear();
+    }
+}
@@ -0,0 +1,176 @@
+package org.infodavid.commons.io;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * The Class ProgressTracker.<br>
+ * The tracker is passed as listener to the operations run asynchronously by {@link PathUtilities}, it forwards the notifications to the listener of the caller and reports the progress using {@link FileProcessingListener#progress(long, long, long, long)}.<br>
+ * The entries processed are counted from the notifications, except the skipped ones, and the bytes are read from the sizes of the regular files when the operation transfers data.<br>
+ * The cancellation is cooperative: the next notification after the cancellation throws a {@link CancellationException} which stops the walk of the tree.
+ */
+final class ProgressTracker implements FileProcessingListener {
+
+    /** The bytes processed. */
+    private final AtomicLong bytes = new AtomicLong();
+
+    /** The cancelled flag supplier. */
+    private final BooleanSupplier cancelled;
+
+    /** The listener of the caller. */
+    private final FileProcessingListener delegate;
+
+    /** The entries processed. */
+    private final AtomicLong files = new AtomicLong();
+
+    /** The function returning the regular file holding the data of a notified path or null if the bytes are not tracked. */
+    private UnaryOperator<Path> measured = null;
+
+    /** The total number of bytes. */
+    private volatile long totalBytes = 0;
+
+    /** The total number of entries. */
+    private volatile long totalFiles = 0;
+
+    /**
+     * Instantiates a new tracker.
+     * @param delegate  the listener of the caller or null
+     * @param cancelled the cancelled flag supplier
+     */
+    ProgressTracker(final FileProcessingListener delegate, final BooleanSupplier cancelled) {
+        this.delegate = delegate;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the operation has been cancelled.
+     */
+    void checkCancelled() {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("Operation cancelled");
+        }
+    }
+
+    /**
+     * Report the totals as processed, when the operation is completed.
+     */
+    void complete() {
+        if (delegate != null) {
+            delegate.progress(totalFiles, totalFiles, totalBytes, totalBytes);
+        }
+    }
+
+    /**
+     * Count the entries of the tree and the size of its regular files to initialize the totals.
+     * @param root     the root of the tree
+     * @param measured the function returning the regular file holding the data of a notified path or null if the bytes are not tracked
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    void count(final Path root, final UnaryOperator<Path> measured) throws IOException {
+        final long[] totals = new long[2];
+
+        if (Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+                    checkCancelled();
+                    totals[0]++;
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                    totals[0]++;
+
+                    if (attrs.isRegularFile()) {
+                        totals[1] += attrs.size();
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+                    totals[0]++;
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        setTotals(totals[0], measured == null ? 0 : totals[1], measured);
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileProcessingListener#failed(java.nio.file.Path, java.io.IOException)
+     */
+    @Override
+    public void failed(final Path path, final IOException e) throws IOException {
+        checkCancelled();
+
+        if (delegate == null) {
+            throw e;
+        }
+
+        delegate.failed(path, e);
+    }
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.FileProcessingListener#processed(java.nio.file.Path, byte)
+     */
+    @Override
+    public void processed(final Path path, final byte action) {
+        checkCancelled();
+
+        if (delegate != null) {
+            delegate.processed(path, action);
+        }
+
+        if (action == SKIPPED) {
+            return;
+        }
+
+        final long processedFiles = Math.min(files.incrementAndGet(), totalFiles);
+        long processedBytes = bytes.get();
+
+        if (measured != null) {
+            final Path file = measured.apply(path);
+
+            try {
+                if (Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+                    processedBytes = bytes.addAndGet(Files.size(file));
+                }
+            } catch (@SuppressWarnings("unused") final IOException e) {
+                // size is not available, progress is only based on the entries
+            }
+        }
+
+        if (delegate != null) {
+            delegate.progress(processedFiles, totalFiles, Math.min(processedBytes, totalBytes), totalBytes);
+        }
+    }
+
+    /**
+     * Sets the totals.
+     * @param files    the total number of entries
+     * @param bytes    the total number of bytes
+     * @param measured the function returning the regular file holding the data of a notified path or null if the bytes are not tracked
+     */
+    void setTotals(final long files, final long bytes, final UnaryOperator<Path> measured) {
+        totalFiles = files;
+        totalBytes = bytes;
+        this.measured = measured;
+    }
+}
@@ -9,16 +9,65 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
- * The Class RegexFileVisitor.
+ * The Class RegexFileVisitor.<br>
+ * The patterns sharing the same flags are combined into a single alternation so that each file name is matched once.
  */
 public class RegexFileVisitor extends SimpleFileVisitor<Path> {
 
+    /** The Constant BACK_REFERENCE. */
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(\\d|k<)");
+
+    /**
+     * Combine the patterns into a single alternation.
+     * @param patterns the patterns
+     * @return the combined pattern or null if the patterns do not share the same flags or cannot be combined
+     */
+    private static Pattern combine(final Collection<Pattern> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return null;
+        }
+
+        final Iterator<Pattern> iterator = patterns.iterator();
+        final Pattern first = iterator.next();
+
+        if (!iterator.hasNext()) {
+            return first;
+        }
+
+        final StringBuilder buffer = new StringBuilder();
+
+        for (final Pattern pattern : patterns) {
+            // the back references would be shifted by the groups of the previous patterns
+            if (pattern.flags() != first.flags() || BACK_REFERENCE.matcher(pattern.pattern()).find()) {
+                return null;
+            }
+
+            if (buffer.length() > 0) {
+                buffer.append('|');
+            }
+
+            buffer.append("(?:").append(pattern.pattern()).append(')');
+        }
+
+        try {
+            return Pattern.compile(buffer.toString(), first.flags());
+        } catch (@SuppressWarnings("unused") final PatternSyntaxException e) {
+            // like the named groups defined by several patterns
+            return null;
+        }
+    }
+
+    /** The combined pattern or null if the patterns are matched one by one. */
+    private final Pattern combined;
+
     /** The matching files. */
     private final List<Path> files = new LinkedList<>();
 
@@ -31,6 +80,7 @@ public class RegexFileVisitor extends SimpleFileVisitor<Path> {
      */
     public RegexFileVisitor(final Pattern pattern) {
         patterns = Collections.singleton(pattern);
+        combined = pattern;
     }
 
     /**
@@ -39,6 +89,7 @@ public class RegexFileVisitor extends SimpleFileVisitor<Path> {
      */
     public RegexFileVisitor(final Collection<Pattern> patterns) {
         this.patterns = patterns;
+        combined = combine(patterns);
     }
 
     /**
@@ -51,6 +102,8 @@ public class RegexFileVisitor extends SimpleFileVisitor<Path> {
         for (final String expr : expressions) {
             patterns.add(Pattern.compile(expr, Pattern.CASE_INSENSITIVE));
         }
+
+        combined = combine(patterns);
     }
 
     /**
@@ -68,12 +121,24 @@ public class RegexFileVisitor extends SimpleFileVisitor<Path> {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     public boolean accept(final Path file) throws IOException {
-        if (Files.isDirectory(file)) {
-            return true;
+        // the name is matched first so that the file system is only accessed for the names not matching
+        return matches(file) || Files.isDirectory(file);
+    }
+
+    /**
+     * Checks if the name of the file matches one of the patterns.
+     * @param file the file
+     * @return true, if successful
+     */
+    private boolean matches(final Path file) {
+        final String name = file.getFileName().toString();
+
+        if (combined != null) {
+            return combined.matcher(name).matches();
         }
 
         for (final Pattern pattern : patterns) {
-            if (pattern.matcher(file.getFileName().toString()).matches()) {
+            if (pattern.matcher(name).matches()) {
                 return true;
             }
         }
@@ -0,0 +1,62 @@
+package org.infodavid.commons.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.util.Date;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Class URLConnectionContentFetcher.<br>
+ * Conditional requests (If-None-Match and If-Modified-Since) are used on HTTP connections so that an unmodified content only costs a header round-trip.
+ */
+class URLConnectionContentFetcher implements ContentFetcher {
+
+    /** The Constant LOGGER. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(URLConnectionContentFetcher.class);
+
+    /*
+     * (non-javadoc)
+     * @see org.infodavid.commons.io.ContentFetcher#fetch(java.net.URI, long, java.lang.String)
+     */
+    @Override
+    public Response fetch(final URI uri, final long lastModified, final String eTag) throws IOException {
+        final URLConnection connection = uri.toURL().openConnection();
+
+        try {
+            if (lastModified > 0) {
+                connection.setIfModifiedSince(lastModified);
+            }
+
+            if (eTag != null) {
+                connection.setRequestProperty("If-None-Match", eTag);
+            }
+
+            if (connection instanceof final HttpURLConnection c && c.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                LOGGER.debug("Content not modified: {}", uri);
+
+                return Response.notModified();
+            }
+
+            try (InputStream in = connection.getInputStream()) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Modification date: {}", new Date(connection.getLastModified()));
+                }
+
+                return new Response(IOUtils.toByteArray(in), connection.getLastModified(), connection.getHeaderField("ETag"));
+            }
+        } finally {
+            if (connection instanceof final HttpURLConnection c) {
+                c.disconnect();
+            } else if (connection instanceof final Closeable c) {
+                c.close();
+            }
+        }
+    }
+}
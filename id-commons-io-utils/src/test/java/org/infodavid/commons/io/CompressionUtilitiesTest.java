@@ -0,0 +1,132 @@
+package org.infodavid.commons.io;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.FileUtils;
+import org.infodavid.commons.test.TestCase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class CompressionUtilitiesTest.
+ */
+class CompressionUtilitiesTest extends TestCase {
+
+    /** The directory. */
+    private Path directory;
+
+    /** The source directory. */
+    private Path sourceDir;
+
+    /**
+     * Compress and extract the source directory and compare the result.
+     * @param type        the type
+     * @param parallelism the parallelism
+     * @throws Exception the exception
+     */
+    private void assertRoundTrip(final String type, final int parallelism) throws Exception {
+        final Path file = directory.resolve("archive." + type);
+        final Path extractedDir = directory.resolve("extracted");
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            CompressionUtilities.getInstance().compress(sourceDir, type, out, (byte) 6, Collections.singleton("*/excluded.txt"), false, null, parallelism, 65536);
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            CompressionUtilities.getInstance().extract(in, extractedDir, Collections.emptySet());
+        }
+
+        Files.delete(sourceDir.resolve("excluded.txt"));
+
+        assertTrue(PathUtilities.getInstance().diff(sourceDir, extractedDir).isEmpty(), "Archive is malformed");
+    }
+
+    /**
+     * Sets the up.
+     * @throws Exception the exception
+     */
+    @Override
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory(getClass().getSimpleName());
+        sourceDir = directory.resolve("source");
+        final byte[] data = new byte[300000];
+        new Random(1).nextBytes(data);
+        Files.createDirectories(sourceDir.resolve("sub"));
+        Files.write(sourceDir.resolve("random.bin"), data);
+        Files.write(sourceDir.resolve("sub/text.txt"), "data\n".repeat(100000).getBytes());
+        Files.write(sourceDir.resolve("sub/empty.txt"), new byte[0]);
+        Files.write(sourceDir.resolve("excluded.txt"), "data".getBytes());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.infodavid.commons.test.TestCase#tearDown()
+     */
+    @AfterEach
+    @Override
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(directory.toFile());
+        super.tearDown();
+    }
+
+    /**
+     * Test compress and extract a tar.gz archive using a single compression thread.
+     * @throws Exception the exception
+     */
+    @Test
+    void testCompressTarGz() throws Exception {
+        assertRoundTrip(CompressionUtilities.TAR_GZ, 1);
+    }
+
+    /**
+     * Test compress and extract a tar.gz archive using several compression threads.
+     * @throws Exception the exception
+     */
+    @Test
+    void testCompressTarGzUsingParallelism() throws Exception {
+        assertRoundTrip(CompressionUtilities.TAR_GZ, 4);
+    }
+
+    /**
+     * Test a runtime failure of the underlying stream is reported as an I/O exception without blocking the writing thread.
+     * @throws Exception the exception
+     */
+    @Test
+    void testCompressWithFailingOutput() throws Exception {
+        final byte[] data = new byte[ParallelZipWriter.DICTIONARY_SIZE];
+        new Random(0).nextBytes(data);
+
+        for (final int threads : new int[] { 1, 4 }) {
+            final OutputStream out = new OutputStream() {
+                private int count = 0;
+
+                @Override
+                public void write(final int b) {
+                    if (++count > 100) {
+                        throw new IllegalStateException("Output failure");
+                    }
+                }
+            };
+
+            assertThrows(IOException.class, () -> {
+                try (OutputStream compressed = new PipelinedCompressorOutputStream(out, CompressorStreamFactory.GZIP, 6, threads, data.length)) {
+                    for (int i = 0; i < 64; i++) {
+                        compressed.write(data);
+                    }
+                }
+            }, "Failure not reported using threads: " + threads);
+        }
+    }
+}
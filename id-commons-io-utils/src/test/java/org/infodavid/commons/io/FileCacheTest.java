@@ -3,13 +3,34 @@ package org.infodavid.commons.io;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
 
 import org.apache.commons.io.FileUtils;
 import org.infodavid.commons.test.TestCase;
@@ -18,6 +39,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.sun.net.httpserver.HttpServer;
+
 /**
  * The Class FileCacheTest.
  */
@@ -40,6 +63,7 @@ class FileCacheTest extends TestCase {
     @BeforeEach
     public void setUp() throws Exception {
         cache.invalidate();
+        cache.setMemoryMapped(false);
         resource = Files.createTempFile(getClass().getSimpleName() + '-', ".tmp");
 
         try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream("test.png")) {
@@ -184,4 +208,355 @@ class FileCacheTest extends TestCase {
         assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), result3, "Wrong data");
         assertEquals(1, cache.getSize(), "Cache size is wrong");
     }
+
+    /**
+     * Test get buffer using memory mapped file.
+     * @throws Exception the exception
+     */
+    @Test
+    void testGetBufferUsingMappedFile() throws Exception {
+        cache.setMemoryMapped(true);
+        final ByteBuffer result1 = cache.getBuffer(resource);
+
+        assertNotNull(result1, "Result is null");
+        assertTrue(result1.isReadOnly(), "Buffer is writable");
+        assertEquals(resourceLength, result1.remaining(), "Result length is wrong");
+        assertEquals(1, cache.getSize(), "Cache size is wrong");
+        assertEquals(resourceLength, cache.getOffHeapSize(), "Off-heap size is wrong");
+
+        cache.cleanUp();
+
+        assertEquals(4096, cache.getStatistics().getWeightedSize(), "Mapped content not weighed");
+
+        final byte[] data = cache.getData(resource);
+
+        assertArrayEquals(Files.readAllBytes(resource), data, "Wrong data");
+        assertEquals(resourceLength, cache.getBuffer(resource).remaining(), "Result length is wrong");
+        assertThrows(ReadOnlyBufferException.class, () -> result1.put((byte) 0), "Buffer is writable");
+
+        cache.invalidate();
+
+        // the removals are notified asynchronously
+        for (int i = 0; i < 50 && cache.getOffHeapSize() > 0; i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(0, cache.getOffHeapSize(), "Off-heap size not decreased");
+    }
+
+    /**
+     * Test get data using concurrent readers.
+     * @throws Exception the exception
+     */
+    @Test
+    void testGetDataConcurrently() throws Exception {
+        final byte[] expected = Files.readAllBytes(resource);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            final Collection<Callable<byte[]>> tasks = new ArrayList<>();
+
+            for (int i = 0; i < 32; i++) {
+                tasks.add(() -> cache.getData(resource));
+            }
+
+            for (final Future<byte[]> future : executor.invokeAll(tasks)) {
+                assertArrayEquals(expected, future.get(), "Wrong data");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, cache.getSize(), "Cache size is wrong");
+    }
+
+    /**
+     * Test get data using watched file.
+     * @throws Exception the exception
+     */
+    @Test
+    void testGetDataUsingWatchedFile() throws Exception {
+        final AtomicInteger checks = new AtomicInteger(0);
+        final FileCache watchedCache = new FileCache() {
+            @Override
+            protected long getLastModificationDate(final URI uri) throws IOException {
+                checks.incrementAndGet();
+
+                return super.getLastModificationDate(uri);
+            }
+        };
+
+        try {
+            watchedCache.setWatching(true);
+            final byte[] result1 = watchedCache.getData(resource);
+
+            assertEquals(resourceLength, result1.length, "Result length is wrong");
+            assertArrayEquals(result1, watchedCache.getData(resource.toFile()), "Wrong data");
+            assertEquals(1, watchedCache.getSize(), "Cache size is wrong");
+            assertEquals(1, watchedCache.getWatchedDirectoryCount(), "Directory not watched");
+            assertEquals(0, checks.get(), "Modification date checked on hits");
+
+            // the directory is registered before the load, the modification is notified without delay
+            final String text = String.valueOf(System.currentTimeMillis());
+
+            FileUtils.write(resource.toFile(), text, StandardCharsets.UTF_8);
+            byte[] result2 = watchedCache.getData(resource);
+
+            for (int i = 0; i < 50 && result2.length != text.length(); i++) {
+                Thread.sleep(100);
+                result2 = watchedCache.getData(resource);
+            }
+
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), result2, "Wrong data");
+            assertEquals(0, checks.get(), "Modification date checked on hits");
+
+            watchedCache.invalidate();
+
+            for (int i = 0; i < 50 && watchedCache.getWatchedDirectoryCount() > 0; i++) {
+                Thread.sleep(100);
+            }
+
+            assertEquals(0, watchedCache.getWatchedDirectoryCount(), "Directory still watched without entries");
+        } finally {
+            watchedCache.setWatching(false);
+        }
+    }
+
+    /**
+     * Test get data using HTTP URI and conditional requests.
+     * @throws Exception the exception
+     */
+    @Test
+    void testGetDataUsingHttpUri() throws Exception {
+        final AtomicInteger fullResponses = new AtomicInteger(0);
+        final AtomicInteger notModifiedResponses = new AtomicInteger(0);
+        final byte[][] body = {
+                Files.readAllBytes(resource)
+        };
+        final String[] eTag = {
+                "\"v1\""
+        };
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/test.png", exchange -> {
+            exchange.getResponseHeaders().set("ETag", eTag[0]);
+            exchange.getResponseHeaders().set("Last-Modified", "Mon, 01 Jan 2024 00:00:00 GMT");
+
+            if (eTag[0].equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedResponses.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+
+                return;
+            }
+
+            fullResponses.incrementAndGet();
+            exchange.sendResponseHeaders(200, body[0].length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body[0]);
+            }
+        });
+        server.start();
+
+        try {
+            final URI uri = new URI("http://127.0.0.1:" + server.getAddress().getPort() + "/test.png");
+            final byte[] result1 = cache.getData(uri);
+
+            assertArrayEquals(body[0], result1, "Wrong data");
+            assertEquals(1, fullResponses.get(), "Wrong number of transfers");
+
+            final byte[] result2 = cache.getData(uri);
+
+            assertArrayEquals(body[0], result2, "Wrong data");
+            assertEquals(1, fullResponses.get(), "Wrong number of transfers");
+            assertEquals(1, notModifiedResponses.get(), "Wrong number of revalidations");
+
+            body[0] = String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8);
+            eTag[0] = "\"v2\"";
+            final byte[] result3 = cache.getData(uri);
+
+            assertArrayEquals(body[0], result3, "Wrong data");
+            assertEquals(2, fullResponses.get(), "Wrong number of transfers");
+            assertEquals(1, cache.getSize(), "Cache size is wrong");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Test get data using the disk store after a restart.
+     * @throws Exception the exception
+     */
+    @Test
+    void testGetDataUsingDiskStore() throws Exception {
+        final AtomicInteger requests = new AtomicInteger(0);
+        final byte[] body = Files.readAllBytes(resource);
+        final Path directory = Files.createTempDirectory(getClass().getSimpleName() + '-');
+        final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/test.png", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        try {
+            final URI uri = new URI("http://127.0.0.1:" + server.getAddress().getPort() + "/test.png");
+
+            try (FileCache first = new FileCache()) {
+                first.setDiskStore(directory, 1048576);
+                first.setRevalidationDelay(3600000);
+
+                assertArrayEquals(body, first.getData(uri), "Wrong data");
+            }
+
+            assertEquals(1, requests.get(), "Wrong number of requests");
+
+            try (FileCache second = new FileCache()) {
+                second.setDiskStore(directory, 1048576);
+                second.setRevalidationDelay(3600000);
+
+                assertEquals(body.length, second.getDiskStoreSize(), "Wrong disk store size");
+                assertArrayEquals(body, second.getData(uri), "Wrong data");
+                assertEquals(1, requests.get(), "Wrong number of requests");
+            }
+        } finally {
+            server.stop(0);
+            FileUtils.deleteQuietly(directory.toFile());
+        }
+    }
+
+    /**
+     * Test the disk store drops a truncated index record so that the records appended after a restart are replayed.
+     * @throws Exception the exception
+     */
+    @Test
+    void testGetDataUsingDiskStoreWithTruncatedIndex() throws Exception {
+        final Path directory = Files.createTempDirectory(getClass().getSimpleName() + '-');
+        final URI uri1 = new URI("http://localhost/1");
+        final URI uri2 = new URI("http://localhost/2");
+
+        try {
+            try (DiskContentStore store = new DiskContentStore(directory, 1048576)) {
+                store.put(uri1, new Content(new byte[] {
+                        1, 2, 3
+                }, 1, "\"v1\""));
+            }
+
+            // simulate a crash while writing a record
+            Files.write(directory.resolve("contents.idx"), new byte[] {
+                    0, 0, 0, 40, 1, 0
+            }, StandardOpenOption.APPEND);
+
+            try (DiskContentStore store = new DiskContentStore(directory, 1048576)) {
+                store.put(uri2, new Content(new byte[] {
+                        4, 5
+                }, 2));
+            }
+
+            try (DiskContentStore store = new DiskContentStore(directory, 1048576)) {
+                assertArrayEquals(new byte[] {
+                        1, 2, 3
+                }, store.get(uri1).getData(), "Wrong data");
+                assertArrayEquals(new byte[] {
+                        4, 5
+                }, store.get(uri2).getData(), "Wrong data");
+                assertEquals(5, store.getSize(), "Wrong disk store size");
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory.toFile());
+        }
+    }
+
+    /**
+     * Test read, open stream and transfer using chunks.
+     * @throws Exception the exception
+     */
+    @Test
+    void testReadUsingChunks() throws Exception {
+        final byte[] expected = Files.readAllBytes(resource);
+        final URI uri = resource.toUri();
+        cache.setChunkingThreshold(1024);
+        cache.setChunkSize(4096);
+
+        final ByteBuffer range = cache.read(uri, 5000, 6000);
+        final byte[] result1 = new byte[range.remaining()];
+        range.get(result1);
+
+        assertArrayEquals(Arrays.copyOfRange(expected, 5000, 11000), result1, "Wrong data");
+        assertEquals(2, cache.getChunkCount(), "Wrong number of chunks");
+        assertEquals(0, cache.getSize(), "Cache size is wrong");
+        assertEquals(0, cache.read(uri, expected.length, 10).remaining(), "Wrong length after the end of the file");
+
+        final byte[] result2;
+
+        try (InputStream in = cache.openStream(uri)) {
+            result2 = in.readAllBytes();
+        }
+
+        assertArrayEquals(expected, result2, "Wrong data");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(expected.length, cache.transferTo(uri, Channels.newChannel(out)), "Wrong number of bytes transferred");
+        assertArrayEquals(expected, out.toByteArray(), "Wrong data");
+        assertEquals((expected.length + 4095) / 4096, cache.getChunkCount(), "Wrong number of chunks");
+    }
+
+    /**
+     * Test the chunks are bounded by their part of the maximum weight.
+     * @throws Exception the exception
+     */
+    @Test
+    void testReadUsingChunksWithinWeight() throws Exception {
+        final URI uri = resource.toUri();
+        cache.setChunkingThreshold(1024);
+        cache.setChunkSize(4096);
+        cache.setMaximumWeight(16384);
+        cache.setChunkWeightRatio(0.5);
+
+        assertEquals(resourceLength, cache.transferTo(uri, Channels.newChannel(new ByteArrayOutputStream())), "Wrong number of bytes transferred");
+
+        cache.cleanUp();
+
+        assertTrue(cache.getStatistics().getWeightedSize() <= cache.getMaximumWeight(), "Weighted size greater than the maximum weight");
+        assertTrue(cache.getChunkCount() <= 2, "Chunks not evicted");
+    }
+
+    /**
+     * Test get statistics.
+     * @throws Exception the exception
+     */
+    @Test
+    void testGetStatistics() throws Exception {
+        cache.getData(resource);
+        cache.getData(resource);
+        cache.cleanUp();
+
+        final FileCacheStatistics statistics = cache.getStatistics();
+
+        assertEquals(1, statistics.getHitCount(), "Wrong hit count");
+        assertEquals(1, statistics.getMissCount(), "Wrong miss count");
+        assertEquals(1, statistics.getLoadSuccessCount(), "Wrong load count");
+        assertEquals(resourceLength, statistics.getWeightedSize(), "Wrong weighted size");
+        assertEquals(1, Arrays.stream(statistics.getLoadTimeHistograms().get("file")).sum(), "Wrong load time histogram");
+
+        Arrays.fill(statistics.getLoadTimeHistograms().get("file"), 0);
+
+        assertEquals(1, Arrays.stream(statistics.getLoadTimeHistograms().get("file")).sum(), "Statistics modified");
+
+        final ObjectName name = cache.registerMBean(getClass().getSimpleName());
+
+        try {
+            assertEquals(Long.valueOf(1), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "HitCount"), "Wrong hit count");
+        } finally {
+            cache.close();
+        }
+
+        assertTrue(!ManagementFactory.getPlatformMBeanServer().isRegistered(name), "Bean still registered");
+    }
 }
@@ -0,0 +1,123 @@
+package org.infodavid.commons.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.infodavid.commons.test.TestCase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class FileTreeChecksumGeneratorTest.
+ */
+class FileTreeChecksumGeneratorTest extends TestCase {
+
+    /**
+     * Creates the tree.
+     * @param dir the directory
+     * @throws Exception the exception
+     */
+    private static void createTree(final Path dir) throws Exception {
+        for (final String sub : new String[] {
+                "a/b", "c"
+        }) {
+            final Path path = Files.createDirectories(dir.resolve(sub));
+
+            for (int i = 0; i < 20; i++) {
+                Files.write(path.resolve("file" + i + ".txt"), ("data" + i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /** The directory. */
+    private Path directory;
+
+    /**
+     * Sets the up.
+     * @throws Exception the exception
+     */
+    @Override
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory(getClass().getSimpleName());
+        createTree(directory.resolve("tree1"));
+        createTree(directory.resolve("tree2"));
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.infodavid.commons.test.TestCase#tearDown()
+     */
+    @AfterEach
+    @Override
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(directory.toFile());
+        super.tearDown();
+    }
+
+    /**
+     * Test get checksum.
+     * @throws Exception the exception
+     */
+    @Test
+    void testGetChecksum() throws Exception {
+        final String checksum1 = new FileTreeChecksumGenerator().walk(directory.resolve("tree1"), 1);
+        final String checksum2 = new FileTreeChecksumGenerator().walk(directory.resolve("tree2"), 4);
+
+        assertNotNull(checksum1, "Null checksum");
+        assertEquals(checksum1, checksum2, "Wrong checksum");
+    }
+
+    /**
+     * Test the generator is reset by each walk and rejects the paths of another tree until reset.
+     * @throws Exception the exception
+     */
+    @Test
+    void testGetChecksumUsingSameGenerator() throws Exception {
+        final FileTreeChecksumGenerator generator = new FileTreeChecksumGenerator();
+        final String checksum1 = generator.walk(directory.resolve("tree1"), 1);
+        Files.write(directory.resolve("tree2/c/file1.txt"), "DATA1".getBytes(StandardCharsets.UTF_8));
+        final String checksum2 = generator.walk(directory.resolve("tree2"), 4);
+
+        assertNotEquals(checksum1, checksum2, "Wrong checksum");
+        assertEquals(checksum2, new FileTreeChecksumGenerator().walk(directory.resolve("tree2"), 1), "Wrong checksum");
+        assertThrows(IllegalStateException.class, () -> Files.walkFileTree(directory.resolve("tree1"), generator), "Path of another tree accepted");
+
+        generator.reset();
+        Files.walkFileTree(directory.resolve("tree1"), generator);
+
+        assertEquals(checksum1, generator.getChecksum(), "Wrong checksum");
+    }
+
+    /**
+     * Test get modified directories when the content changes but not the size.
+     * @throws Exception the exception
+     */
+    @Test
+    void testGetModifiedDirectories() throws Exception {
+        final FileTreeChecksumGenerator generator1 = new FileTreeChecksumGenerator();
+        final FileTreeChecksumGenerator generator2 = new FileTreeChecksumGenerator();
+        Files.write(directory.resolve("tree2/a/b/file1.txt"), "DATA1".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(directory.resolve("tree2/a/d"));
+        generator1.walk(directory.resolve("tree1"), 4);
+        generator2.walk(directory.resolve("tree2"), 4);
+        final List<Path> results = generator1.getModifiedDirectories(generator2);
+
+        assertNotEquals(generator1.getChecksum(), generator2.getChecksum(), "Wrong checksum");
+        assertEquals(generator1.getChecksum(Paths.get("c")), generator2.getChecksum(Paths.get("c")), "Wrong checksum");
+        assertEquals(4, results.size(), "Wrong number of modified directories");
+        assertTrue(results.containsAll(Arrays.asList(Paths.get(""), Paths.get("a"), Paths.get("a/b"), Paths.get("a/d"))), "Wrong modified directories: " + results);
+    }
+}
@@ -0,0 +1,273 @@
+package org.infodavid.commons.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.io.FileUtils;
+import org.infodavid.commons.io.FilesRepositoryWatcher.EventEntry;
+import org.infodavid.commons.test.TestCase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class FilesRepositoryWatcherTest.
+ */
+class FilesRepositoryWatcherTest extends TestCase {
+
+    /**
+     * The Class RecordingObserver.
+     */
+    private static class RecordingObserver implements FilesRepositoryObserver {
+
+        /** The deleted files. */
+        private final Set<Path> deleted = ConcurrentHashMap.newKeySet();
+
+        /** The modified or created files. */
+        private final Set<Path> modified = ConcurrentHashMap.newKeySet();
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.commons.io.FilesRepositoryObserver#fileCreated(java.nio.file.Path)
+         */
+        @Override
+        public void fileCreated(final Path path) {
+            modified.add(path);
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.commons.io.FilesRepositoryObserver#fileDeleted(java.nio.file.Path)
+         */
+        @Override
+        public void fileDeleted(final Path path) {
+            deleted.add(path);
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.commons.io.FilesRepositoryObserver#fileModfied(java.nio.file.Path)
+         */
+        @Override
+        public void fileModfied(final Path path) {
+            modified.add(path);
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.infodavid.commons.io.FilesRepositoryObserver#initialize(java.nio.file.Path)
+         */
+        @Override
+        public void initialize(final Path repositoryPath) {
+            // noop
+        }
+    }
+
+    /** The directory. */
+    private Path directory;
+
+    /** The executor. */
+    private ScheduledExecutorService executor;
+
+    /**
+     * Wait until the condition is satisfied or 10 seconds elapsed.
+     * @param condition the condition
+     * @return true, if satisfied
+     * @throws InterruptedException the interrupted exception
+     */
+    private static boolean await(final BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(100);
+        }
+
+        return condition.getAsBoolean();
+    }
+
+    /**
+     * Sets the up.
+     * @throws Exception the exception
+     */
+    @Override
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory(getClass().getSimpleName()).toAbsolutePath();
+        executor = Executors.newScheduledThreadPool(4);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.infodavid.commons.test.TestCase#tearDown()
+     */
+    @AfterEach
+    @Override
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        FileUtils.deleteQuietly(directory.toFile());
+        super.tearDown();
+    }
+
+    /**
+     * Test the polling of a directory tree.
+     * @throws Exception the exception
+     */
+    @Test
+    void testPolling() throws Exception {
+        final Path existing = Files.writeString(Files.createDirectories(directory.resolve("existing")).resolve("existing.txt"), "0");
+        final RecordingObserver observer = new RecordingObserver();
+        final FilesRepositoryWatcher watcher = new PollingFilesRepositoryWatcher(directory, executor, true, 200, 2);
+        watcher.setWindow(100);
+        watcher.addObserver(observer);
+        executor.submit(watcher);
+        Thread.sleep(500);
+
+        try {
+            final Path file1 = Files.writeString(directory.resolve("existing").resolve("file1.txt"), "1");
+            final Path file2 = Files.writeString(Files.createDirectories(directory.resolve("a/b/c")).resolve("file2.txt"), "2");
+
+            assertTrue(await(() -> observer.modified.contains(file1)), "File in an existing subdirectory not notified");
+            assertTrue(await(() -> observer.modified.contains(file2)), "File in a new subdirectory not notified");
+
+            // the modification does not change the time of the directory
+            Files.writeString(existing, "00");
+            Files.setLastModifiedTime(existing, FileTime.fromMillis(System.currentTimeMillis() + 60000));
+
+            assertTrue(await(() -> observer.modified.contains(existing)), "Modified file not notified");
+
+            FileUtils.deleteDirectory(directory.resolve("a").toFile());
+
+            assertTrue(await(() -> observer.deleted.contains(file2)), "File of a deleted directory not notified");
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    /**
+     * Test the events of the files created in new subdirectories when watching recursively.
+     * @throws Exception the exception
+     */
+    @Test
+    void testRecursive() throws Exception {
+        Files.createDirectories(directory.resolve("existing"));
+        final RecordingObserver observer = new RecordingObserver();
+        final FilesRepositoryWatcher watcher = new FilesRepositoryWatcher(directory, executor, true);
+        watcher.addObserver(observer);
+        executor.submit(watcher);
+        Thread.sleep(500);
+
+        try {
+            final Path file1 = Files.writeString(directory.resolve("existing").resolve("file1.txt"), "1");
+            // the file is created before the new directories are registered
+            final Path file2 = Files.writeString(Files.createDirectories(directory.resolve("a/b/c")).resolve("file2.txt"), "2");
+
+            assertTrue(await(() -> observer.modified.contains(file1)), "File in an existing subdirectory not notified");
+            assertTrue(await(() -> observer.modified.contains(file2)), "File in a new subdirectory not notified");
+
+            final Path file3 = Files.writeString(directory.resolve("a/b/c/file3.txt"), "3");
+
+            assertTrue(await(() -> observer.modified.contains(file3)), "File in a registered subdirectory not notified");
+
+            Files.delete(file1);
+
+            assertTrue(await(() -> observer.deleted.contains(file1)), "Deleted file not notified");
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    /**
+     * Test the events are coalesced and delivered in batches ordered by their last occurrence.
+     * @throws Exception the exception
+     */
+    @Test
+    void testBatches() throws Exception {
+        final List<List<Path>> batches = new CopyOnWriteArrayList<>();
+        final RecordingObserver observer = new RecordingObserver() {
+            @Override
+            public void filesChanged(final List<EventEntry> events) {
+                batches.add(events.stream().map(EventEntry::getPath).toList());
+                super.filesChanged(events);
+            }
+        };
+        final FilesRepositoryWatcher watcher = new FilesRepositoryWatcher(directory, executor);
+        watcher.setWindow(300);
+        watcher.addObserver(observer);
+        executor.submit(watcher);
+        Thread.sleep(500);
+
+        try {
+            final Path file1 = Files.writeString(directory.resolve("file1.txt"), "1");
+            final Path file2 = Files.writeString(directory.resolve("file2.txt"), "2");
+            // the service merges the successive modifications of a file, the deletion is used to get a distinct event
+            Files.delete(file1);
+
+            assertTrue(await(() -> observer.deleted.contains(file1) && observer.modified.contains(file2)), "Files not notified");
+
+            final List<Path> dispatched = new ArrayList<>();
+
+            for (final List<Path> batch : batches) {
+                assertEquals(new HashSet<>(batch).size(), batch.size(), "Events not coalesced");
+                dispatched.addAll(batch);
+            }
+
+            assertTrue(dispatched.lastIndexOf(file1) > dispatched.lastIndexOf(file2), "Wrong order");
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    /**
+     * Test the stop ends the thread waiting for the events.
+     * @throws Exception the exception
+     */
+    @Test
+    void testStop() throws Exception {
+        final FilesRepositoryWatcher watcher = new FilesRepositoryWatcher(directory, executor);
+        final Future<?> future = executor.submit(watcher);
+        Thread.sleep(500);
+
+        watcher.stop();
+
+        assertNull(future.get(5, TimeUnit.SECONDS), "Watcher not ended");
+    }
+
+    /**
+     * Test the subdirectories are not watched by default.
+     * @throws Exception the exception
+     */
+    @Test
+    void testNotRecursive() throws Exception {
+        final Path subDirectory = Files.createDirectories(directory.resolve("existing"));
+        final RecordingObserver observer = new RecordingObserver();
+        final FilesRepositoryWatcher watcher = new FilesRepositoryWatcher(directory, executor);
+        watcher.addObserver(observer);
+        executor.submit(watcher);
+        Thread.sleep(500);
+
+        try {
+            final Path file1 = Files.writeString(subDirectory.resolve("file1.txt"), "1");
+            final Path file2 = Files.writeString(directory.resolve("file2.txt"), "2");
+
+            assertTrue(await(() -> observer.modified.contains(file2)), "File not notified");
+            assertFalse(observer.modified.contains(file1), "File of a subdirectory notified");
+        } finally {
+            watcher.stop();
+        }
+    }
+}
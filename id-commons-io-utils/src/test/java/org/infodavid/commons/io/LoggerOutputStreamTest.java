@@ -0,0 +1,210 @@
+package org.infodavid.commons.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.infodavid.commons.test.TestCase;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Marker;
+import org.slf4j.helpers.LegacyAbstractLogger;
+
+/**
+ * The Class LoggerOutputStreamTest.
+ */
+class LoggerOutputStreamTest extends TestCase {
+
+    /**
+     * The Class RecordingLogger.
+     */
+    private static class RecordingLogger extends LegacyAbstractLogger {
+
+        /** The Constant serialVersionUID. */
+        private static final long serialVersionUID = 1L;
+
+        /** The messages. */
+        private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+        /** The monitor held while logging, like the lock of a redirected standard stream. */
+        private final Object monitor = new Object();
+
+        /*
+         * (non-javadoc)
+         * @see org.slf4j.helpers.AbstractLogger#getFullyQualifiedCallerName()
+         */
+        @Override
+        protected String getFullyQualifiedCallerName() {
+            return null;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.slf4j.helpers.AbstractLogger#handleNormalizedLoggingCall(org.slf4j.event.Level, org.slf4j.Marker, java.lang.String, java.lang.Object[], java.lang.Throwable)
+         */
+        @Override
+        protected void handleNormalizedLoggingCall(final org.slf4j.event.Level level, final Marker marker, final String messagePattern, final Object[] arguments, final Throwable throwable) {
+            synchronized (monitor) {
+                messages.add(messagePattern);
+            }
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.slf4j.Logger#isDebugEnabled()
+         */
+        @Override
+        public boolean isDebugEnabled() {
+            return true;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.slf4j.Logger#isErrorEnabled()
+         */
+        @Override
+        public boolean isErrorEnabled() {
+            return true;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.slf4j.Logger#isInfoEnabled()
+         */
+        @Override
+        public boolean isInfoEnabled() {
+            return true;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.slf4j.Logger#isTraceEnabled()
+         */
+        @Override
+        public boolean isTraceEnabled() {
+            return true;
+        }
+
+        /*
+         * (non-javadoc)
+         * @see org.slf4j.Logger#isWarnEnabled()
+         */
+        @Override
+        public boolean isWarnEnabled() {
+            return true;
+        }
+    }
+
+    /**
+     * Test the lines are logged in order whatever the chunks written.
+     * @throws Exception the exception
+     */
+    @Test
+    void testWrite() throws Exception {
+        final RecordingLogger logger = new RecordingLogger();
+        final List<String> expected = new ArrayList<>();
+        final StringBuilder buffer = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            final String line = "line " + i + " \u00e9\u20ac";
+            expected.add("> " + line);
+            buffer.append(line).append(i % 2 == 0 ? "\n" : "\r\n");
+
+            if (i % 100 == 0) {
+                buffer.append("  \n");
+            }
+        }
+
+        final byte[] data = buffer.toString().getBytes(StandardCharsets.UTF_8);
+
+        try (LoggerOutputStream out = new LoggerOutputStream(logger, Level.INFO, "> ")) {
+            int offset = 0;
+            int size = 1;
+
+            // chunks of various sizes splitting the lines and the characters
+            while (offset < data.length) {
+                final int length = Math.min(size, data.length - offset);
+                out.write(data, offset, length);
+                offset += length;
+                size = size % 37 + 1;
+            }
+
+            out.write('e');
+            out.write('n');
+            out.write('d');
+        }
+
+        expected.add("> end");
+
+        assertEquals(expected, logger.messages, "Wrong logged lines");
+    }
+
+    /**
+     * Test the lines are kept in order when the logging thread is blocked by a lock held by the writer, only the line taken by the blocked thread is logged later.
+     * @throws Exception the exception
+     */
+    @Test
+    void testWriteWhileLoggerBlocked() throws Exception {
+        final RecordingLogger logger = new RecordingLogger();
+        final List<String> expected = new ArrayList<>();
+
+        try (LoggerOutputStream out = new LoggerOutputStream(logger, Level.INFO)) {
+            synchronized (logger.monitor) {
+                for (int i = 0; i < LoggerOutputStream.CAPACITY + 30; i++) {
+                    expected.add("line " + i);
+                    out.write(("line " + i + '\n').getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        assertEquals(expected.size(), logger.messages.size(), "Wrong number of lines");
+
+        final List<String> logged = new ArrayList<>(logger.messages);
+        // the first line is taken by the logging thread before it is blocked
+        logged.remove(expected.get(0));
+        expected.remove(0);
+
+        assertEquals(expected, logged, "Wrong order");
+    }
+
+    /**
+     * Test the lines written after the close are logged without failure.
+     * @throws Exception the exception
+     */
+    @Test
+    void testWriteAfterClose() throws Exception {
+        final RecordingLogger logger = new RecordingLogger();
+        final LoggerOutputStream out = new LoggerOutputStream(logger, Level.INFO);
+        out.write("before\n".getBytes(StandardCharsets.UTF_8));
+        out.close();
+        out.write("after\n".getBytes(StandardCharsets.UTF_8));
+        out.write('a');
+        out.flush();
+
+        assertEquals(Arrays.asList("before", "after", "a"), logger.messages, "Wrong logged lines");
+    }
+
+    /**
+     * Test the lines longer than the maximum length are logged in several messages without splitting the characters.
+     * @throws Exception the exception
+     */
+    @Test
+    void testWriteLongLine() throws Exception {
+        final RecordingLogger logger = new RecordingLogger();
+        final char[] chars = new char[LoggerOutputStream.MAX_LINE_LENGTH];
+        Arrays.fill(chars, '\u00e9');
+        final String line = "a" + new String(chars);
+
+        try (LoggerOutputStream out = new LoggerOutputStream(logger, Level.INFO)) {
+            out.write((line + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertTrue(logger.messages.size() > 1, "Line not split");
+        assertEquals(line, String.join("", logger.messages), "Wrong logged line");
+    }
+}
@@ -0,0 +1,105 @@
+package org.infodavid.commons.io;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.infodavid.commons.test.TestCase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The Class PathUtilitiesManualTest.<br>
+ * The test compares the durations of the standard copy and of the channel transfer on a tree of small, medium and large files.<br>
+ * The total size of the tree in megabytes can be specified using the system property <code>copy.benchmark.size</code>.
+ */
+class PathUtilitiesManualTest extends TestCase {
+
+    /** The Constant ITERATIONS. */
+    private static final int ITERATIONS = 3;
+
+    /** The directory. */
+    private Path directory;
+
+    /** The source directory. */
+    private Path sourceDir;
+
+    /**
+     * Measure the average duration of the copy of the tree.
+     * @param options the options
+     * @return the duration in milliseconds
+     * @throws Exception the exception
+     */
+    private long measure(final CopyOption... options) throws Exception {
+        long duration = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            final Path targetDir = directory.resolve("target" + i);
+            final long start = System.nanoTime();
+            PathUtilities.getInstance().copy(sourceDir, targetDir, Collections.emptySet(), false, null, Runtime.getRuntime().availableProcessors(), options);
+            duration += System.nanoTime() - start;
+
+            assertTrue(PathUtilities.getInstance().diff(sourceDir, targetDir).isEmpty(), "Directory content is wrong");
+
+            FileUtils.deleteDirectory(targetDir.toFile());
+        }
+
+        return duration / ITERATIONS / 1000000;
+    }
+
+    /**
+     * Sets the up.
+     * @throws Exception the exception
+     */
+    @Override
+    @BeforeEach
+    public void setUp() throws Exception {
+        final long size = Long.getLong("copy.benchmark.size", 1024).longValue() * 1048576;
+        final Random random = new Random(0);
+        directory = Files.createTempDirectory(getClass().getSimpleName());
+        sourceDir = directory.resolve("source");
+        // a third of the size in 4 KB files, a third in 1 MB files and a third in 64 MB files
+        final int[] fileSizes = {
+                4096, 1048576, 67108864
+        };
+
+        for (final int fileSize : fileSizes) {
+            final Path dir = Files.createDirectories(sourceDir.resolve(String.valueOf(fileSize)));
+            final byte[] data = new byte[fileSize];
+            final long count = Math.max(1, size / 3 / fileSize);
+
+            for (long i = 0; i < count; i++) {
+                random.nextBytes(data);
+                Files.write(dir.resolve("file" + i + ".bin"), data);
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see org.infodavid.commons.test.TestCase#tearDown()
+     */
+    @AfterEach
+    @Override
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(directory.toFile());
+        super.tearDown();
+    }
+
+    /**
+     * Test the channel transfer against the standard copy.
+     * @throws Exception the exception
+     */
+    @Test
+    void testCompareCopyStrategies() throws Exception {
+        System.out.println("Files.copy: " + measure(StandardCopyOption.COPY_ATTRIBUTES) + " ms");
+        System.out.println("Channel transfer: " + measure(StandardCopyOption.COPY_ATTRIBUTES, ExtendedCopyOption.CHANNEL_TRANSFER) + " ms");
+    }
+}
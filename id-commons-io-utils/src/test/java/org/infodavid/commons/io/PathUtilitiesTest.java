@@ -13,17 +13,33 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.AclEntry;
 import java.nio.file.attribute.AclEntryPermission;
 import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.GroupPrincipal;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.infodavid.commons.test.TestCase;
@@ -33,6 +49,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledOnOs;
 import org.junit.jupiter.api.condition.OS;
 
+import com.yevdo.jwildcard.JWildcard;
+
 import net.lingala.zip4j.ZipFile;
 
 /**
@@ -74,6 +92,184 @@ class PathUtilitiesTest extends TestCase {
         super.tearDown();
     }
 
+    /**
+     * Test copy, size and delete using several threads.
+     * @throws Exception the exception
+     */
+    @Test
+    void testCopyAndDeleteUsingParallelism() throws Exception {
+        final Path sourceDir = resourceDirectory.resolve("source");
+        final Path targetDir = resourceDirectory.resolve("target");
+        final Set<Path> processed = ConcurrentHashMap.newKeySet();
+        final FileProcessingListener listener = new FileProcessingAdapter() {
+            @Override
+            public void processed(final Path path, final byte action) {
+                processed.add(path);
+            }
+        };
+
+        for (int i = 0; i < 4; i++) {
+            final Path dir = Files.createDirectories(sourceDir.resolve("dir" + i).resolve("sub"));
+
+            for (int j = 0; j < 100; j++) {
+                Files.write(dir.resolve("file" + j + ".txt"), ("data" + i + '-' + j).getBytes());
+                Files.write(dir.getParent().resolve("file" + j + ".txt"), ("data" + j).getBytes());
+            }
+        }
+
+        try {
+            PathUtilities.getInstance().copy(sourceDir, targetDir, Collections.emptySet(), false, listener, 4);
+
+            assertTrue(PathUtilities.getInstance().compare(sourceDir, targetDir), "Directory content is wrong");
+            assertEquals(PathUtilities.getInstance().getSize(sourceDir, true), PathUtilities.getInstance().getSize(targetDir, true, 4), "Wrong size");
+            assertEquals(801, processed.size(), "Wrong number of processed paths");
+
+            processed.clear();
+
+            assertTrue(PathUtilities.getInstance().delete(targetDir, listener, 4), "Directory not deleted");
+            assertFalse(Files.exists(targetDir), "Directory still exists");
+            assertEquals(809, processed.size(), "Wrong number of processed paths");
+        } finally {
+            FileUtils.deleteQuietly(sourceDir.toFile());
+            FileUtils.deleteQuietly(targetDir.toFile());
+        }
+    }
+
+    /**
+     * Test copy asynchronously with the progress and the cancellation.
+     * @throws Exception the exception
+     */
+    @Test
+    void testCopyAsync() throws Exception {
+        final Path sourceDir = resourceDirectory.resolve("source");
+        final Path targetDir = resourceDirectory.resolve("target");
+        final List<Runnable> tasks = new ArrayList<>();
+        final AtomicReference<CompletableFuture<Void>> future = new AtomicReference<>();
+        final long[] progress = new long[4];
+        final AtomicBoolean cancel = new AtomicBoolean(false);
+        final FileProcessingListener listener = new FileProcessingAdapter() {
+            @Override
+            public void progress(final long files, final long totalFiles, final long bytes, final long totalBytes) {
+                progress[0] = files;
+                progress[1] = totalFiles;
+                progress[2] = bytes;
+                progress[3] = totalBytes;
+
+                if (files == 10 && cancel.get()) {
+                    future.get().cancel(true);
+                }
+            }
+        };
+        Files.createDirectories(sourceDir.resolve("sub"));
+
+        for (int i = 0; i < 50; i++) {
+            Files.write(sourceDir.resolve("sub/file" + i + ".txt"), ("data" + i).getBytes());
+        }
+
+        try {
+            future.set(PathUtilities.getInstance().copyAsync(sourceDir, targetDir, Collections.emptySet(), false, listener, tasks::add));
+            tasks.remove(0).run();
+            future.get().get();
+
+            assertTrue(PathUtilities.getInstance().diff(sourceDir, targetDir).isEmpty(), "Directory content is wrong");
+            assertEquals(52, progress[1], "Wrong total of entries");
+            assertEquals(progress[1], progress[0], "Wrong number of entries");
+            assertEquals(PathUtilities.getInstance().getSize(sourceDir, true), progress[3], "Wrong total of bytes");
+            assertEquals(progress[3], progress[2], "Wrong number of bytes");
+
+            final Path cancelledDir = resourceDirectory.resolve("cancelled");
+            cancel.set(true);
+            future.set(PathUtilities.getInstance().copyAsync(sourceDir, cancelledDir, Collections.emptySet(), false, listener, tasks::add));
+            tasks.remove(0).run();
+
+            assertTrue(future.get().isCancelled(), "Operation not cancelled");
+            assertEquals(10, progress[0], "Operation not stopped");
+        } finally {
+            FileUtils.deleteQuietly(sourceDir.toFile());
+            FileUtils.deleteQuietly(targetDir.toFile());
+            FileUtils.deleteQuietly(resourceDirectory.resolve("cancelled").toFile());
+        }
+    }
+
+    /**
+     * Test copy using the channel transfer with the attributes.
+     * @throws Exception the exception
+     */
+    @Test
+    void testCopyUsingChannelTransfer() throws Exception {
+        final Path sourceDir = resourceDirectory.resolve("source");
+        final Path targetDir = resourceDirectory.resolve("target");
+        final FileTime time = FileTime.fromMillis(1000000000000L);
+        final byte[] data = new byte[3000000];
+        new Random(1).nextBytes(data);
+        Files.createDirectories(sourceDir.resolve("sub"));
+        Files.write(sourceDir.resolve("random.bin"), data);
+        Files.write(sourceDir.resolve("sub/text.txt"), "data".getBytes());
+        Files.write(sourceDir.resolve("sub/empty.txt"), new byte[0]);
+        Files.setLastModifiedTime(sourceDir.resolve("random.bin"), time);
+
+        try {
+            PathUtilities.getInstance().copy(sourceDir, targetDir, Collections.emptySet(), false, null, 2, StandardCopyOption.COPY_ATTRIBUTES, ExtendedCopyOption.CHANNEL_TRANSFER);
+
+            assertTrue(PathUtilities.getInstance().diff(sourceDir, targetDir).isEmpty(), "Directory content is wrong");
+            assertEquals(time, Files.getLastModifiedTime(targetDir.resolve("random.bin")), "Wrong modification time");
+
+            Files.write(sourceDir.resolve("sub/text.txt"), "DATA".getBytes());
+            PathUtilities.getInstance().copy(sourceDir.resolve("sub/text.txt"), targetDir.resolve("sub/text.txt"), StandardCopyOption.REPLACE_EXISTING, ExtendedCopyOption.CHANNEL_TRANSFER);
+
+            assertTrue(PathUtilities.getInstance().diff(sourceDir, targetDir).isEmpty(), "File not replaced");
+
+            final Path link = Files.createSymbolicLink(resourceDirectory.resolve("link.txt"), sourceDir.resolve("sub/text.txt"));
+
+            try {
+                PathUtilities.getInstance().copy(link, targetDir.resolve("link.txt"), StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS, ExtendedCopyOption.CHANNEL_TRANSFER);
+
+                assertTrue(Files.isSymbolicLink(targetDir.resolve("link.txt")), "Link not copied as a link");
+            } finally {
+                Files.deleteIfExists(link);
+            }
+        } finally {
+            FileUtils.deleteQuietly(sourceDir.toFile());
+            FileUtils.deleteQuietly(targetDir.toFile());
+        }
+    }
+
+    /**
+     * Test diff.
+     * @throws Exception the exception
+     */
+    @Test
+    void testDiff() throws Exception {
+        final Path dir1 = resourceDirectory.resolve("dir1");
+        final Path dir2 = resourceDirectory.resolve("dir2");
+
+        try {
+            for (final Path dir : new Path[] {
+                    dir1, dir2
+            }) {
+                Files.createDirectories(dir.resolve("sub"));
+                Files.write(dir.resolve("same.txt"), "same".getBytes());
+                Files.write(dir.resolve("sub/content.txt"), (dir == dir1 ? "data1" : "data2").getBytes());
+                Files.write(dir.resolve("size.txt"), (dir == dir1 ? "data" : "longer data").getBytes());
+            }
+
+            Files.createDirectories(dir1.resolve("removed"));
+            Files.write(dir1.resolve("removed/file.txt"), "data".getBytes());
+            Files.write(dir2.resolve("added.txt"), "data".getBytes());
+            final FileTreeDifferences differences = PathUtilities.getInstance().diff(dir1, dir2);
+
+            assertFalse(differences.isEmpty(), "No difference");
+            assertEquals(Collections.singleton(Path.of("added.txt")), differences.getAdded(), "Wrong added paths");
+            assertEquals(Collections.singleton(Path.of("removed")), differences.getRemoved(), "Wrong removed paths");
+            assertEquals(new HashSet<>(Arrays.asList(Path.of("size.txt"), Path.of("sub/content.txt"))), differences.getModified(), "Wrong modified paths");
+            assertFalse(PathUtilities.getInstance().compare(dir1, dir2), "Directories are identical");
+            assertTrue(PathUtilities.getInstance().diff(dir1, dir1).isEmpty(), "Differences found");
+        } finally {
+            FileUtils.deleteQuietly(dir1.toFile());
+            FileUtils.deleteQuietly(dir2.toFile());
+        }
+    }
+
     /**
      * Test get group.
      * @throws Exception the exception
@@ -196,6 +392,53 @@ class PathUtilitiesTest extends TestCase {
         assertFalse(Files.isWritable(resource), "Wrong permission");
     }
 
+    /**
+     * Test set permissions recursively using several threads, the paths already having the permissions being skipped.
+     * @throws Exception the exception
+     */
+    @EnabledOnOs(OS.LINUX)
+    @Test
+    void testSetPermissionsRecursively() throws Exception {
+        final Path dir = resourceDirectory.resolve("tree");
+        final UserPrincipal owner = PathUtilities.getInstance().getOwner(resource);
+        final Set<AclEntry> permissions = new HashSet<>();
+        final Map<Path, Byte> actions = new ConcurrentHashMap<>();
+        final FileProcessingListener listener = new FileProcessingAdapter() {
+            @Override
+            public void processed(final Path path, final byte action) {
+                actions.put(path, Byte.valueOf(action));
+            }
+        };
+        permissions.add(AclEntry.newBuilder().setType(AclEntryType.ALLOW).setPrincipal(owner).setPermissions(AclEntryPermission.READ_DATA).build());
+        permissions.add(AclEntry.newBuilder().setType(AclEntryType.DENY).setPrincipal(PathUtilities.OTHERS_PRINCIPAL).setPermissions(AclEntryPermission.READ_DATA).build());
+
+        for (int i = 0; i < 3; i++) {
+            final Path sub = Files.createDirectories(dir.resolve("dir" + i));
+
+            for (int j = 0; j < 200; j++) {
+                Files.write(sub.resolve("file" + j + ".txt"), "data".getBytes());
+            }
+        }
+
+        try {
+            Files.setPosixFilePermissions(dir.resolve("dir0/file0.txt"), PosixFilePermissions.fromString("r-----r--"));
+            PathUtilities.getInstance().setPermissions(dir, permissions, true, listener, 4);
+
+            assertEquals(604, actions.size(), "Wrong number of processed paths");
+            assertFalse(Files.getPosixFilePermissions(dir.resolve("dir2/file199.txt")).contains(PosixFilePermission.OTHERS_READ), "Wrong permission");
+            assertTrue(Files.getPosixFilePermissions(dir.resolve("dir0/file0.txt")).contains(PosixFilePermission.OWNER_READ), "Wrong permission");
+            assertFalse(Files.getPosixFilePermissions(dir.resolve("dir0/file0.txt")).contains(PosixFilePermission.OTHERS_READ), "Wrong permission");
+
+            actions.clear();
+            PathUtilities.getInstance().setPermissions(dir, permissions, true, listener, 4);
+
+            assertEquals(604, actions.size(), "Wrong number of processed paths");
+            assertTrue(actions.values().stream().allMatch(a -> a.byteValue() == FileProcessingListener.UNCHANGED), "Paths not skipped");
+        } finally {
+            FileUtils.deleteQuietly(dir.toFile());
+        }
+    }
+
     /**
      * Test set permissions with wrong path.
      * @throws Exception the exception
@@ -208,6 +451,63 @@ class PathUtilitiesTest extends TestCase {
         assertThrows(NoSuchFileException.class, () -> PathUtilities.getInstance().setPermissions(file.toPath(), new HashSet<>()), "Exception not raised or has a wrong type");
     }
 
+    /**
+     * Test sync.
+     * @throws Exception the exception
+     */
+    @Test
+    void testSync() throws Exception {
+        final Path sourceDir = resourceDirectory.resolve("source");
+        final Path targetDir = resourceDirectory.resolve("target");
+        final Map<Path, Byte> actions = new ConcurrentHashMap<>();
+        final Set<Path> createdDirectories = ConcurrentHashMap.newKeySet();
+        final FileProcessingListener listener = new FileProcessingAdapter() {
+            @Override
+            public void processed(final Path path, final byte action) {
+                actions.put(path.getFileName(), Byte.valueOf(action));
+
+                if (action == FileProcessingListener.DIRECTORY_CREATED) {
+                    createdDirectories.add(path);
+                }
+            }
+        };
+
+        try {
+            Files.createDirectories(sourceDir.resolve("sub"));
+            Files.write(sourceDir.resolve("unchanged.txt"), "data".getBytes());
+            Files.write(sourceDir.resolve("sub/modified.txt"), "data".getBytes());
+            // the temporary copy of a name close to the limit of the file system must not exceed it
+            Files.write(sourceDir.resolve("l".repeat(240) + ".txt"), "data".getBytes());
+            PathUtilities.getInstance().sync(sourceDir, targetDir, Collections.emptySet(), false, true, listener);
+
+            assertTrue(PathUtilities.getInstance().compare(sourceDir, targetDir), "Directory content is wrong");
+            assertEquals(Byte.valueOf(FileProcessingListener.COPIED), actions.get(Path.of("unchanged.txt")), "Wrong action");
+            assertEquals(Set.of(sourceDir.resolve("sub").toAbsolutePath()), createdDirectories, "Wrong created directories");
+
+            actions.clear();
+            Files.write(sourceDir.resolve("sub/modified.txt"), "DATA".getBytes());
+            Files.setLastModifiedTime(sourceDir.resolve("sub/modified.txt"), FileTime.fromMillis(System.currentTimeMillis() + 10000));
+            Files.write(sourceDir.resolve("added.txt"), "data".getBytes());
+            Files.write(targetDir.resolve("extraneous.txt"), "data".getBytes());
+            // a link to the previous target keeps its content if the target is replaced instead of overwritten
+            final Path previous = Files.createLink(resourceDirectory.resolve("previous.txt"), targetDir.resolve("sub/modified.txt"));
+            PathUtilities.getInstance().sync(sourceDir, targetDir, Collections.emptySet(), false, true, listener, 4);
+
+            assertEquals("data", Files.readString(previous), "Target overwritten in place");
+            Files.delete(previous);
+
+            assertTrue(PathUtilities.getInstance().compare(sourceDir, targetDir), "Directory content is wrong");
+            assertEquals(Byte.valueOf(FileProcessingListener.UNCHANGED), actions.get(Path.of("unchanged.txt")), "Wrong action");
+            assertEquals(Byte.valueOf(FileProcessingListener.REPLACED), actions.get(Path.of("modified.txt")), "Wrong action");
+            assertEquals(Byte.valueOf(FileProcessingListener.COPIED), actions.get(Path.of("added.txt")), "Wrong action");
+            assertEquals(Byte.valueOf(FileProcessingListener.DELETED), actions.get(Path.of("extraneous.txt")), "Wrong action");
+            assertFalse(Files.exists(targetDir.resolve("extraneous.txt")), "Extraneous file not deleted");
+        } finally {
+            FileUtils.deleteQuietly(sourceDir.toFile());
+            FileUtils.deleteQuietly(targetDir.toFile());
+        }
+    }
+
     /**
      * Test unzip.
      * @throws Exception the exception
@@ -252,6 +552,76 @@ class PathUtilitiesTest extends TestCase {
         }
     }
 
+    /**
+     * Test unzip using several threads with exclusions.
+     * @throws Exception the exception
+     */
+    @Test
+    void testUnzipUsingParallelism() throws Exception {
+        final Path file = resourceDirectory.resolveSibling(getClass().getSimpleName() + "-parallel-unzip.zip");
+        final Path sourceDir = resourceDirectory.resolve("source");
+        final Path extractedDir = resourceDirectory.resolve("extracted");
+        final byte[] data = new byte[3000000];
+        new Random(1).nextBytes(data);
+        Files.createDirectories(sourceDir.resolve("sub"));
+
+        for (int i = 0; i < 20; i++) {
+            Files.write(sourceDir.resolve("sub/file" + i + ".txt"), ("data" + i + "\n").repeat(1000 * i).getBytes());
+        }
+
+        Files.write(sourceDir.resolve("random.bin"), data);
+        Files.write(sourceDir.resolve("excluded.txt"), "data".getBytes());
+
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                PathUtilities.getInstance().zip(sourceDir, out, (byte) 6, Collections.emptySet(), false, null, 4);
+            }
+
+            final Map<Path, Byte> processed = new ConcurrentHashMap<>();
+            PathUtilities.getInstance().unzip(file, extractedDir, Collections.singleton("*/excluded.txt"), new FileProcessingAdapter() {
+                @Override
+                public void processed(final Path path, final byte action) {
+                    processed.put(path, Byte.valueOf(action));
+                }
+            }, 4);
+            Files.delete(sourceDir.resolve("excluded.txt"));
+
+            final FileTreeDifferences differences = PathUtilities.getInstance().diff(sourceDir, extractedDir);
+
+            assertTrue(differences.isEmpty(), "Zip is not extracted correctly: " + differences);
+            assertEquals(21, processed.size(), "Wrong number of extracted entries: " + processed.keySet());
+        } finally {
+            Files.deleteIfExists(file);
+            FileUtils.deleteQuietly(sourceDir.toFile());
+            FileUtils.deleteQuietly(extractedDir.toFile());
+        }
+    }
+
+    /**
+     * Test unzip with an entry outside of the target directory, sequentially and using several threads.
+     * @throws Exception the exception
+     */
+    @Test
+    void testUnzipWithEntryOutsideOfDirectory() throws Exception {
+        final Path file = resourceDirectory.resolveSibling(getClass().getSimpleName() + "-slip.zip");
+        final Path extractedDir = resourceDirectory.resolve("extracted");
+
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("../slip.txt"));
+            out.write("data".getBytes());
+            out.closeEntry();
+        }
+
+        try {
+            assertThrows(IOException.class, () -> PathUtilities.getInstance().unzip(file, extractedDir, Collections.emptySet(), null), "Exception not raised or has a wrong type"); // NOSONAR No lambda
+            assertThrows(IOException.class, () -> PathUtilities.getInstance().unzip(file, extractedDir, Collections.emptySet(), null, 4), "Exception not raised or has a wrong type"); // NOSONAR No lambda
+            assertFalse(Files.exists(resourceDirectory.resolve("slip.txt")), "Entry extracted outside of the directory");
+        } finally {
+            Files.deleteIfExists(file);
+            FileUtils.deleteQuietly(extractedDir.toFile());
+        }
+    }
+
     /**
      * Test unzip with invalid file.
      * @throws Exception the exception
@@ -276,6 +646,65 @@ class PathUtilitiesTest extends TestCase {
         }, "Exception not raised or has a wrong type");
     }
 
+    /**
+     * Test walk using wildcard patterns, the result is compared to the regular expressions built by JWildcard and the excluded subtrees are skipped.
+     * @throws Exception the exception
+     */
+    @Test
+    void testWalkWithPatterns() throws Exception {
+        final Path sourceDir = Files.createTempDirectory("walk");
+
+        try {
+            for (final String dir : new String[] {
+                    "a", "a/b", "a/excluded", "a/excluded/c", "logs", "logs/old"
+            }) {
+                Files.createDirectories(sourceDir.resolve(dir));
+            }
+
+            for (final String file : new String[] {
+                    "file.txt", "file.log", "a/file.txt", "a/b/file.log", "a/b/keep.log", "a/excluded/file.txt", "a/excluded/c/file.txt", "logs/file.log", "logs/old/file.log"
+            }) {
+                Files.writeString(sourceDir.resolve(file), file);
+            }
+
+            final List<String> includes = Arrays.asList("*/keep.log");
+            final List<String> excludes = Arrays.asList("*.log", "*/excluded/*", "*/a/?/file.*");
+            final FilterPredicate filter = new FilterPredicate(includes, excludes, true);
+            final List<Path> expected = new ArrayList<>();
+            final List<Path> result = new ArrayList<>();
+
+            try (Stream<Path> stream = Files.walk(sourceDir)) {
+                stream.forEach(p -> {
+                    final String value = p.toAbsolutePath().toString();
+
+                    if (includes.stream().anyMatch(i -> value.matches(JWildcard.wildcardToRegex(i))) || excludes.stream().noneMatch(e -> value.matches(JWildcard.wildcardToRegex(e)))) {
+                        expected.add(p);
+                    }
+                });
+            }
+
+            PathUtilities.getInstance().walk(sourceDir, filter, result::add);
+
+            assertEquals(expected, result, "Wrong walked paths");
+            assertTrue(result.contains(sourceDir.resolve("a/b/keep.log")), "Included file not walked");
+            assertFalse(result.contains(sourceDir.resolve("a/b/file.log")), "Excluded file walked");
+            // the include pattern may match a descendant of any directory
+            assertFalse(filter.isSubtreeExcluded(sourceDir.resolve("a/excluded")), "Subtree excluded");
+
+            final FilterPredicate excludeFilter = new FilterPredicate(Collections.emptyList(), excludes, true);
+            result.clear();
+            PathUtilities.getInstance().walk(sourceDir, excludeFilter, result::add);
+
+            assertTrue(excludeFilter.isSubtreeExcluded(sourceDir.resolve("a/excluded")), "Subtree not excluded");
+            assertFalse(excludeFilter.isSubtreeExcluded(sourceDir.resolve("a")), "Subtree excluded");
+            assertTrue(result.contains(sourceDir.resolve("a/excluded")), "Directory of the excluded subtree not walked");
+            assertFalse(result.contains(sourceDir.resolve("a/excluded/c")), "Excluded subtree walked");
+            assertTrue(result.contains(sourceDir.resolve("a/file.txt")), "File not walked");
+        } finally {
+            FileUtils.deleteDirectory(sourceDir.toFile());
+        }
+    }
+
     /**
      * Test zip.
      * @throws Exception the exception
@@ -316,6 +745,42 @@ class PathUtilitiesTest extends TestCase {
         }
     }
 
+    /**
+     * Test zip using several threads with files larger than the chunks and the spill threshold.
+     * @throws Exception the exception
+     */
+    @Test
+    void testZipUsingParallelism() throws Exception {
+        final Path file = resourceDirectory.resolveSibling(getClass().getSimpleName() + "-parallel.zip");
+        final Path sourceDir = resourceDirectory.resolve("source");
+        final Path extractedDir = resourceDirectory.resolve("extracted");
+        final byte[] data = new byte[ParallelZipWriter.SPILL_THRESHOLD + ParallelZipWriter.CHUNK_SIZE / 2];
+        new Random(1).nextBytes(data);
+        Files.createDirectories(sourceDir.resolve("sub"));
+        Files.write(sourceDir.resolve("random.bin"), data);
+        Files.write(sourceDir.resolve("sub/text.txt"), "data\n".repeat(700000).getBytes());
+        Files.write(sourceDir.resolve("sub/empty.txt"), new byte[0]);
+        Files.write(sourceDir.resolve("excluded.txt"), "data".getBytes());
+
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                PathUtilities.getInstance().zip(sourceDir, out, (byte) 6, Collections.singleton("*/excluded.txt"), false, null, 4);
+            }
+
+            try (InputStream in = Files.newInputStream(file)) {
+                PathUtilities.getInstance().unzip(in, extractedDir, Collections.emptySet());
+            }
+
+            Files.delete(sourceDir.resolve("excluded.txt"));
+
+            assertTrue(PathUtilities.getInstance().compare(sourceDir, extractedDir), "Zip is malformed");
+        } finally {
+            Files.deleteIfExists(file);
+            FileUtils.deleteQuietly(sourceDir.toFile());
+            FileUtils.deleteQuietly(extractedDir.toFile());
+        }
+    }
+
     /**
      * Test zip with invalid path.
      * @throws Exception the exception